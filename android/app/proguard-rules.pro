@@ -0,0 +1,4 @@
+# Gson maps Cirrus rows onto these classes by reflection
+-keep class com.stratomercata.portfolio.Asset { *; }
+-keep class com.stratomercata.portfolio.Oracle { *; }
+-keep class com.stratomercata.OrderBookFeed$Listing { *; }
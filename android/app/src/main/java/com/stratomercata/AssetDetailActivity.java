@@ -0,0 +1,189 @@
+package com.stratomercata;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.math.BigDecimal;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Drill-down for one asset: lists its tokens with thumbnails. Token rows are paged from
+ * Cirrus by TokenPager as the list scrolls, and images come through ThumbnailCache.
+ */
+public class AssetDetailActivity extends AppCompatActivity implements TokenPager.OnPageLoadedListener {
+    private static final String EXTRA_ASSET_NAME = "com.stratomercata.ASSET_NAME";
+    private static final String EXTRA_TOKEN_COUNT = "com.stratomercata.TOKEN_COUNT";
+    private static final String EXTRA_DECIMALS = "com.stratomercata.DECIMALS";
+    private static final int FOOTER_PADDING = 40;
+    
+    private TokenPager pager;
+    private TokenAdapter adapter;
+    private TextView footerView;
+    private HttpUrl baseUrl;
+    private int decimals;
+    
+    public static Intent newIntent(Context context, String assetName, int tokenCount, int decimals) {
+        Intent intent = new Intent(context, AssetDetailActivity.class);
+        intent.putExtra(EXTRA_ASSET_NAME, assetName);
+        intent.putExtra(EXTRA_TOKEN_COUNT, tokenCount);
+        intent.putExtra(EXTRA_DECIMALS, decimals);
+        return intent;
+    }
+    
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        
+        String assetName = getIntent().getStringExtra(EXTRA_ASSET_NAME);
+        int tokenCount = getIntent().getIntExtra(EXTRA_TOKEN_COUNT, 0);
+        decimals = getIntent().getIntExtra(EXTRA_DECIMALS, 0);
+        setTitle(assetName + " (" + tokenCount + " token" + (tokenCount != 1 ? "s" : "") + ")");
+        
+        StratoClient stratoClient = StratoClient.getInstance(this);
+        if (stratoClient.isConfigured()) {
+            baseUrl = HttpUrl.parse(stratoClient.getBaseUrl());
+        }
+        
+        pager = new TokenPager(this, assetName);
+        pager.setOnPageLoadedListener(this);
+        adapter = new TokenAdapter();
+        
+        // Shows loading progress, and errors with a retry on tap
+        footerView = new TextView(this);
+        footerView.setGravity(Gravity.CENTER);
+        footerView.setPadding(FOOTER_PADDING, FOOTER_PADDING, FOOTER_PADDING, FOOTER_PADDING);
+        footerView.setTextColor(Color.parseColor("#555555"));
+        footerView.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        footerView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (pager.getErrorMessage() != null) {
+                    pager.retry();
+                    updateFooter();
+                }
+            }
+        });
+        
+        ListView listView = new ListView(this);
+        listView.setBackgroundColor(Color.WHITE);
+        listView.setDivider(null);
+        listView.addFooterView(footerView, null, false);
+        listView.setAdapter(adapter);
+        setContentView(listView);
+        
+        pager.loadNextPage();
+        updateFooter();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        pager.cancel();
+        super.onDestroy();
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        
+        // Decoded thumbnails are cheap to restore from disk, so give them up first
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            ThumbnailCache.getInstance(this).clearMemory();
+        }
+    }
+    
+    @Override
+    public void onPageLoaded() {
+        adapter.notifyDataSetChanged();
+        updateFooter();
+    }
+    
+    @Override
+    public void onError(String errorMessage) {
+        updateFooter();
+    }
+    
+    private void updateFooter() {
+        String errorMessage = pager.getErrorMessage();
+        if (errorMessage != null) {
+            footerView.setText(errorMessage + "\nTap to retry");
+            footerView.setVisibility(View.VISIBLE);
+        } else if (!pager.isEndReached()) {
+            footerView.setText("Loading tokens...");
+            footerView.setVisibility(View.VISIBLE);
+        } else if (pager.getTokens().isEmpty()) {
+            footerView.setText("No tokens found");
+            footerView.setVisibility(View.VISIBLE);
+        } else {
+            footerView.setVisibility(View.GONE);
+        }
+    }
+    
+    // Resolves image paths against the node, since Cirrus may store them relative to it
+    private String resolveImageUrl(TokenPager.Token token) {
+        if (token.images == null || token.images.isEmpty() || token.images.get(0) == null) {
+            return null;
+        }
+        String image = token.images.get(0);
+        HttpUrl url = HttpUrl.parse(image);
+        if (url == null && baseUrl != null) {
+            url = baseUrl.resolve(image);
+        }
+        return url != null ? url.toString() : null;
+    }
+    
+    private String formatQuantity(TokenPager.Token token) {
+        if (token.quantity == null) {
+            return "";
+        }
+        try {
+            return "Quantity: " + new BigDecimal(token.quantity).movePointLeft(decimals)
+                    .stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return "Quantity: " + token.quantity;
+        }
+    }
+    
+    private class TokenAdapter extends BaseAdapter {
+        @Override
+        public int getCount() {
+            return pager.getTokens().size();
+        }
+        
+        @Override
+        public TokenPager.Token getItem(int position) {
+            return pager.getTokens().get(position);
+        }
+        
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+        
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TokenRowView row = convertView instanceof TokenRowView
+                    ? (TokenRowView) convertView : new TokenRowView(parent.getContext());
+            
+            TokenPager.Token token = getItem(position);
+            row.bind("#" + token.id, formatQuantity(token), token.description, resolveImageUrl(token));
+            
+            // Ask for the next page while this one is still on screen
+            pager.onPositionShown(position);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.stratomercata;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.stratomercata.portfolio.AssetRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * On-disk copy of the asset metadata fetched from Cirrus, so the registry survives restarts
+ * and works offline. Falls back to the built-in registry until the first fetch succeeds.
+ * Not thread-safe; AssetsService uses it from its processing thread.
+ */
+public class AssetMetadataCache {
+    private static final String TAG = "AssetMetadataCache";
+    private static final String FILE_NAME = "asset-metadata.json";
+    
+    // Metadata changes rarely; refetch at most once a day
+    private static final long REFRESH_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    
+    private static final Type ENTRIES_TYPE = new TypeToken<List<AssetRegistry.Entry>>() {}.getType();
+    
+    private final File file;
+    private final Gson gson = new Gson();
+    
+    public AssetMetadataCache(File directory) {
+        file = new File(directory, FILE_NAME);
+    }
+    
+    /**
+     * Registry compiled from the cached metadata, or the built-in one if there is none
+     */
+    public AssetRegistry load() {
+        if (!file.exists()) {
+            return AssetRegistry.DEFAULT;
+        }
+        
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            List<AssetRegistry.Entry> entries = gson.fromJson(reader, ENTRIES_TYPE);
+            if (entries == null || entries.isEmpty()) {
+                return AssetRegistry.DEFAULT;
+            }
+            Log.d(TAG, "Loaded metadata for " + entries.size() + " assets");
+            return AssetRegistry.compile(entries);
+        } catch (IOException | JsonParseException e) {
+            Log.e(TAG, "Error reading cached asset metadata: " + e.getMessage());
+            return AssetRegistry.DEFAULT;
+        }
+    }
+    
+    /**
+     * True if the cache is missing or older than the refresh interval
+     */
+    public boolean isStale() {
+        return System.currentTimeMillis() - file.lastModified() > REFRESH_INTERVAL_MS;
+    }
+    
+    /**
+     * Replaces the cached metadata. Written to a temporary file first so a crash never
+     * leaves a partial cache behind.
+     */
+    public void save(List<AssetRegistry.Entry> entries) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                gson.toJson(entries, ENTRIES_TYPE, writer);
+                writer.flush();
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                Log.e(TAG, "Could not replace cached asset metadata");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing asset metadata: " + e.getMessage());
+        }
+    }
+}
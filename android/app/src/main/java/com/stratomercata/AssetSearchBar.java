@@ -0,0 +1,129 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.Spinner;
+
+import com.stratomercata.portfolio.AssetIndex;
+
+/**
+ * Search box, category filter, minimum value and sort order for the asset breakdown. Every
+ * change is reported as a fresh AssetIndex.Query.
+ */
+public class AssetSearchBar extends LinearLayout {
+    private static final String[] CATEGORY_LABELS = {"All assets", "Fungible", "NFTs", "CATA"};
+    private static final AssetIndex.Category[] CATEGORIES = {
+            null, AssetIndex.Category.FUNGIBLE, AssetIndex.Category.NON_FUNGIBLE, AssetIndex.Category.CATA};
+    private static final String[] SORT_LABELS = {"Name", "Largest value", "Largest quantity", "Most tokens"};
+    private static final AssetIndex.SortKey[] SORT_KEYS = {
+            AssetIndex.SortKey.NAME, AssetIndex.SortKey.VALUE, AssetIndex.SortKey.QUANTITY, AssetIndex.SortKey.TOKEN_COUNT};
+    
+    // Interface for query changes, called on the main thread
+    public interface OnQueryChangedListener {
+        void onQueryChanged(AssetIndex.Query query);
+    }
+    
+    private final EditText searchInput;
+    private final Spinner categorySpinner;
+    private final Spinner sortSpinner;
+    private final EditText minValueInput;
+    private OnQueryChangedListener listener;
+    
+    public AssetSearchBar(Context context) {
+        this(context, null);
+    }
+    
+    public AssetSearchBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setOrientation(VERTICAL);
+        
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                notifyQueryChanged();
+            }
+        };
+        AdapterView.OnItemSelectedListener selectionListener = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                notifyQueryChanged();
+            }
+            
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        
+        searchInput = new EditText(context);
+        searchInput.setHint("Search assets");
+        searchInput.setSingleLine(true);
+        searchInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
+        searchInput.addTextChangedListener(watcher);
+        addView(searchInput, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+        
+        LinearLayout options = new LinearLayout(context);
+        options.setOrientation(HORIZONTAL);
+        
+        categorySpinner = newSpinner(context, CATEGORY_LABELS, selectionListener);
+        options.addView(categorySpinner, new LayoutParams(0, LayoutParams.WRAP_CONTENT, 1));
+        
+        sortSpinner = newSpinner(context, SORT_LABELS, selectionListener);
+        options.addView(sortSpinner, new LayoutParams(0, LayoutParams.WRAP_CONTENT, 1));
+        
+        minValueInput = new EditText(context);
+        minValueInput.setHint("Min $");
+        minValueInput.setSingleLine(true);
+        minValueInput.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL);
+        minValueInput.addTextChangedListener(watcher);
+        options.addView(minValueInput, new LayoutParams(0, LayoutParams.WRAP_CONTENT, 0.6f));
+        
+        addView(options, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+    }
+    
+    public void setOnQueryChangedListener(OnQueryChangedListener listener) {
+        this.listener = listener;
+    }
+    
+    private static Spinner newSpinner(Context context, String[] labels, AdapterView.OnItemSelectedListener selectionListener) {
+        Spinner spinner = new Spinner(context);
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, labels);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+        spinner.setOnItemSelectedListener(selectionListener);
+        return spinner;
+    }
+    
+    private void notifyQueryChanged() {
+        if (listener == null) {
+            return;
+        }
+        
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.text = searchInput.getText().toString();
+        query.category = CATEGORIES[Math.max(0, categorySpinner.getSelectedItemPosition())];
+        query.sortKey = SORT_KEYS[Math.max(0, sortSpinner.getSelectedItemPosition())];
+        try {
+            String minValue = minValueInput.getText().toString().trim();
+            query.minValue = minValue.isEmpty() ? 0 : Double.parseDouble(minValue);
+        } catch (NumberFormatException e) {
+            query.minValue = 0;
+        }
+        listener.onQueryChanged(query);
+    }
+}
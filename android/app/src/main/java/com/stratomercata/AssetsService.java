@@ -1,104 +1,130 @@
 package com.stratomercata;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.AssetGroup;
+import com.stratomercata.portfolio.AssetRegistry;
+import com.stratomercata.portfolio.AssetTotal;
+import com.stratomercata.portfolio.HoldingsStore;
+import com.stratomercata.portfolio.Oracle;
+import com.stratomercata.portfolio.PortfolioCalculator;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.annotations.SerializedName;
-
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.yaml.snakeyaml.Yaml;
-
-import java.io.IOException;
-import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-import okhttp3.FormBody;
-import okhttp3.Interceptor;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
+import retrofit2.http.Tag;
 
 /**
- * Service class that handles API calls and data processing for assets
+ * Process-wide repository for the portfolio: handles API calls and data processing for assets.
+ * Responses, stream updates and trade changes are processed on a single background thread; only
+ * the finished PortfolioDisplayModel is handed to the main thread.
+ *
+ * Outlives activities, so a recreated screen attaches to the loaded portfolio instead of
+ * starting over, and overlapping load requests share one fetch.
  */
 public class AssetsService {
     private static final String TAG = "AssetsService";
+    private static final long POLL_INTERVAL_MS = 30000;
+    private static final int MAX_QUEUED_UPDATES = 32;
+    private static final long PROCESSING_THREAD_KEEP_ALIVE_SECONDS = 30;
+    
+    // A load still running after this is taken to be lost; well past the client's 60 second
+    // timeouts on the token, assets and oracle calls together
+    private static final long LOAD_TIMEOUT_MS = 180000;
+    
+    private static AssetsService instance;
     
-    // Credentials
-    private String clientUrl;
-    private String userCommonName;
-    private String clientId;
-    private String clientSecret;
-    private String accessToken;
-    private long tokenExpiresAt;
-    private static final long TOKEN_LIFETIME_RESERVE_SECONDS = 120; // Reserve 2 minutes for token expiration check
+    // Shared authenticated client
+    private final StratoClient stratoClient;
     
     // API client
     private ApiService apiService;
     
-    // Data
-    private List<Asset> assets = new ArrayList<>();
-    private List<AssetGroup> sortedAssets = new ArrayList<>();
-    private Map<String, String> latestPrices = new HashMap<>();
-    private int fungibleTokensCount = 0;
-    private double fungibleTokensValue = 0;
-    private int nonFungibleTokensCount = 0;
-    private int cataTokensCount = 0;
-    private double totalCataTokens = 0;
+    // Push updates, with polling as the fallback while the stream is unavailable
+    private AssetsStream assetsStream;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean pollingActive = false;
+    private final Runnable pollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            loadData();
+            mainHandler.postDelayed(this, POLL_INTERVAL_MS);
+        }
+    };
     
-    // Listener for data loading events
-    private OnDataLoadedListener dataLoadedListener;
+    // Single-thread pipeline: response callbacks, stream updates, grouping, valuation and display
+    // model building all run here, so the data below is confined to this thread. The queue
+    // itself is unbounded, so a load's callbacks are never dropped; only stream updates are
+    // bounded, by queuedUpdates.
+    private final ThreadPoolExecutor processingExecutor;
+    private final AtomicInteger queuedUpdates = new AtomicInteger();
+    private boolean rebuildQueued = false;
     
-    // Model classes
-    public static class Asset {
-        @SerializedName("id")
-        public String id;
-        
-        @SerializedName("name")
-        public String name;
-        
-        @SerializedName("quantity")
-        public String quantity;
-        
-        @SerializedName("decimals")
-        public Integer decimals;
-    }
+    // Data, touched only on the processing thread. In aggregated mode assetTotals holds one row
+    // per asset instead of the token rows in holdings; otherwise it is null.
+    private HoldingsStore holdings = HoldingsStore.EMPTY;
+    private List<AssetTotal> assetTotals;
     
-    public static class Oracle {
-        @SerializedName("name")
-        public String name;
-        
-        @SerializedName("consensusPrice")
-        public String consensusPrice;
-    }
+    // Ask Cirrus for per-asset totals instead of every token row. Cleared for the rest of the
+    // process if the node rejects aggregate queries.
+    private volatile boolean aggregateHoldings = "true".equals(BuildConfig.AGGREGATE_HOLDINGS);
+    private final PortfolioCalculator calculator = new PortfolioCalculator();
+    private final AssetMetadataCache metadataCache;
+    private boolean metadataRefreshing = false;
+    
+    // Trades applied optimistically until the chain confirms or rejects them, keyed by idempotency
+    // key; touched only on the processing thread
+    private final TradeSubmitter tradeSubmitter;
+    private final Map<String, PendingTrade> pendingTrades = new LinkedHashMap<>();
+    
+    // Decimals each asset was last valued with, for trades in an asset no longer held; touched
+    // only on the processing thread
+    private final Map<String, Integer> knownDecimals = new HashMap<>();
+    
+    // Latest published result, swapped whole by the processing thread and readable from any thread
+    private final AtomicReference<PortfolioDisplayModel> displayModel = new AtomicReference<>();
+    
+    // The token + assets + oracles load in flight; further requests join it
+    private final LoadGate loadGate = new LoadGate(LOAD_TIMEOUT_MS);
+    
+    // A request that needs data read after it was made arrived during a load, so load again
+    private volatile boolean reloadAfterLoad = false;
     
-    public static class AssetGroup {
-        public String name;
-        public long totalQuantity;
-        public int tokenCount;
-        public int decimals;
-        public double calculatedQuantity;
-        public double calculatedValue;
-        public List<Asset> tokens = new ArrayList<>();
+    // Listeners for data loading events and the last error; main thread only
+    private final List<OnDataLoadedListener> dataLoadedListeners = new ArrayList<>();
+    private String lastError;
+    
+    private static class PendingTrade {
+        final TradeOrder order;
+        long confirmedAt = -1;
+        
+        PendingTrade(TradeOrder order) {
+            this.order = order;
+        }
     }
     
     // API interface
@@ -106,487 +132,707 @@ public class AssetsService {
         @GET("BlockApps-Mercata-Asset")
         Call<List<Asset>> getAssets(@Query("ownerCommonName") String ownerCommonName);
         
+        // One row per asset name, summed by Cirrus; select is AssetTotal.SELECT
+        @GET("BlockApps-Mercata-Asset")
+        Call<List<AssetTotal>> getAssetTotals(@Query("ownerCommonName") String ownerCommonName,
+                                              @Query("select") String select);
+        
         @GET("BlockApps-Mercata-OracleService")
         Call<List<Oracle>> getOracleValues();
+        
+        @GET("BlockApps-Mercata-AssetMetadata")
+        Call<List<AssetRegistry.Entry>> getAssetMetadata(@Tag RequestScheduler.Priority priority);
     }
     
     // Interface for data loading events
     public interface OnDataLoadedListener {
-        void onDataLoaded();
+        // diff holds the breakdown rows changed since the previous call
+        void onDataLoaded(PortfolioDiff diff);
         void onError(String errorMessage);
     }
     
-    public AssetsService(Context context) {
-        // Load credentials
-        loadCredentials(context);
+    public static synchronized AssetsService getInstance(Context context) {
+        if (instance == null) {
+            instance = new AssetsService(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private AssetsService(Context context) {
+        // Credentials and the authenticated HTTP client are shared process-wide
+        stratoClient = StratoClient.getInstance(context);
+        tradeSubmitter = TradeSubmitter.getInstance(context);
+        metadataCache = new AssetMetadataCache(context.getFilesDir());
+        
+        processingExecutor = new ThreadPoolExecutor(1, 1, PROCESSING_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "AssetsService-processing");
+                    }
+                });
+        processingExecutor.allowCoreThreadTimeOut(true);
+        
+        // Read cached asset metadata before the first response is processed
+        processingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                calculator.setRegistry(metadataCache.load());
+            }
+        });
+        
+        // Submitted trades are applied to the portfolio before the chain reflects them
+        tradeSubmitter.addTradeListener(tradeListener);
         
         // Initialize API client
         initApiClient();
     }
     
-    public void setOnDataLoadedListener(OnDataLoadedListener listener) {
-        this.dataLoadedListener = listener;
+    /**
+     * Registers a listener. If a portfolio is already loaded (or the last load failed) the
+     * listener hears about it straight away, so a recreated view draws without waiting for
+     * the network. Call on the main thread.
+     */
+    public void addOnDataLoadedListener(OnDataLoadedListener listener) {
+        if (dataLoadedListeners.contains(listener)) {
+            return;
+        }
+        dataLoadedListeners.add(listener);
+        
+        PortfolioDisplayModel model = displayModel.get();
+        if (model != null) {
+            listener.onDataLoaded(PortfolioDiff.compute(null, model));
+        } else if (lastError != null) {
+            listener.onError(lastError);
+        }
     }
     
-    private void loadCredentials(Context context) {
-        try {
-            InputStream inputStream = context.getAssets().open("credentials.yaml");
-            Yaml yaml = new Yaml();
-            Map<String, Object> credentials = yaml.load(inputStream);
-            
-            clientUrl = (String) credentials.get("clientUrl");
-            userCommonName = (String) credentials.get("userCommonName");
-            clientId = (String) credentials.get("clientId");
-            clientSecret = (String) credentials.get("clientSecret");
-            
-            inputStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error loading credentials: " + e.getMessage());
-            if (dataLoadedListener != null) {
-                dataLoadedListener.onError("Error loading credentials: " + e.getMessage());
-            }
-        }
+    public void removeOnDataLoadedListener(OnDataLoadedListener listener) {
+        dataLoadedListeners.remove(listener);
     }
     
     private void initApiClient() {
-        if (clientUrl == null) {
+        if (!stratoClient.isConfigured()) {
             Log.e(TAG, "Client URL is null, cannot initialize API client");
             return;
         }
         
-        // Create OkHttp client with token interceptor
-        OkHttpClient httpClient = new OkHttpClient.Builder()
-                .connectTimeout(60, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .addInterceptor(new Interceptor() {
-                    @NonNull
-                    @Override
-                    public Response intercept(@NonNull Chain chain) throws IOException {
-                        Request original = chain.request();
-                        
-                        // Add authorization header if token is available
-                        if (accessToken != null && !accessToken.isEmpty()) {
-                            Request request = original.newBuilder()
-                                    .header("Authorization", "Bearer " + accessToken)
-                                    .method(original.method(), original.body())
-                                    .build();
-                            return chain.proceed(request);
-                        }
-                        
-                        return chain.proceed(original);
-                    }
-                })
-                .build();
-        
-        // Create Retrofit instance
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl("https://" + clientUrl + "/cirrus/search/")
-                .client(httpClient)
-                .addConverterFactory(GsonConverterFactory.create())
+        // The shared Cirrus client, delivering callbacks straight to the processing thread
+        Retrofit retrofit = stratoClient.getCirrusRetrofit().newBuilder()
+                .callbackExecutor(processingExecutor)
                 .build();
         
         // Create API service
         apiService = retrofit.create(ApiService.class);
     }
     
-    public void loadData() {
+    /**
+     * Starts live updates: the push stream if one is configured, otherwise periodic polling.
+     * With several nodes configured, their latency is probed for as long as updates run.
+     */
+    public void startUpdates() {
         if (apiService == null) {
-            Log.e(TAG, "API service is null, cannot fetch asset data");
-            if (dataLoadedListener != null) {
-                dataLoadedListener.onError("API service initialization failed");
-            }
             return;
         }
         
-        // Get OAuth token first
-        getOAuthToken(new TokenCallback() {
+        stratoClient.getNodeSelector().startProbing();
+        
+        String streamUrl = stratoClient.getStreamUrl();
+        if (streamUrl == null) {
+            startPolling();
+            return;
+        }
+        
+        if (assetsStream == null) {
+            assetsStream = new AssetsStream(stratoClient.getHttpClient(), streamUrl, stratoClient.getUserCommonName(), streamListener);
+        }
+        
+        // The stream is authenticated, so make sure we hold a valid token before connecting
+        stratoClient.getOAuthToken(new StratoClient.TokenCallback() {
             @Override
             public void onTokenReceived(String token) {
-                // Token received, now fetch assets
-                accessToken = token;
-                fetchAssets();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        assetsStream.start();
+                    }
+                });
             }
             
             @Override
             public void onError(String error) {
-                Log.e(TAG, "Error getting OAuth token: " + error);
-                if (dataLoadedListener != null) {
-                    dataLoadedListener.onError("Error getting OAuth token: " + error);
-                }
+                Log.e(TAG, "Error getting OAuth token for stream: " + error);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        startPolling();
+                    }
+                });
             }
         });
     }
     
-    private interface TokenCallback {
-        void onTokenReceived(String token);
-        void onError(String error);
+    public void stopUpdates() {
+        stratoClient.getNodeSelector().stopProbing();
+        stopPolling();
+        if (assetsStream != null) {
+            assetsStream.stop();
+        }
     }
     
-    private void getOAuthToken(final TokenCallback callback) {
-        // Check if we have a valid cached token
-        long currentTime = System.currentTimeMillis() / 1000;
-        if (accessToken != null && tokenExpiresAt > currentTime + TOKEN_LIFETIME_RESERVE_SECONDS) {
-            Log.d(TAG, "Using cached token");
-            callback.onTokenReceived(accessToken);
+    private final TradeSubmitter.TradeListener tradeListener = new TradeSubmitter.TradeListener() {
+        @Override
+        public void onTradeUpdated(final TradeOrder.Update update) {
+            processingExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    applyTradeUpdate(update.order, update.state);
+                }
+            });
+        }
+    };
+    
+    private void applyTradeUpdate(TradeOrder order, TradeOrder.State state) {
+        PendingTrade pendingTrade = pendingTrades.get(order.idempotencyKey);
+        
+        switch (state) {
+            case PENDING:
+            case SUBMITTED:
+                if (pendingTrade != null) {
+                    return;
+                }
+                pendingTrades.put(order.idempotencyKey, new PendingTrade(order));
+                break;
+            case CONFIRMED:
+                if (pendingTrade == null || pendingTrade.confirmedAt >= 0) {
+                    return;
+                }
+                // Keep showing the optimistic value until a fresh chain read includes the trade
+                pendingTrade.confirmedAt = SystemClock.uptimeMillis();
+                reload();
+                return;
+            case FAILED:
+                if (pendingTrade == null) {
+                    return;
+                }
+                // Roll back the optimistic change
+                pendingTrades.remove(order.idempotencyKey);
+                break;
+        }
+        
+        publish();
+    }
+    
+    /**
+     * Drops confirmed trades that are already part of chain state read after the given time
+     */
+    private void reconcilePendingTrades(long chainReadAt, String assetName) {
+        Iterator<PendingTrade> iterator = pendingTrades.values().iterator();
+        while (iterator.hasNext()) {
+            PendingTrade pendingTrade = iterator.next();
+            boolean matches = assetName == null || assetName.equals(pendingTrade.order.assetName);
+            if (matches && pendingTrade.confirmedAt >= 0 && pendingTrade.confirmedAt <= chainReadAt) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    private void startPolling() {
+        if (pollingActive) {
             return;
         }
+        pollingActive = true;
+        mainHandler.postDelayed(pollRunnable, POLL_INTERVAL_MS);
+    }
+    
+    private void stopPolling() {
+        pollingActive = false;
+        mainHandler.removeCallbacks(pollRunnable);
+    }
+    
+    private final AssetsStream.StreamListener streamListener = new AssetsStream.StreamListener() {
+        @Override
+        public void onConnected() {
+            // Stream is live, polling is no longer needed
+            stopPolling();
+        }
         
-        // OAuth configuration
-        final String tokenEndpoint = "https://keycloak.blockapps.net/auth/realms/mercata/protocol/openid-connect/token";
+        @Override
+        public void onOracleUpdate(final List<Oracle> oracles) {
+            executeUpdate(new Runnable() {
+                @Override
+                public void run() {
+                    processOracleData(oracles);
+                    publish();
+                }
+            });
+        }
         
-        // Create OkHttp client for token request
-        OkHttpClient client = new OkHttpClient();
+        @Override
+        public void onAssetUpdate(final List<Asset> updatedAssets) {
+            // Token deltas can't be applied to totals; fetching fresh totals costs a few KB
+            if (aggregateHoldings) {
+                reload();
+                return;
+            }
+            executeUpdate(new Runnable() {
+                @Override
+                public void run() {
+                    applyAssetUpdate(updatedAssets);
+                    publish();
+                }
+            });
+        }
         
-        // Create request body with client credentials
-        RequestBody formBody = new FormBody.Builder()
-                .add("grant_type", "client_credentials")
-                .add("client_id", clientId)
-                .add("client_secret", clientSecret)
-                .build();
+        @Override
+        public void onReset() {
+            // Server could not resume from our last event, so reload everything
+            reload();
+        }
         
-        // Create request
-        Request request = new Request.Builder()
-                .url(tokenEndpoint)
-                .post(formBody)
-                .build();
+        @Override
+        public void onDisconnected(String reason) {
+            // Fall back to polling Cirrus until the stream reconnects
+            startPolling();
+        }
+    };
+    
+    /**
+     * Queues a stream update for the processing thread. If the thread has fallen more than
+     * MAX_QUEUED_UPDATES behind, the update is dropped instead and, since incremental state can
+     * no longer be trusted, the portfolio is reloaded.
+     */
+    private void executeUpdate(final Runnable update) {
+        if (queuedUpdates.incrementAndGet() > MAX_QUEUED_UPDATES) {
+            queuedUpdates.decrementAndGet();
+            Log.e(TAG, "Processing queue full, dropping update and reloading");
+            reload();
+            return;
+        }
+        processingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                queuedUpdates.decrementAndGet();
+                update.run();
+            }
+        });
+    }
+    
+    private void applyAssetUpdate(List<Asset> updatedAssets) {
+        // Replace changed rows by id, append new ones and drop emptied ones
+        holdings = holdings.withUpdates(updatedAssets);
+        long now = SystemClock.uptimeMillis();
+        for (Asset asset : updatedAssets) {
+            reconcilePendingTrades(now, asset.name);
+        }
+    }
+    
+    /**
+     * Loads the portfolio unless one is already loaded, as a view does when it first appears.
+     * Call on the main thread.
+     */
+    public void ensureLoaded() {
+        if (displayModel.get() == null) {
+            loadData();
+        }
+    }
+    
+    /**
+     * Loads the portfolio. Joins the load already in flight, if any, rather than starting a
+     * second token + assets + oracle fetch.
+     */
+    public void loadData() {
+        if (apiService == null) {
+            Log.e(TAG, "API service is null, cannot fetch asset data");
+            String credentialsError = stratoClient.getCredentialsError();
+            postError(credentialsError != null ? credentialsError : "API service initialization failed");
+            return;
+        }
         
-        // Execute request asynchronously
-        client.newCall(request).enqueue(new okhttp3.Callback() {
+        final int load = loadGate.begin(SystemClock.elapsedRealtime());
+        if (load == LoadGate.JOINED) {
+            Log.d(TAG, "Load already in flight, joining it");
+            return;
+        }
+        
+        // Get OAuth token first
+        final PerfMetrics.AsyncSection tokenSection = PerfMetrics.beginAsync(PerfMetrics.STAGE_TOKEN);
+        stratoClient.getOAuthToken(new StratoClient.TokenCallback() {
             @Override
-            public void onFailure(okhttp3.Call call, IOException e) {
-                Log.e(TAG, "Failed to get OAuth token: " + e.getMessage());
-                callback.onError(e.getMessage());
+            public void onTokenReceived(String token) {
+                PerfMetrics.endAsync(tokenSection);
+                
+                // Token received, now fetch assets
+                fetchAssets(load);
             }
             
             @Override
-            public void onResponse(okhttp3.Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Failed to get OAuth token: " + response.code());
-                    callback.onError("HTTP error: " + response.code());
-                    return;
-                }
-                
-                try {
-                    String responseBody = response.body().string();
-                    JSONObject jsonObject = new JSONObject(responseBody);
-                    String token = jsonObject.getString("access_token");
-                    long expiresIn = jsonObject.getLong("expires_in");
-                    
-                    // Calculate expiration time
-                    tokenExpiresAt = System.currentTimeMillis() / 1000 + expiresIn;
-                    Log.d(TAG, "New OAuth token expires at: " + tokenExpiresAt);
-                    
-                    // Return token
-                    callback.onTokenReceived(token);
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error parsing OAuth token response: " + e.getMessage());
-                    callback.onError("Error parsing response: " + e.getMessage());
-                }
+            public void onError(String error) {
+                PerfMetrics.endAsync(tokenSection);
+                Log.e(TAG, "Error getting OAuth token: " + error);
+                failLoad(load, "Error getting OAuth token: " + error);
             }
         });
     }
     
-    private void fetchAssets() {
+    /**
+     * Like loadData, but if a load is in flight another one follows it, since that load's chain
+     * read may predate whatever prompted this call
+     */
+    private void reload() {
+        if (loadGate.isInFlight(SystemClock.elapsedRealtime())) {
+            reloadAfterLoad = true;
+        }
+        loadData();
+    }
+    
+    /**
+     * Ends the load, starting the follow-up load if one was requested during it. Returns false,
+     * doing nothing, if the load had already ended or timed out and been replaced.
+     */
+    private boolean finishLoad(int load) {
+        if (!loadGate.finish(load)) {
+            return false;
+        }
+        if (reloadAfterLoad) {
+            reloadAfterLoad = false;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    loadData();
+                }
+            });
+        }
+        return true;
+    }
+    
+    private void fetchAssets(final int load) {
+        if (aggregateHoldings) {
+            fetchAssetTotals(load);
+            return;
+        }
+        
         // Fetch assets
-        String ownerCommonName = "eq." + userCommonName;
+        String ownerCommonName = "eq." + stratoClient.getUserCommonName();
+        final long requestedAt = SystemClock.uptimeMillis();
+        final PerfMetrics.AsyncSection callSection = PerfMetrics.beginAsync(PerfMetrics.STAGE_ASSETS_CALL);
         apiService.getAssets(ownerCommonName).enqueue(new Callback<List<Asset>>() {
             @Override
             public void onResponse(Call<List<Asset>> call, retrofit2.Response<List<Asset>> response) {
+                PerfMetrics.endAsync(callSection);
+                if (!loadGate.isCurrent(load)) {
+                    return;
+                }
                 if (response.isSuccessful() && response.body() != null) {
-                    assets = response.body();
-                    Log.d(TAG, "Fetched " + assets.size() + " assets");
+                    // Keep the rows in columns; the decoded objects are garbage from here
+                    holdings = HoldingsStore.of(response.body());
+                    assetTotals = null;
+                    Log.d(TAG, "Fetched " + holdings.size() + " assets");
+                    
+                    // Trades confirmed before this read are now part of the chain state
+                    reconcilePendingTrades(requestedAt, null);
                     
                     // Now fetch oracle values
-                    fetchOracleValues();
+                    fetchOracleValues(load);
+                    
+                    if (metadataCache.isStale()) {
+                        refreshAssetMetadata();
+                    }
                 } else {
                     Log.e(TAG, "Error fetching assets: " + response.code());
-                    if (dataLoadedListener != null) {
-                        dataLoadedListener.onError("Error fetching assets: " + response.code());
-                    }
+                    failLoad(load, "Error fetching assets: " + response.code());
                 }
             }
             
             @Override
             public void onFailure(Call<List<Asset>> call, Throwable t) {
+                PerfMetrics.endAsync(callSection);
                 Log.e(TAG, "Asset API call failed: " + t.getMessage());
-                if (dataLoadedListener != null) {
-                    dataLoadedListener.onError("Asset API call failed: " + t.getMessage());
+                failLoad(load, "Asset API call failed: " + t.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Aggregated variant of fetchAssets: Cirrus groups the owner's rows by name and returns one
+     * total per asset. A node that doesn't allow aggregates answers 400, and loading falls back
+     * to token rows.
+     */
+    private void fetchAssetTotals(final int load) {
+        String ownerCommonName = "eq." + stratoClient.getUserCommonName();
+        final long requestedAt = SystemClock.uptimeMillis();
+        final PerfMetrics.AsyncSection callSection = PerfMetrics.beginAsync(PerfMetrics.STAGE_ASSETS_CALL);
+        apiService.getAssetTotals(ownerCommonName, AssetTotal.SELECT).enqueue(new Callback<List<AssetTotal>>() {
+            @Override
+            public void onResponse(Call<List<AssetTotal>> call, retrofit2.Response<List<AssetTotal>> response) {
+                PerfMetrics.endAsync(callSection);
+                if (!loadGate.isCurrent(load)) {
+                    return;
                 }
+                if (response.isSuccessful() && response.body() != null) {
+                    assetTotals = response.body();
+                    holdings = HoldingsStore.EMPTY;
+                    Log.d(TAG, "Fetched totals for " + assetTotals.size() + " assets");
+                    
+                    // Trades confirmed before this read are now part of the chain state
+                    reconcilePendingTrades(requestedAt, null);
+                    
+                    fetchOracleValues(load);
+                    
+                    if (metadataCache.isStale()) {
+                        refreshAssetMetadata();
+                    }
+                } else if (response.code() == 400) {
+                    Log.e(TAG, "Node rejected the aggregate query, loading token rows instead");
+                    aggregateHoldings = false;
+                    fetchAssets(load);
+                } else {
+                    Log.e(TAG, "Error fetching asset totals: " + response.code());
+                    failLoad(load, "Error fetching assets: " + response.code());
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<List<AssetTotal>> call, Throwable t) {
+                PerfMetrics.endAsync(callSection);
+                Log.e(TAG, "Asset totals API call failed: " + t.getMessage());
+                failLoad(load, "Asset API call failed: " + t.getMessage());
             }
         });
     }
     
-    private void fetchOracleValues() {
+    private void fetchOracleValues(final int load) {
+        final PerfMetrics.AsyncSection callSection = PerfMetrics.beginAsync(PerfMetrics.STAGE_ORACLE_CALL);
         apiService.getOracleValues().enqueue(new Callback<List<Oracle>>() {
             @Override
             public void onResponse(Call<List<Oracle>> call, retrofit2.Response<List<Oracle>> response) {
+                PerfMetrics.endAsync(callSection);
+                if (!loadGate.isCurrent(load)) {
+                    return;
+                }
                 if (response.isSuccessful() && response.body() != null) {
                     List<Oracle> oracles = response.body();
                     processOracleData(oracles);
                     
                     // Process asset data now that we have oracle values
-                    processAssetData();
-                    
-                    // Notify listener that data is loaded
-                    if (dataLoadedListener != null) {
-                        dataLoadedListener.onDataLoaded();
-                    }
+                    finishLoad(load);
+                    publish();
                 } else {
                     Log.e(TAG, "Error fetching oracle values: " + response.code());
-                    if (dataLoadedListener != null) {
-                        dataLoadedListener.onError("Error fetching oracle values: " + response.code());
-                    }
+                    failLoad(load, "Error fetching oracle values: " + response.code());
                 }
             }
             
             @Override
             public void onFailure(Call<List<Oracle>> call, Throwable t) {
+                PerfMetrics.endAsync(callSection);
                 Log.e(TAG, "Oracle API call failed: " + t.getMessage());
-                if (dataLoadedListener != null) {
-                    dataLoadedListener.onError("Oracle API call failed: " + t.getMessage());
-                }
+                failLoad(load, "Oracle API call failed: " + t.getMessage());
             }
         });
     }
     
-    private void processOracleData(List<Oracle> oracles) {
-        // Process data to keep only the latest price for each unique asset name
-        for (Oracle oracle : oracles) {
-            if (oracle.name != null && oracle.consensusPrice != null) {
-                // Later entries will overwrite earlier ones
-                latestPrices.put(oracle.name, oracle.consensusPrice);
-            }
+    /**
+     * Fetches asset metadata (decimals, oracle aliases, stablecoins) and switches to it. Until
+     * this succeeds the cached or built-in registry stays in use.
+     */
+    private void refreshAssetMetadata() {
+        if (metadataRefreshing) {
+            return;
         }
-        
-        // Store reference to certain prices for mapping
-        String ethPrice = latestPrices.get("ETH");
-        String btcPrice = latestPrices.get("BTC");
-        String goldPrice = latestPrices.get("Gold");
-        String silverPrice = latestPrices.get("Silver");
-        
-        // Apply hard-coded price mappings
-        if (ethPrice != null) latestPrices.put("ETHST", ethPrice);
-        if (goldPrice != null) latestPrices.put("PAXGST", goldPrice);
-        if (silverPrice != null) latestPrices.put("Silver - Fractional 100 oz Bars", silverPrice);
-        latestPrices.put("STRAT", "1");
-        latestPrices.put("USDCST", "1");
-        latestPrices.put("USDST", "1");
-        latestPrices.put("USDTST", "1");
-        if (btcPrice != null) latestPrices.put("WBTCST", btcPrice);
-    }
-    
-    private void processAssetData() {
-        // Reset counters
-        fungibleTokensCount = 0;
-        fungibleTokensValue = 0;
-        nonFungibleTokensCount = 0;
-        cataTokensCount = 0;
-        totalCataTokens = 0;
-        
-        // Group assets by name
-        Map<String, AssetGroup> assetGroups = new HashMap<>();
-        
-        for (Asset asset : assets) {
-            String name = asset.name != null ? asset.name : (asset.id != null ? asset.id : "Unnamed Asset");
-            long quantity = asset.quantity != null ? Long.parseLong(asset.quantity) : 0;
-            
-            if (!assetGroups.containsKey(name)) {
-                // Get the correct decimals value (using hardcoded values for certain assets)
-                int decimals = getDecimalsForAsset(name, asset.decimals);
-                
-                AssetGroup group = new AssetGroup();
-                group.name = name;
-                group.totalQuantity = 0;
-                group.tokenCount = 0;
-                group.decimals = decimals;
-                
-                assetGroups.put(name, group);
+        metadataRefreshing = true;
+        // The cached registry is in use meanwhile, so this can wait behind everything else
+        apiService.getAssetMetadata(RequestScheduler.Priority.PREFETCH).enqueue(new Callback<List<AssetRegistry.Entry>>() {
+            @Override
+            public void onResponse(Call<List<AssetRegistry.Entry>> call, retrofit2.Response<List<AssetRegistry.Entry>> response) {
+                metadataRefreshing = false;
+                if (response.isSuccessful() && response.body() != null && !response.body().isEmpty()) {
+                    List<AssetRegistry.Entry> entries = response.body();
+                    calculator.setRegistry(AssetRegistry.compile(entries));
+                    metadataCache.save(entries);
+                    Log.d(TAG, "Refreshed metadata for " + entries.size() + " assets");
+                    publish();
+                } else {
+                    Log.e(TAG, "Error fetching asset metadata: " + response.code());
+                }
             }
             
-            AssetGroup group = assetGroups.get(name);
-            group.totalQuantity += quantity;
-            group.tokenCount += 1;
-            group.tokens.add(asset);
-        }
-        
-        // Convert to list and sort alphabetically
-        sortedAssets = new ArrayList<>(assetGroups.values());
-        Collections.sort(sortedAssets, new Comparator<AssetGroup>() {
             @Override
-            public int compare(AssetGroup a1, AssetGroup a2) {
-                return a1.name.compareTo(a2.name);
+            public void onFailure(Call<List<AssetRegistry.Entry>> call, Throwable t) {
+                metadataRefreshing = false;
+                Log.e(TAG, "Asset metadata call failed: " + t.getMessage());
             }
         });
-        
-        // Process each asset group
-        for (AssetGroup asset : sortedAssets) {
-            String price = latestPrices.get(asset.name);
-            
-            if ("CATA".equals(asset.name)) {
-                // Count CATA tokens separately
-                cataTokensCount += asset.tokenCount;
-                
-                // Calculate total CATA tokens (quantity)
-                try {
-                    // Calculate actual quantity as a number with full precision
-                    if (asset.decimals != 0) {
-                        // Use string operations for high precision
-                        String quantityStr = String.valueOf(asset.totalQuantity);
-                        int decimals = asset.decimals;
-                        
-                        if (quantityStr.length() <= decimals) {
-                            // Need to add leading zeros
-                            int missingZeros = decimals - quantityStr.length();
-                            StringBuilder sb = new StringBuilder("0.");
-                            for (int i = 0; i < missingZeros; i++) {
-                                sb.append('0');
-                            }
-                            sb.append(quantityStr);
-                            asset.calculatedQuantity = Double.parseDouble(sb.toString());
-                        } else {
-                            // Insert decimal point at the right position from the end
-                            int insertPosition = quantityStr.length() - decimals;
-                            String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
-                            asset.calculatedQuantity = Double.parseDouble(result);
-                        }
-                    } else {
-                        asset.calculatedQuantity = asset.totalQuantity;
-                    }
-                    
-                    totalCataTokens += asset.calculatedQuantity;
-                } catch (Exception e) {
-                    Log.e(TAG, "Error calculating CATA quantity: " + e.getMessage());
-                    asset.calculatedQuantity = 0;
-                }
-            } else if (price != null) {
-                // This is a fungible token with a price oracle
-                fungibleTokensCount += asset.tokenCount;
-                
-                // Calculate value
-                try {
-                    // Calculate actual quantity as a number with full precision
-                    double actualQuantity;
-                    if (asset.decimals != 0) {
-                        // Use string operations for high precision
-                        String quantityStr = String.valueOf(asset.totalQuantity);
-                        int decimals = asset.decimals;
-                        
-                        if (quantityStr.length() <= decimals) {
-                            // Need to add leading zeros
-                            int missingZeros = decimals - quantityStr.length();
-                            StringBuilder sb = new StringBuilder("0.");
-                            for (int i = 0; i < missingZeros; i++) {
-                                sb.append('0');
-                            }
-                            sb.append(quantityStr);
-                            actualQuantity = Double.parseDouble(sb.toString());
-                        } else {
-                            // Insert decimal point at the right position from the end
-                            int insertPosition = quantityStr.length() - decimals;
-                            String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
-                            actualQuantity = Double.parseDouble(result);
-                        }
-                    } else {
-                        actualQuantity = asset.totalQuantity;
-                    }
-                    
-                    // Parse price with full precision
-                    double priceValue = Double.parseDouble(price);
-                    
-                    // Calculate total value with maximum available precision
-                    double totalValue = actualQuantity * priceValue;
-                    
-                    // Add to the running total
-                    fungibleTokensValue += totalValue;
-                    
-                    // Store calculated quantity and value for display
-                    asset.calculatedQuantity = actualQuantity;
-                    asset.calculatedValue = totalValue;
-                } catch (Exception e) {
-                    Log.e(TAG, "Error calculating total value: " + e.getMessage());
-                }
-            } else {
-                // This is a non-fungible token without a price oracle
-                nonFungibleTokensCount += asset.tokenCount;
-            }
-        }
     }
     
-    private int getDecimalsForAsset(String assetName, Integer originalDecimals) {
-        // Hardcoded assumptions for specific asset types
-        Map<String, Integer> knownDecimals = new HashMap<>();
-        knownDecimals.put("CATA", 18);
-        knownDecimals.put("ETHST", 18);
-        knownDecimals.put("STRAT", 4);
-        
-        // If we have a hardcoded value for this asset, use it
-        if (knownDecimals.containsKey(assetName)) {
-            return knownDecimals.get(assetName);
+    // Ends a failed load and reports it, unless the load was already over
+    private void failLoad(int load, String message) {
+        if (finishLoad(load)) {
+            postError(message);
         }
-        
-        // Otherwise return the original value or 0 if null
-        return originalDecimals != null ? originalDecimals : 0;
     }
     
-    public String calculateActualValue(long quantity, int decimals) {
-        // For large decimal values (like 18), we need to handle the calculation carefully
-        if (decimals > 15) {
-            // Convert to string and manipulate
-            String quantityStr = String.valueOf(quantity);
-            
-            if (quantityStr.length() <= decimals) {
-                // Need to add leading zeros
-                int missingZeros = decimals - quantityStr.length();
-                StringBuilder sb = new StringBuilder("0.");
-                for (int i = 0; i < missingZeros; i++) {
-                    sb.append('0');
+    private void postError(final String message) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                lastError = message;
+                for (OnDataLoadedListener listener : new ArrayList<>(dataLoadedListeners)) {
+                    listener.onError(message);
                 }
-                sb.append(quantityStr);
-                return String.valueOf(Double.parseDouble(sb.toString()));
-            } else {
-                // Insert decimal point at the right position from the end
-                int insertPosition = quantityStr.length() - decimals;
-                String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
-                return String.valueOf(Double.parseDouble(result));
             }
-        } else {
-            // For smaller decimal values, direct division works fine
-            double value = quantity / Math.pow(10, decimals);
-            return String.valueOf(value);
+        });
+    }
+    
+    /**
+     * Queues a rebuild of the display model. A burst of updates shares one rebuild: inputs that
+     * arrive before the queued rebuild runs are all included in it.
+     */
+    private void publish() {
+        if (rebuildQueued) {
+            return;
+        }
+        rebuildQueued = true;
+        try {
+            processingExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    rebuildQueued = false;
+                    rebuild();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Nothing will run the rebuild, so don't let it hold back later ones
+            rebuildQueued = false;
+            throw e;
         }
     }
     
-    // Getters for the processed data
-    public List<AssetGroup> getSortedAssets() {
-        return sortedAssets;
+    private void rebuild() {
+        long backgroundStart = SystemClock.elapsedRealtimeNanos();
+        processAssetData();
+        
+        long start = PerfMetrics.begin(PerfMetrics.STAGE_DISPLAY_MODEL);
+        PortfolioDisplayModel model = PortfolioDisplayModel.build(calculator.getSnapshot());
+        
+        // Diffs are delivered in order, one per model, so the view sees every change even if it
+        // only draws the latest model
+        final PortfolioDiff diff = PortfolioDiff.compute(displayModel.get(), model);
+        displayModel.set(model);
+        PerfMetrics.end(PerfMetrics.STAGE_DISPLAY_MODEL, start);
+        final long backgroundNanos = SystemClock.elapsedRealtimeNanos() - backgroundStart;
+        
+        // The model is already published; the main thread only notifies the view
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                long start = PerfMetrics.begin(PerfMetrics.STAGE_MAIN_THREAD);
+                lastError = null;
+                for (OnDataLoadedListener listener : new ArrayList<>(dataLoadedListeners)) {
+                    listener.onDataLoaded(diff);
+                }
+                if (PerfMetrics.endMainThread(start, backgroundNanos)) {
+                    Log.w(TAG, "Main thread handoff exceeded its " + PerfMetrics.MAIN_THREAD_BUDGET_MS + "ms budget");
+                }
+            }
+        });
     }
     
-    public int getFungibleTokensCount() {
-        return fungibleTokensCount;
+    private void processOracleData(List<Oracle> oracles) {
+        calculator.processOracleData(oracles);
     }
     
-    public double getFungibleTokensValue() {
-        return fungibleTokensValue;
+    private void processAssetData() {
+        long allocatedBefore = PerfMetrics.getRuntimeBytesAllocated();
+        long start = PerfMetrics.begin(PerfMetrics.STAGE_PROCESS);
+        
+        Map<String, AssetGroup> assetGroups = assetTotals != null
+                ? calculator.groupTotals(assetTotals) : calculator.groupAssets(holdings);
+        
+        // Apply trades that are not yet reflected in chain state
+        applyPendingTrades(assetGroups);
+        
+        calculator.summarize(assetGroups);
+        
+        PerfMetrics.end(PerfMetrics.STAGE_PROCESS, start);
+        PerfMetrics.addRowsProcessed(assetTotals != null ? assetTotals.size() : holdings.size());
+        if (allocatedBefore >= 0) {
+            PerfMetrics.addBytesAllocated(PerfMetrics.getRuntimeBytesAllocated() - allocatedBefore);
+        }
     }
     
-    public int getNonFungibleTokensCount() {
-        return nonFungibleTokensCount;
+    private void applyPendingTrades(Map<String, AssetGroup> assetGroups) {
+        for (AssetGroup group : assetGroups.values()) {
+            knownDecimals.put(group.name, group.decimals);
+        }
+        
+        for (PendingTrade pendingTrade : pendingTrades.values()) {
+            TradeOrder order = pendingTrade.order;
+            
+            AssetGroup group = assetGroups.get(order.assetName);
+            if (group == null) {
+                // First holding of this asset. Its base units can't be worked out without its
+                // decimals, so it shows up once the trade reaches chain state instead.
+                Integer decimals = decimalsOf(order.assetName);
+                if (decimals == null) {
+                    Log.d(TAG, "Decimals of " + order.assetName + " unknown, not applying trade " + order.idempotencyKey);
+                    continue;
+                }
+                group = new AssetGroup();
+                group.name = order.assetName;
+                group.decimals = decimals;
+                assetGroups.put(order.assetName, group);
+            }
+            
+            // Convert the traded amount to base units
+            long delta = BigDecimal.valueOf(order.quantity)
+                    .movePointRight(group.decimals)
+                    .setScale(0, RoundingMode.HALF_UP)
+                    .longValue();
+            if (order.side == TradeOrder.Side.SELL) {
+                delta = -delta;
+            }
+            
+            group.totalQuantity = Math.max(0, group.totalQuantity + delta);
+            group.pending = true;
+        }
     }
     
-    public int getCataTokensCount() {
-        return cataTokensCount;
+    /**
+     * Decimals from the registry, else those the asset was last valued with, else null
+     */
+    private Integer decimalsOf(String assetName) {
+        AssetRegistry registry = calculator.getRegistry();
+        int id = registry.idOf(assetName);
+        if (id >= 0 && registry.getDecimals(id) != AssetRegistry.NO_DECIMALS) {
+            return registry.getDecimals(id);
+        }
+        return knownDecimals.get(assetName);
     }
     
-    public double getTotalCataTokens() {
-        return totalCataTokens;
+    /**
+     * Asset metadata in use, the built-in registry until metadata has been read
+     */
+    public AssetRegistry getRegistry() {
+        return calculator.getRegistry();
     }
     
-    public String getUserCommonName() {
-        return userCommonName;
+    /**
+     * Latest portfolio, or null before the first load completes. Safe to call from any thread;
+     * the result never changes, so hold on to it for a consistent view.
+     */
+    public PortfolioDisplayModel getDisplayModel() {
+        return displayModel.get();
     }
     
-    public Map<String, String> getLatestPrices() {
-        return latestPrices;
+    public String getUserCommonName() {
+        return stratoClient.getUserCommonName();
     }
 }
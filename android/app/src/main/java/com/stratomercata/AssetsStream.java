@@ -0,0 +1,228 @@
+package com.stratomercata;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.Oracle;
+import com.stratomercata.portfolio.PortfolioJson;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
+
+/**
+ * Push channel that carries oracle and asset updates over Server-Sent Events.
+ * Reconnects with exponential backoff and resumes from the last event id it saw.
+ */
+public class AssetsStream {
+    private static final String TAG = "AssetsStream";
+    private static final long INITIAL_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+    
+    // Event types sent by the server
+    private static final String EVENT_ORACLE = "oracle";
+    private static final String EVENT_ASSET = "asset";
+    private static final String EVENT_RESET = "reset";
+    
+    // Interface for stream events, always called on the main thread
+    public interface StreamListener {
+        void onConnected();
+        void onOracleUpdate(List<Oracle> oracles);
+        void onAssetUpdate(List<Asset> assets);
+        void onReset();
+        void onDisconnected(String reason);
+    }
+    
+    private final OkHttpClient httpClient;
+    private final String streamUrl;
+    private final String ownerCommonName;
+    private final StreamListener listener;
+    private final Gson gson = PortfolioJson.newGson();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    private EventSource eventSource;
+    private String lastEventId;
+    private long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+    private boolean running = false;
+    
+    private final Runnable reconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            connect();
+        }
+    };
+    
+    public AssetsStream(OkHttpClient httpClient, String streamUrl, String ownerCommonName, StreamListener listener) {
+        // Server-sent events never finish, so the stream must not inherit the read timeout
+        this.httpClient = httpClient.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.streamUrl = streamUrl;
+        this.ownerCommonName = ownerCommonName;
+        this.listener = listener;
+    }
+    
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        connect();
+    }
+    
+    public void stop() {
+        running = false;
+        mainHandler.removeCallbacks(reconnectRunnable);
+        if (eventSource != null) {
+            eventSource.cancel();
+            eventSource = null;
+        }
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    private void connect() {
+        if (!running) {
+            return;
+        }
+        
+        HttpUrl url = HttpUrl.parse(streamUrl);
+        if (url == null) {
+            Log.e(TAG, "Invalid stream URL: " + streamUrl);
+            running = false;
+            listener.onDisconnected("Invalid stream URL");
+            return;
+        }
+        
+        Request.Builder builder = new Request.Builder()
+                .url(url.newBuilder().addQueryParameter("ownerCommonName", "eq." + ownerCommonName).build())
+                .header("Accept", "text/event-stream");
+        
+        // Resume from the last event we processed
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        
+        eventSource = EventSources.createFactory(httpClient).newEventSource(builder.build(), new EventSourceListener() {
+            @Override
+            public void onOpen(@NonNull final EventSource source, @NonNull Response response) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!running || source != eventSource) {
+                            return;
+                        }
+                        Log.d(TAG, "Stream connected, resuming after event " + lastEventId);
+                        retryDelayMs = INITIAL_RETRY_DELAY_MS;
+                        listener.onConnected();
+                    }
+                });
+            }
+            
+            @Override
+            public void onEvent(@NonNull final EventSource source, @Nullable final String id, @Nullable String type, @NonNull String data) {
+                // Decode on the stream's reader thread; asset events can be large
+                final Runnable delivery = decodeEvent(type, data);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Drop events from a connection that has already been replaced or cancelled
+                        if (!running || source != eventSource) {
+                            return;
+                        }
+                        if (delivery != null) {
+                            delivery.run();
+                        }
+                        if (id != null) {
+                            lastEventId = id;
+                        }
+                    }
+                });
+            }
+            
+            @Override
+            public void onClosed(@NonNull EventSource source) {
+                handleDisconnect(source, "Stream closed by server");
+            }
+            
+            @Override
+            public void onFailure(@NonNull EventSource source, @Nullable Throwable t, @Nullable Response response) {
+                String reason = t != null ? t.getMessage() : (response != null ? "HTTP error: " + response.code() : "unknown error");
+                handleDisconnect(source, reason);
+            }
+        });
+    }
+    
+    /**
+     * Decodes an event into the listener call that delivers it, to be run on the main thread.
+     * Returns null for events that are ignored or can't be parsed.
+     */
+    private Runnable decodeEvent(String type, String data) {
+        try {
+            if (EVENT_ORACLE.equals(type)) {
+                final List<Oracle> oracles = Arrays.asList(gson.fromJson(data, Oracle[].class));
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onOracleUpdate(oracles);
+                    }
+                };
+            } else if (EVENT_ASSET.equals(type)) {
+                final List<Asset> assets = Arrays.asList(gson.fromJson(data, Asset[].class));
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onAssetUpdate(assets);
+                    }
+                };
+            } else if (EVENT_RESET.equals(type)) {
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onReset();
+                    }
+                };
+            }
+            Log.d(TAG, "Ignoring stream event of type " + type);
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing stream event: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    private void handleDisconnect(final EventSource source, final String reason) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Ignore failures from a connection that has already been replaced or cancelled
+                if (!running || source != eventSource) {
+                    return;
+                }
+                eventSource = null;
+                
+                Log.e(TAG, "Stream disconnected: " + reason + ", retrying in " + retryDelayMs + "ms");
+                listener.onDisconnected(reason);
+                
+                // Back off exponentially before reconnecting
+                mainHandler.postDelayed(reconnectRunnable, retryDelayMs);
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+            }
+        });
+    }
+}
@@ -1,18 +1,27 @@
 package com.stratomercata;
 
+import android.app.Activity;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.os.SystemClock;
 import android.text.Layout;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
 
-import java.text.DecimalFormat;
+import com.stratomercata.portfolio.AssetGroup;
+import com.stratomercata.portfolio.AssetIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +30,8 @@ import java.util.Map;
  */
 public class AssetsView extends View implements AssetsService.OnDataLoadedListener {
     private static final String TAG = "AssetsView";
+    private static final String DRAW_SECTION = "AssetsView.onDraw";
+    private static final String MEASURE_SECTION = "AssetsView.onMeasure";
     private static final int PADDING = 40;
     private static final int TEXT_SIZE_TITLE = 40;
     private static final int TEXT_SIZE_HEADER = 35;
@@ -28,11 +39,18 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
     private static final int ROW_HEIGHT = 60;
     private static final int TABLE_PADDING = 10;
     
+    // Larger portfolios show the first rows of the current order; search narrows them down
+    private static final int MAX_VISIBLE_ROWS = 200;
+    
+    // How long a changed row stays highlighted, fading out
+    private static final long HIGHLIGHT_MS = 800;
+    
     // Service for data loading and processing
     private AssetsService assetsService;
     
     // Data state
     private boolean dataLoaded = false;
+    private boolean fullyDrawnReported = false;
     private String errorMessage = null;
     
     // UI
@@ -44,11 +62,44 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
     private final Paint tableHeaderBgPaint;
     private final Paint tableRowBgPaint;
     private final Paint tableRowAltBgPaint;
-    private final DecimalFormat priceFormat;
-    private final DecimalFormat quantityFormat;
+    private final Paint tablePendingRowBgPaint;
+    private final Paint highlightPaint;
     private StaticLayout errorLayout;
     private TextPaint errorPaint;
     
+    // Top of the asset breakdown table as last drawn, for mapping taps to rows; -1 if not drawn
+    private int assetTableTop = -1;
+    private int pressedRow = -1;
+    
+    // Breakdown rows matching the search bar, re-queried when the query or the model changes
+    private AssetIndex.Query query = newQuery();
+    private PortfolioDisplayModel queriedModel;
+    private AssetIndex.Result queryResult;
+    private List<PortfolioDisplayModel.Row> visibleRows = Collections.emptyList();
+    
+    // Row text already truncated to its columns, per asset; dropped only for rows a diff
+    // reports as changed, or when the width changes
+    private static final class RenderedRow {
+        final String name;
+        final String quantity;
+        final String tokenCount;
+        final String value;
+        
+        RenderedRow(String name, String quantity, String tokenCount, String value) {
+            this.name = name;
+            this.quantity = quantity;
+            this.tokenCount = tokenCount;
+            this.value = value;
+        }
+    }
+    
+    private final Map<String, RenderedRow> renderedRows = new HashMap<>();
+    private int renderedWidth = -1;
+    
+    // Asset name -> uptime its row changed, while the highlight is fading
+    private final Map<String, Long> highlights = new HashMap<>();
+    private boolean highlightChanges = true;
+    
     public AssetsView(Context context) {
         this(context, null);
     }
@@ -56,10 +107,6 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
     public AssetsView(Context context, AttributeSet attrs) {
         super(context, attrs);
         
-        // Initialize formatters
-        priceFormat = new DecimalFormat("$#,##0.00");
-        quantityFormat = new DecimalFormat("#,##0.######");
-        
         // Initialize paints
         backgroundPaint = new Paint();
         backgroundPaint.setColor(Color.parseColor("#F5F5F5"));
@@ -99,6 +146,14 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         tableRowAltBgPaint.setColor(Color.parseColor("#F9F9F9"));
         tableRowAltBgPaint.setStyle(Paint.Style.FILL);
         
+        tablePendingRowBgPaint = new Paint();
+        tablePendingRowBgPaint.setColor(Color.parseColor("#FFF8E1"));
+        tablePendingRowBgPaint.setStyle(Paint.Style.FILL);
+        
+        highlightPaint = new Paint();
+        highlightPaint.setColor(Color.parseColor("#C8E6C9"));
+        highlightPaint.setStyle(Paint.Style.FILL);
+        
         errorPaint = new TextPaint();
         errorPaint.setColor(Color.RED);
         errorPaint.setTextSize(TEXT_SIZE_CONTENT);
@@ -109,43 +164,153 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
     }
     
     private void initService(Context context) {
-        // Create service and set listener
-        assetsService = new AssetsService(context);
-        assetsService.setOnDataLoadedListener(this);
+        // The service is process-wide, so a recreated activity reuses the portfolio it already
+        // loaded; the first view starts the load as early as inflation
+        assetsService = AssetsService.getInstance(context);
+        assetsService.ensureLoaded();
+    }
+    
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
         
-        // Load data
-        assetsService.loadData();
+        // Delivers the loaded portfolio, if any, right away
+        assetsService.addOnDataLoadedListener(this);
+    }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+        // The service outlives this view, so it must not keep a reference to it
+        assetsService.removeOnDataLoadedListener(this);
+        super.onDetachedFromWindow();
+    }
+    
+    public void startUpdates() {
+        assetsService.startUpdates();
+    }
+    
+    /**
+     * Shows only the breakdown rows matching query, in its order. Queries run against the
+     * model's prebuilt index, so this is cheap enough to call on every keystroke.
+     */
+    public void setQuery(AssetIndex.Query query) {
+        query.limit = Math.min(query.limit, MAX_VISIBLE_ROWS);
+        this.query = query;
+        queriedModel = null;
+        requestLayout();
+        invalidate();
+    }
+    
+    private static AssetIndex.Query newQuery() {
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.limit = MAX_VISIBLE_ROWS;
+        return query;
+    }
+    
+    private void updateVisibleRows(PortfolioDisplayModel model) {
+        if (model == queriedModel) {
+            return;
+        }
+        queriedModel = model;
+        queryResult = model.index.query(query);
+        List<PortfolioDisplayModel.Row> rows = new ArrayList<>(queryResult.rows.length);
+        for (int position : queryResult.rows) {
+            rows.add(model.rows.get(position));
+        }
+        visibleRows = rows;
+    }
+    
+    public void stopUpdates() {
+        assetsService.stopUpdates();
+    }
+    
+    /**
+     * Whether rows whose values change are briefly highlighted; on by default
+     */
+    public void setHighlightChanges(boolean highlightChanges) {
+        this.highlightChanges = highlightChanges;
+        if (!highlightChanges) {
+            highlights.clear();
+        }
     }
     
     @Override
-    public void onDataLoaded() {
-        // Mark data as loaded and trigger redraw
+    public void onDataLoaded(PortfolioDiff diff) {
+        boolean firstLoad = !dataLoaded;
         dataLoaded = true;
+        errorMessage = null;
+        errorLayout = null;
+        
+        // Forget the rendering of changed rows only; moved rows keep theirs
+        if (diff.full) {
+            renderedRows.clear();
+            highlights.clear();
+        } else if (!diff.isEmpty()) {
+            long now = SystemClock.uptimeMillis();
+            pruneHighlights(now);
+            for (String name : diff.removed) {
+                renderedRows.remove(name);
+                highlights.remove(name);
+            }
+            for (String name : diff.inserted) {
+                renderedRows.remove(name);
+                if (highlightChanges) {
+                    highlights.put(name, now);
+                }
+            }
+            for (String name : diff.changed) {
+                renderedRows.remove(name);
+                if (highlightChanges) {
+                    highlights.put(name, now);
+                }
+            }
+        }
         invalidate();
         
-        // Request layout to adjust the view height based on the number of assets
-        requestLayout();
+        // Re-measure only when the number of rows shown, and so the view height, changes
+        int shownBefore = visibleRows.size();
+        updateVisibleRows(assetsService.getDisplayModel());
+        if (firstLoad || visibleRows.size() != shownBefore) {
+            requestLayout();
+        }
+        
+        // The first load is when the screen becomes useful; startup benchmarks measure up to here
+        if (!fullyDrawnReported) {
+            fullyDrawnReported = true;
+            setContentDescription(getResources().getString(R.string.portfolio_loaded));
+            if (getContext() instanceof Activity) {
+                ((Activity) getContext()).reportFullyDrawn();
+            }
+        }
     }
     
     @Override
     public void onError(String message) {
         // Store error message and trigger redraw
         errorMessage = message;
+        errorLayout = null;
         invalidate();
     }
     
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = PerfMetrics.begin(MEASURE_SECTION);
+        measureView(widthMeasureSpec);
+        PerfMetrics.end(MEASURE_SECTION, start);
+    }
+    
+    private void measureView(int widthMeasureSpec) {
         int width = MeasureSpec.getSize(widthMeasureSpec);
         int height = 800; // Default height
         
         if (dataLoaded) {
-            // Calculate height based on the number of assets
-            List<AssetsService.AssetGroup> sortedAssets = assetsService.getSortedAssets();
+            // Calculate height based on the number of assets shown
+            updateVisibleRows(assetsService.getDisplayModel());
+            int rowCount = visibleRows.size();
             height = PADDING * 3 + TEXT_SIZE_TITLE + // Title only
                     TEXT_SIZE_HEADER * 2 + ROW_HEIGHT * 3 + // Total Value section
                     PADDING * 2 + TEXT_SIZE_HEADER + TEXT_SIZE_CONTENT + PADDING + // Asset Breakdown section
-                    ROW_HEIGHT * (sortedAssets.size() + 1) + PADDING * 2; // Asset table
+                    ROW_HEIGHT * (rowCount + 1) + PADDING * 2; // Asset table
         } else if (errorMessage != null) {
             // Height for error message
             height = 300;
@@ -156,6 +321,12 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
     
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = PerfMetrics.begin(DRAW_SECTION);
+        drawView(canvas);
+        PerfMetrics.end(DRAW_SECTION, start);
+    }
+    
+    private void drawView(Canvas canvas) {
         super.onDraw(canvas);
         
         int width = getWidth();
@@ -163,6 +334,7 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         
         // Draw background
         canvas.drawRect(0, 0, width, height, backgroundPaint);
+        assetTableTop = -1;
         
         if (errorMessage != null) {
             // Draw error message
@@ -191,15 +363,9 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
             return;
         }
         
-        // Get data from service
-        List<AssetsService.AssetGroup> sortedAssets = assetsService.getSortedAssets();
-        int fungibleTokensCount = assetsService.getFungibleTokensCount();
-        double fungibleTokensValue = assetsService.getFungibleTokensValue();
-        int nonFungibleTokensCount = assetsService.getNonFungibleTokensCount();
-        int cataTokensCount = assetsService.getCataTokensCount();
-        double totalCataTokens = assetsService.getTotalCataTokens();
+        // Get data from service; the model is already formatted off the main thread
+        PortfolioDisplayModel model = assetsService.getDisplayModel();
         String userCommonName = assetsService.getUserCommonName();
-        Map<String, String> latestPrices = assetsService.getLatestPrices();
         
         // Draw title with username
         canvas.drawText("User Assets for " + userCommonName, PADDING, PADDING + TEXT_SIZE_TITLE, titlePaint);
@@ -235,26 +401,26 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         
         // Row 1: Fungible tokens
         canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, tableRowBgPaint);
-        canvas.drawText(fungibleTokensCount + " Fungible tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
-        canvas.drawText("worth " + priceFormat.format(fungibleTokensValue), PADDING + col1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+        canvas.drawText(model.fungibleTokensCount + " Fungible tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+        canvas.drawText("worth " + model.fungibleTokensValue, PADDING + col1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
         
         // Row 2: Non-fungible tokens
         y += ROW_HEIGHT;
         canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, tableRowAltBgPaint);
-        canvas.drawText(nonFungibleTokensCount + " non-fungible tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+        canvas.drawText(model.nonFungibleTokensCount + " non-fungible tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
         canvas.drawText("(unknown value)", PADDING + col1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
         
         // Row 3: CATA tokens
         y += ROW_HEIGHT;
         canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, tableRowBgPaint);
-        canvas.drawText(cataTokensCount + " CATA tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
-        canvas.drawText(quantityFormat.format(totalCataTokens) + " CATA", PADDING + col1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+        canvas.drawText(model.cataTokensCount + " CATA tokens", PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+        canvas.drawText(model.totalCataTokens + " CATA", PADDING + col1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
         
         // Draw Asset Breakdown section
         y += ROW_HEIGHT + PADDING * 2;
         canvas.drawText("Asset Breakdown:", PADDING, y + TEXT_SIZE_HEADER, headerPaint);
         
-        if (sortedAssets.isEmpty()) {
+        if (model.rows.isEmpty()) {
             y += TEXT_SIZE_HEADER + PADDING;
             canvas.drawText("No assets found", PADDING, y + TEXT_SIZE_CONTENT, contentPaint);
             return;
@@ -262,13 +428,76 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         
         // Draw asset count (without owner name)
         y += TEXT_SIZE_HEADER + PADDING;
-        canvas.drawText("Found " + sortedAssets.size() + " unique asset classes (across " + 
-                (fungibleTokensCount + nonFungibleTokensCount + cataTokensCount) + " tokens)", 
-                PADDING, y + TEXT_SIZE_CONTENT, contentPaint);
+        updateVisibleRows(model);
+        if (visibleRows.size() == model.rows.size()) {
+            canvas.drawText("Found " + model.rows.size() + " unique asset classes (across " + 
+                    model.getTotalTokensCount() + " tokens)", 
+                    PADDING, y + TEXT_SIZE_CONTENT, contentPaint);
+        } else if (visibleRows.isEmpty()) {
+            canvas.drawText("No matching assets (of " + model.rows.size() + ")", PADDING, y + TEXT_SIZE_CONTENT, contentPaint);
+            return;
+        } else {
+            canvas.drawText("Showing " + visibleRows.size() + " of " + queryResult.matchCount + " matching asset classes (" +
+                    model.rows.size() + " total)", 
+                    PADDING, y + TEXT_SIZE_CONTENT, contentPaint);
+        }
         
         // Draw asset breakdown table
         y += TEXT_SIZE_CONTENT + PADDING;
-        drawAssetBreakdownTable(canvas, width, y, sortedAssets, latestPrices);
+        drawAssetBreakdownTable(canvas, width, y, visibleRows);
+    }
+    
+    private void pruneHighlights(long now) {
+        Iterator<Long> changedAt = highlights.values().iterator();
+        while (changedAt.hasNext()) {
+            if (now - changedAt.next() >= HIGHLIGHT_MS) {
+                changedAt.remove();
+            }
+        }
+    }
+    
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressedRow = rowAt(event.getY());
+                return pressedRow >= 0;
+            case MotionEvent.ACTION_UP:
+                if (pressedRow >= 0 && pressedRow == rowAt(event.getY())) {
+                    performClick();
+                }
+                pressedRow = -1;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                pressedRow = -1;
+                return true;
+            default:
+                return pressedRow >= 0;
+        }
+    }
+    
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        if (pressedRow < 0) {
+            return false;
+        }
+        
+        // Open the drill-down for the tapped asset, listing its individual tokens
+        if (queryResult != null && pressedRow < queryResult.rows.length) {
+            AssetGroup asset = queriedModel.snapshot.sortedAssets.get(queryResult.rows[pressedRow]);
+            getContext().startActivity(AssetDetailActivity.newIntent(getContext(), asset.name, asset.tokenCount, asset.decimals));
+        }
+        return true;
+    }
+    
+    // Index of the breakdown row at y, or -1 outside the table body
+    private int rowAt(float y) {
+        if (!dataLoaded || errorMessage != null || assetTableTop < 0) {
+            return -1;
+        }
+        int row = (int) Math.floor((y - assetTableTop - ROW_HEIGHT) / ROW_HEIGHT);
+        return row >= 0 && row < visibleRows.size() ? row : -1;
     }
     
     /**
@@ -321,9 +550,11 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         }
     }
     
-    private void drawAssetBreakdownTable(Canvas canvas, int width, int y, List<AssetsService.AssetGroup> sortedAssets, Map<String, String> latestPrices) {
+    private void drawAssetBreakdownTable(Canvas canvas, int width, int y, List<PortfolioDisplayModel.Row> rows) {
+        assetTableTop = y;
+        
         // Draw table outline
-        RectF assetTableRect = new RectF(PADDING, y, width - PADDING, y + ROW_HEIGHT * (sortedAssets.size() + 1));
+        RectF assetTableRect = new RectF(PADDING, y, width - PADDING, y + ROW_HEIGHT * (rows.size() + 1));
         canvas.drawRoundRect(assetTableRect, 5, 5, tableBorderPaint);
         
         // Draw table header
@@ -343,65 +574,76 @@ public class AssetsView extends View implements AssetsService.OnDataLoadedListen
         canvas.drawText("Value", PADDING + assetCol1Width + assetCol2Width + assetCol3Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, headerPaint);
         
         // Draw vertical dividers
-        canvas.drawLine(PADDING + assetCol1Width, y, PADDING + assetCol1Width, y + ROW_HEIGHT * (sortedAssets.size() + 1), tableBorderPaint);
-        canvas.drawLine(PADDING + assetCol1Width + assetCol2Width, y, PADDING + assetCol1Width + assetCol2Width, y + ROW_HEIGHT * (sortedAssets.size() + 1), tableBorderPaint);
-        canvas.drawLine(PADDING + assetCol1Width + assetCol2Width + assetCol3Width, y, PADDING + assetCol1Width + assetCol2Width + assetCol3Width, y + ROW_HEIGHT * (sortedAssets.size() + 1), tableBorderPaint);
+        canvas.drawLine(PADDING + assetCol1Width, y, PADDING + assetCol1Width, y + ROW_HEIGHT * (rows.size() + 1), tableBorderPaint);
+        canvas.drawLine(PADDING + assetCol1Width + assetCol2Width, y, PADDING + assetCol1Width + assetCol2Width, y + ROW_HEIGHT * (rows.size() + 1), tableBorderPaint);
+        canvas.drawLine(PADDING + assetCol1Width + assetCol2Width + assetCol3Width, y, PADDING + assetCol1Width + assetCol2Width + assetCol3Width, y + ROW_HEIGHT * (rows.size() + 1), tableBorderPaint);
+        
+        // Truncation depends on the column widths
+        if (width != renderedWidth) {
+            renderedRows.clear();
+            renderedWidth = width;
+        }
+        long now = SystemClock.uptimeMillis();
+        boolean highlighting = false;
         
         // Draw horizontal dividers and row data
         y += ROW_HEIGHT;
-        for (int i = 0; i < sortedAssets.size(); i++) {
+        for (int i = 0; i < rows.size(); i++) {
             // Draw horizontal divider
             if (i > 0) {
                 canvas.drawLine(PADDING, y, width - PADDING, y, tableBorderPaint);
             }
             
-            // Draw row background (alternating)
-            Paint rowBgPaint = (i % 2 == 0) ? tableRowBgPaint : tableRowAltBgPaint;
-            canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, rowBgPaint);
-            
             // Get asset data
-            AssetsService.AssetGroup asset = sortedAssets.get(i);
-            
-            // Format quantity
-            String quantityDisplay = assetsService.calculateActualValue(asset.totalQuantity, asset.decimals);
+            PortfolioDisplayModel.Row row = rows.get(i);
             
-            // Format token count
-            String tokenCountDisplay = asset.tokenCount + " token" + (asset.tokenCount != 1 ? "s" : "");
+            // Draw row background (alternating, highlighted while a trade is pending)
+            Paint rowBgPaint = row.pending ? tablePendingRowBgPaint : (i % 2 == 0) ? tableRowBgPaint : tableRowAltBgPaint;
+            canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, rowBgPaint);
             
-            // Format value
-            String valueDisplay = "N/A";
-            String price = latestPrices.get(asset.name);
-            if (price != null && asset.calculatedValue > 0) {
-                if (asset.calculatedValue > 0 && asset.calculatedValue < 0.01) {
-                    // For very small values, show at least $0.01
-                    valueDisplay = "$0.01";
+            // Fade the highlight of a recently changed row
+            Long changedAt = highlights.get(row.name);
+            if (changedAt != null) {
+                long elapsed = now - changedAt;
+                if (elapsed < HIGHLIGHT_MS) {
+                    highlightPaint.setAlpha((int) (255 * (HIGHLIGHT_MS - elapsed) / HIGHLIGHT_MS));
+                    canvas.drawRect(PADDING, y, width - PADDING, y + ROW_HEIGHT, highlightPaint);
+                    highlighting = true;
                 } else {
-                    // Round to the nearest cent
-                    double roundedValue = Math.round(asset.calculatedValue * 100) / 100.0;
-                    valueDisplay = priceFormat.format(roundedValue);
+                    highlights.remove(row.name);
                 }
             }
             
-            // Calculate available width for each column (with buffer)
-            float nameColWidth = assetCol1Width - TABLE_PADDING * 2;
-            float quantityColWidth = assetCol2Width - TABLE_PADDING * 2;
-            float tokenCountColWidth = assetCol3Width - TABLE_PADDING * 2;
-            float valueColWidth = assetCol4Width - TABLE_PADDING * 2;
-            float bufferSpace = 10; // Additional buffer space in pixels
-            
-            // Truncate text to fit in columns
-            String truncatedName = truncateTextToFit(asset.name, nameColWidth, contentPaint, bufferSpace);
-            String truncatedQuantity = truncateTextToFit(quantityDisplay, quantityColWidth, contentPaint, bufferSpace);
-            String truncatedTokenCount = truncateTextToFit(tokenCountDisplay, tokenCountColWidth, contentPaint, bufferSpace);
-            String truncatedValue = truncateTextToFit(valueDisplay, valueColWidth, contentPaint, bufferSpace);
+            // Rows unchanged since they were last drawn reuse their truncated text
+            RenderedRow rendered = renderedRows.get(row.name);
+            if (rendered == null) {
+                // Calculate available width for each column (with buffer)
+                float nameColWidth = assetCol1Width - TABLE_PADDING * 2;
+                float quantityColWidth = assetCol2Width - TABLE_PADDING * 2;
+                float tokenCountColWidth = assetCol3Width - TABLE_PADDING * 2;
+                float valueColWidth = assetCol4Width - TABLE_PADDING * 2;
+                float bufferSpace = 10; // Additional buffer space in pixels
+                
+                // Truncate text to fit in columns
+                rendered = new RenderedRow(
+                        truncateTextToFit(row.name, nameColWidth, contentPaint, bufferSpace),
+                        truncateTextToFit(row.quantity, quantityColWidth, contentPaint, bufferSpace),
+                        truncateTextToFit(row.tokenCount, tokenCountColWidth, contentPaint, bufferSpace),
+                        truncateTextToFit(row.value, valueColWidth, contentPaint, bufferSpace));
+                renderedRows.put(row.name, rendered);
+            }
             
             // Draw asset data
-            canvas.drawText(truncatedName, PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
-            canvas.drawText(truncatedQuantity, PADDING + assetCol1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
-            canvas.drawText(truncatedTokenCount, PADDING + assetCol1Width + assetCol2Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
-            canvas.drawText(truncatedValue, PADDING + assetCol1Width + assetCol2Width + assetCol3Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+            canvas.drawText(rendered.name, PADDING + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+            canvas.drawText(rendered.quantity, PADDING + assetCol1Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+            canvas.drawText(rendered.tokenCount, PADDING + assetCol1Width + assetCol2Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
+            canvas.drawText(rendered.value, PADDING + assetCol1Width + assetCol2Width + assetCol3Width + TABLE_PADDING, y + ROW_HEIGHT - TABLE_PADDING, contentPaint);
             
             y += ROW_HEIGHT;
         }
+        
+        if (highlighting) {
+            postInvalidateOnAnimation();
+        }
     }
 }
@@ -19,6 +19,8 @@ public class GoldPriceView extends View {
     private static final float MAX_PRICE_CHANGE = 2.5f;
     private static final int PADDING = 40;
     private static final int COIN_SIZE = 100;
+    private static final String DRAW_SECTION = "GoldPriceView.onDraw";
+    private static final String MEASURE_SECTION = "GoldPriceView.onMeasure";
     
     // State
     private float currentPrice = 1923.45f;
@@ -141,8 +143,21 @@ public class GoldPriceView extends View {
         handler.removeCallbacks(updateRunnable);
     }
     
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = PerfMetrics.begin(MEASURE_SECTION);
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        PerfMetrics.end(MEASURE_SECTION, start);
+    }
+    
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = PerfMetrics.begin(DRAW_SECTION);
+        drawView(canvas);
+        PerfMetrics.end(DRAW_SECTION, start);
+    }
+    
+    private void drawView(Canvas canvas) {
         super.onDraw(canvas);
         
         int width = getWidth();
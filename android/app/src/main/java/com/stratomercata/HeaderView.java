@@ -15,6 +15,8 @@ public class HeaderView extends View {
     private static final int BORDER_WIDTH = 2;
     private static final int LOGO_SIZE = 80;
     private static final int LOGO_BORDER_WIDTH = 4;
+    private static final String DRAW_SECTION = "HeaderView.onDraw";
+    private static final String MEASURE_SECTION = "HeaderView.onMeasure";
     
     // Paint objects
     private final Paint backgroundPaint;
@@ -75,8 +77,21 @@ public class HeaderView extends View {
         logoTextPaint.setFakeBoldText(true);
     }
     
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = PerfMetrics.begin(MEASURE_SECTION);
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        PerfMetrics.end(MEASURE_SECTION, start);
+    }
+    
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = PerfMetrics.begin(DRAW_SECTION);
+        drawView(canvas);
+        PerfMetrics.end(DRAW_SECTION, start);
+    }
+    
+    private void drawView(Canvas canvas) {
         super.onDraw(canvas);
         
         int width = getWidth();
@@ -0,0 +1,61 @@
+package com.stratomercata;
+
+/**
+ * Tracks the portfolio load in flight so that overlapping requests join it. Each load gets a
+ * number, and only the current load can end itself, so a late callback from an abandoned load
+ * never ends a newer one.
+ *
+ * A load that hasn't ended within the timeout is taken to be lost, say to a callback that never
+ * arrived, and the next request starts a new load instead of joining it.
+ */
+final class LoadGate {
+    // Returned by begin when the request joins the load in flight
+    static final int JOINED = 0;
+    
+    private final long timeoutMs;
+    private int current;
+    private boolean inFlight;
+    private long startedAt;
+    
+    LoadGate(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+    
+    /**
+     * Starts a load at nowMs and returns its number, or JOINED if a live load is in flight
+     */
+    synchronized int begin(long nowMs) {
+        if (isInFlight(nowMs)) {
+            return JOINED;
+        }
+        current = current == Integer.MAX_VALUE ? 1 : current + 1;
+        inFlight = true;
+        startedAt = nowMs;
+        return current;
+    }
+    
+    /**
+     * Whether a load is in flight that hasn't timed out
+     */
+    synchronized boolean isInFlight(long nowMs) {
+        return inFlight && nowMs - startedAt < timeoutMs;
+    }
+    
+    /**
+     * Whether the load is still the one in flight; callbacks of any other load are stale
+     */
+    synchronized boolean isCurrent(int load) {
+        return inFlight && load == current;
+    }
+    
+    /**
+     * Ends the load. Returns false if it had already ended or was superseded.
+     */
+    synchronized boolean finish(int load) {
+        if (!isCurrent(load)) {
+            return false;
+        }
+        inFlight = false;
+        return true;
+    }
+}
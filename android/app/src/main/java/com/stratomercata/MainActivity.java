@@ -1,10 +1,17 @@
 package com.stratomercata;
 
 import android.os.Bundle;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.stratomercata.portfolio.AssetIndex;
+
 public class MainActivity extends AppCompatActivity {
     private HeaderView headerView;
+    private AssetSearchBar assetSearchBar;
     private AssetsView assetsView;
     private GoldPriceView goldPriceView;
     private PriceChartView priceChartView;
@@ -13,13 +20,28 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StratoClient.preload(this);
         setContentView(R.layout.activity_main);
         
         headerView = findViewById(R.id.header_view);
+        assetSearchBar = findViewById(R.id.asset_search_bar);
         assetsView = findViewById(R.id.assets_view);
         goldPriceView = findViewById(R.id.gold_price_view);
         priceChartView = findViewById(R.id.price_chart_view);
         tradeFormView = findViewById(R.id.trade_form_view);
+        
+        assetSearchBar.setOnQueryChangedListener(new AssetSearchBar.OnQueryChangedListener() {
+            @Override
+            public void onQueryChanged(AssetIndex.Query query) {
+                assetsView.setQuery(query);
+            }
+        });
+        
+        // Live pipeline timings on top of the content in debug builds
+        if (BuildConfig.DEBUG) {
+            addContentView(new PerfOverlayView(this),
+                    new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM));
+        }
     }
     
     @Override
@@ -28,6 +50,9 @@ public class MainActivity extends AppCompatActivity {
         if (goldPriceView != null) {
             goldPriceView.startUpdates();
         }
+        if (assetsView != null) {
+            assetsView.startUpdates();
+        }
     }
     
     @Override
@@ -36,5 +61,11 @@ public class MainActivity extends AppCompatActivity {
         if (goldPriceView != null) {
             goldPriceView.stopUpdates();
         }
+        
+        // Portfolio updates live in a process-wide service; keep them running across a rotation
+        // so the recreated activity does not reconnect
+        if (assetsView != null && !isChangingConfigurations()) {
+            assetsView.stopUpdates();
+        }
     }
 }
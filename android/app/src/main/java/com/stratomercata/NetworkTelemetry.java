@@ -0,0 +1,326 @@
+package com.stratomercata;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * OkHttp event listener factory that breaks every backend call into phases (DNS, connect, TLS,
+ * request write, time to first byte, body read, decode) and keeps rolling percentiles per
+ * endpoint plus the connection reuse ratio. Installed on StratoClient's shared client.
+ */
+public class NetworkTelemetry implements EventListener.Factory {
+    // Phases, in the order they happen
+    public static final String PHASE_DNS = "dns";
+    public static final String PHASE_CONNECT = "connect";
+    public static final String PHASE_TLS = "tls";
+    public static final String PHASE_REQUEST = "request";
+    public static final String PHASE_TTFB = "ttfb";
+    public static final String PHASE_BODY = "body";
+    public static final String PHASE_DECODE = "decode";
+    public static final String PHASE_TOTAL = "total";
+    private static final String[] PHASES = {
+            PHASE_DNS, PHASE_CONNECT, PHASE_TLS, PHASE_REQUEST, PHASE_TTFB, PHASE_BODY, PHASE_DECODE, PHASE_TOTAL
+    };
+    
+    // Samples kept per phase; percentiles cover the most recent calls only
+    private static final int WINDOW_SIZE = 128;
+    
+    private static NetworkTelemetry instance;
+    
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    
+    /**
+     * Rolling samples for one endpoint, keyed by URL path
+     */
+    private static class Endpoint {
+        final Map<String, long[]> samples = new LinkedHashMap<>();
+        final Map<String, Integer> sampleCounts = new LinkedHashMap<>();
+        long calls;
+        long failures;
+        long reusedConnections;
+        
+        void record(String phase, long nanos) {
+            long[] window = samples.get(phase);
+            if (window == null) {
+                window = new long[WINDOW_SIZE];
+                samples.put(phase, window);
+                sampleCounts.put(phase, 0);
+            }
+            int count = sampleCounts.get(phase);
+            window[count % WINDOW_SIZE] = nanos;
+            sampleCounts.put(phase, count + 1);
+        }
+    }
+    
+    /**
+     * Point-in-time percentiles for one endpoint
+     */
+    public static class EndpointStats {
+        public final String path;
+        public final long calls;
+        public final long failures;
+        public final double connectionReuseRatio;
+        
+        // Phase name to {p50, p90, p99} in milliseconds; phases that never happened are absent
+        public final Map<String, double[]> percentilesMs;
+        
+        EndpointStats(String path, long calls, long failures, double connectionReuseRatio, Map<String, double[]> percentilesMs) {
+            this.path = path;
+            this.calls = calls;
+            this.failures = failures;
+            this.connectionReuseRatio = connectionReuseRatio;
+            this.percentilesMs = percentilesMs;
+        }
+    }
+    
+    public static synchronized NetworkTelemetry getInstance() {
+        if (instance == null) {
+            instance = new NetworkTelemetry();
+        }
+        return instance;
+    }
+    
+    @NonNull
+    @Override
+    public EventListener create(@NonNull Call call) {
+        return new CallListener(call.request().url().encodedPath());
+    }
+    
+    /**
+     * Records how long a response body took to decode; called by TracingConverterFactory
+     */
+    public void recordDecode(String path, long nanos) {
+        synchronized (endpoints) {
+            getEndpoint(path).record(PHASE_DECODE, nanos);
+        }
+    }
+    
+    private Endpoint getEndpoint(String path) {
+        Endpoint endpoint = endpoints.get(path);
+        if (endpoint == null) {
+            endpoint = new Endpoint();
+            endpoints.put(path, endpoint);
+        }
+        return endpoint;
+    }
+    
+    /**
+     * Percentiles for every endpoint seen so far
+     */
+    public List<EndpointStats> getEndpointStats() {
+        synchronized (endpoints) {
+            EndpointStats[] stats = new EndpointStats[endpoints.size()];
+            int i = 0;
+            for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                Endpoint endpoint = entry.getValue();
+                Map<String, double[]> percentiles = new LinkedHashMap<>();
+                for (String phase : PHASES) {
+                    long[] window = endpoint.samples.get(phase);
+                    if (window == null) {
+                        continue;
+                    }
+                    long[] sorted = Arrays.copyOf(window, Math.min(endpoint.sampleCounts.get(phase), WINDOW_SIZE));
+                    Arrays.sort(sorted);
+                    percentiles.put(phase, new double[] {
+                            percentileMs(sorted, 0.50), percentileMs(sorted, 0.90), percentileMs(sorted, 0.99)
+                    });
+                }
+                double reuse = endpoint.calls > 0 ? endpoint.reusedConnections / (double) endpoint.calls : 0;
+                stats[i++] = new EndpointStats(entry.getKey(), endpoint.calls, endpoint.failures, reuse, percentiles);
+            }
+            return Arrays.asList(stats);
+        }
+    }
+    
+    private static double percentileMs(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000000.0;
+    }
+    
+    public void reset() {
+        synchronized (endpoints) {
+            endpoints.clear();
+        }
+    }
+    
+    /**
+     * Per-endpoint percentiles and reuse ratios as JSON
+     */
+    public JSONObject dump() {
+        try {
+            JSONObject json = new JSONObject();
+            for (EndpointStats stats : getEndpointStats()) {
+                JSONObject endpointJson = new JSONObject();
+                endpointJson.put("calls", stats.calls);
+                endpointJson.put("failures", stats.failures);
+                endpointJson.put("connectionReuseRatio", stats.connectionReuseRatio);
+                for (Map.Entry<String, double[]> phase : stats.percentilesMs.entrySet()) {
+                    JSONObject phaseJson = new JSONObject();
+                    phaseJson.put("p50Ms", phase.getValue()[0]);
+                    phaseJson.put("p90Ms", phase.getValue()[1]);
+                    phaseJson.put("p99Ms", phase.getValue()[2]);
+                    endpointJson.put(phase.getKey(), phaseJson);
+                }
+                json.put(stats.path, endpointJson);
+            }
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Timestamps for a single call, folded into the endpoint's samples when the call ends.
+     * OkHttp delivers a call's events sequentially, so no locking is needed until then.
+     */
+    private class CallListener extends EventListener {
+        private final String path;
+        private long callStart;
+        private long dnsStart = -1;
+        private long dnsNanos = -1;
+        private long connectStart = -1;
+        private long connectNanos = -1;
+        private long secureConnectStart = -1;
+        private long tlsNanos = -1;
+        private long requestStart = -1;
+        private long requestEnd = -1;
+        private long responseHeadersStart = -1;
+        private long bodyStart = -1;
+        private long bodyNanos = -1;
+        
+        CallListener(String path) {
+            this.path = path;
+        }
+        
+        @Override
+        public void callStart(@NonNull Call call) {
+            callStart = System.nanoTime();
+        }
+        
+        @Override
+        public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+            dnsStart = System.nanoTime();
+        }
+        
+        @Override
+        public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+            dnsNanos = System.nanoTime() - dnsStart;
+        }
+        
+        @Override
+        public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+        
+        @Override
+        public void secureConnectStart(@NonNull Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+        
+        @Override
+        public void secureConnectEnd(@NonNull Call call, Handshake handshake) {
+            tlsNanos = System.nanoTime() - secureConnectStart;
+        }
+        
+        @Override
+        public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy, Protocol protocol) {
+            connectNanos = System.nanoTime() - connectStart;
+        }
+        
+        @Override
+        public void requestHeadersStart(@NonNull Call call) {
+            requestStart = System.nanoTime();
+        }
+        
+        @Override
+        public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
+            requestEnd = System.nanoTime();
+        }
+        
+        @Override
+        public void requestBodyEnd(@NonNull Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+        }
+        
+        @Override
+        public void responseHeadersStart(@NonNull Call call) {
+            responseHeadersStart = System.nanoTime();
+        }
+        
+        @Override
+        public void responseBodyStart(@NonNull Call call) {
+            bodyStart = System.nanoTime();
+        }
+        
+        @Override
+        public void responseBodyEnd(@NonNull Call call, long byteCount) {
+            bodyNanos = System.nanoTime() - bodyStart;
+            PerfMetrics.addBytesReceived(byteCount);
+        }
+        
+        @Override
+        public void callEnd(@NonNull Call call) {
+            finish(false);
+        }
+        
+        @Override
+        public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+            finish(true);
+        }
+        
+        private void finish(boolean failed) {
+            long totalNanos = System.nanoTime() - callStart;
+            synchronized (endpoints) {
+                Endpoint endpoint = getEndpoint(path);
+                endpoint.calls++;
+                if (failed) {
+                    endpoint.failures++;
+                }
+                
+                // A call that never opened a connection was served by a pooled one
+                if (connectStart < 0) {
+                    endpoint.reusedConnections++;
+                }
+                
+                if (dnsNanos >= 0) {
+                    endpoint.record(PHASE_DNS, dnsNanos);
+                }
+                if (connectNanos >= 0) {
+                    endpoint.record(PHASE_CONNECT, connectNanos);
+                }
+                if (tlsNanos >= 0) {
+                    endpoint.record(PHASE_TLS, tlsNanos);
+                }
+                if (requestStart >= 0 && requestEnd >= 0) {
+                    endpoint.record(PHASE_REQUEST, requestEnd - requestStart);
+                }
+                if (requestEnd >= 0 && responseHeadersStart >= 0) {
+                    endpoint.record(PHASE_TTFB, responseHeadersStart - requestEnd);
+                }
+                if (bodyNanos >= 0) {
+                    endpoint.record(PHASE_BODY, bodyNanos);
+                }
+                if (!failed) {
+                    endpoint.record(PHASE_TOTAL, totalNanos);
+                }
+            }
+        }
+    }
+}
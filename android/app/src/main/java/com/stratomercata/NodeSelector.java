@@ -0,0 +1,386 @@
+package com.stratomercata;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Spreads node requests over the configured STRATO nodes by measured latency. Each node is
+ * probed in the background with the same small Cirrus query and keeps an exponentially weighted
+ * moving average (EWMA) of the probe times. Requests to any configured node are rewritten to
+ * the healthy node with the lowest EWMA, weighted by its requests in flight.
+ *
+ * Failures (I/O errors and 5xx, from probes or real requests) push a node's average up, so the
+ * next attempt fails over. Nodes that keep failing, or are much slower than the best one, are
+ * ejected for a while and only probed until they come back. A node is only ejected as slow
+ * while a faster one is healthy; when every node is ejected, requests go to the one due back
+ * first.
+ *
+ * A request tagged with a {@link Pin} goes to the node the pin holds, ejected or not, and an
+ * empty pin takes the node of the first successful response. Polls for a transaction's result
+ * share the pin of its submit, since a pending transaction is only known to the node that
+ * accepted it.
+ */
+public class NodeSelector implements Interceptor {
+    private static final String TAG = "NodeSelector";
+    
+    // Small, always-present table, so probe time is mostly the node's own latency
+    private static final String PROBE_PATH = "/cirrus/search/BlockApps-Mercata-OracleService";
+    private static final long PROBE_INTERVAL_MS = 15000;
+    
+    // Weight of the newest sample in the average
+    private static final double EWMA_WEIGHT = 0.25;
+    
+    // Sample recorded for a failure, enough to fail over from all but a very slow node
+    private static final long FAILURE_PENALTY_MS = 2000;
+    
+    // Ejection: after this many failures in a row, or when this many times slower (and at least
+    // the gap slower) than the best healthy node
+    private static final int FAILURES_TO_EJECT = 2;
+    private static final double SLOW_RATIO = 3;
+    private static final long MIN_SLOW_GAP_MS = 100;
+    private static final long EJECT_MS = 30000;
+    
+    private final List<Node> nodes;
+    private final OkHttpClient probeClient;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean probing;
+    
+    private final Runnable probeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            probeAll();
+            mainHandler.postDelayed(this, PROBE_INTERVAL_MS);
+        }
+    };
+    
+    /**
+     * Request tag holding the node a series of requests should go to
+     */
+    public static final class Pin {
+        private volatile HttpUrl node;
+        
+        public HttpUrl getNode() {
+            return node;
+        }
+    }
+    
+    private static class Node {
+        final HttpUrl url;
+        // Path the node is served under, without a trailing slash; empty at the root
+        final String basePath;
+        
+        // Negative until the first sample
+        double ewmaMs = -1;
+        int inFlight;
+        int consecutiveFailures;
+        long ejectedUntil;
+        long requests;
+        long failures;
+        long ejections;
+        
+        Node(HttpUrl url) {
+            this.url = url;
+            String path = url.encodedPath();
+            this.basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        }
+        
+        boolean serves(HttpUrl target) {
+            if (!url.scheme().equals(target.scheme()) || !url.host().equals(target.host())
+                    || url.port() != target.port()) {
+                return false;
+            }
+            String path = target.encodedPath();
+            return path.startsWith(basePath)
+                    && (path.length() == basePath.length() || path.charAt(basePath.length()) == '/');
+        }
+        
+        // The same request on this node, re-rooted from the node that serves it now
+        HttpUrl rewrite(HttpUrl target, Node from) {
+            String path = basePath + target.encodedPath().substring(from.basePath.length());
+            return target.newBuilder()
+                    .scheme(url.scheme())
+                    .host(url.host())
+                    .port(url.port())
+                    .encodedPath(path.isEmpty() ? "/" : path)
+                    .build();
+        }
+        
+        boolean isEjected(long now) {
+            return now < ejectedUntil;
+        }
+        
+        // Unmeasured nodes cost nothing, so until probes report the configured order decides
+        double cost() {
+            return Math.max(0, ewmaMs) * (inFlight + 1);
+        }
+        
+        void sample(double millis) {
+            ewmaMs = ewmaMs < 0 ? millis : ewmaMs + EWMA_WEIGHT * (millis - ewmaMs);
+        }
+    }
+    
+    /**
+     * Point-in-time state of one node
+     */
+    public static class NodeStats {
+        public final String url;
+        public final double ewmaMs;
+        public final int inFlight;
+        public final long requests;
+        public final long failures;
+        public final long ejections;
+        public final boolean ejected;
+        public final boolean selected;
+        
+        NodeStats(String url, double ewmaMs, int inFlight, long requests, long failures, long ejections,
+                  boolean ejected, boolean selected) {
+            this.url = url;
+            this.ewmaMs = ewmaMs;
+            this.inFlight = inFlight;
+            this.requests = requests;
+            this.failures = failures;
+            this.ejections = ejections;
+            this.ejected = ejected;
+            this.selected = selected;
+        }
+    }
+    
+    /**
+     * @param nodeUrls    base URLs of the nodes, preferred first
+     * @param probeClient client the probes are sent with; it should authenticate them but not
+     *                    route through this selector
+     */
+    public NodeSelector(List<HttpUrl> nodeUrls, OkHttpClient probeClient) {
+        Node[] nodeArray = new Node[nodeUrls.size()];
+        for (int i = 0; i < nodeArray.length; i++) {
+            nodeArray[i] = new Node(nodeUrls.get(i));
+        }
+        this.nodes = Arrays.asList(nodeArray);
+        this.probeClient = probeClient;
+    }
+    
+    /**
+     * Starts background probing; with a single node there is nothing to choose and no probing.
+     * Call on the main thread.
+     */
+    public void startProbing() {
+        if (probing || nodes.size() < 2) {
+            return;
+        }
+        probing = true;
+        mainHandler.post(probeRunnable);
+    }
+    
+    public void stopProbing() {
+        probing = false;
+        mainHandler.removeCallbacks(probeRunnable);
+    }
+    
+    private void probeAll() {
+        for (final Node node : nodes) {
+            HttpUrl url = node.url.newBuilder()
+                    .encodedPath(node.basePath + PROBE_PATH)
+                    .addQueryParameter("limit", "1")
+                    .build();
+            final long start = SystemClock.elapsedRealtime();
+            probeClient.newCall(new Request.Builder().url(url).build()).enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    Log.d(TAG, "Probe of " + node.url + " failed: " + e.getMessage());
+                    record(node, SystemClock.elapsedRealtime() - start, true);
+                }
+                
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    response.close();
+                    record(node, SystemClock.elapsedRealtime() - start, response.code() >= 500);
+                }
+            });
+        }
+    }
+    
+    // The node whose base URL the URL is under; the longest base path wins when nodes share a host
+    private Node findNode(HttpUrl url) {
+        Node found = null;
+        for (Node node : nodes) {
+            if (node.serves(url) && (found == null || node.basePath.length() > found.basePath.length())) {
+                found = node;
+            }
+        }
+        return found;
+    }
+    
+    // Healthy node with the lowest cost; if every node is ejected, the one due back first
+    private Node choose(long now) {
+        Node best = null;
+        for (Node node : nodes) {
+            if (!node.isEjected(now) && (best == null || node.cost() < best.cost())) {
+                best = node;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        for (Node node : nodes) {
+            if (best == null || node.ejectedUntil < best.ejectedUntil) {
+                best = node;
+            }
+        }
+        return best;
+    }
+    
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Node from = nodes.size() < 2 ? null : findNode(request.url());
+        if (from == null) {
+            return chain.proceed(request);
+        }
+        
+        Pin pin = request.tag(Pin.class);
+        HttpUrl pinned = pin != null ? pin.node : null;
+        Node node = pinned != null ? findNode(pinned) : null;
+        synchronized (nodes) {
+            if (node == null) {
+                node = choose(SystemClock.elapsedRealtime());
+            }
+            node.inFlight++;
+            node.requests++;
+        }
+        HttpUrl url = node.rewrite(request.url(), from);
+        
+        try {
+            Response response = chain.proceed(request.newBuilder().url(url).build());
+            if (response.code() >= 500) {
+                record(node, FAILURE_PENALTY_MS, true);
+            } else {
+                synchronized (nodes) {
+                    node.consecutiveFailures = 0;
+                }
+            }
+            if (pin != null && pinned == null && response.isSuccessful()) {
+                pin.node = node.url;
+            }
+            return response;
+        } catch (IOException e) {
+            // A cancelled call (a hedge that lost, a closed screen) says nothing about the node
+            if (!chain.call().isCanceled()) {
+                record(node, FAILURE_PENALTY_MS, true);
+            }
+            throw e;
+        } finally {
+            synchronized (nodes) {
+                node.inFlight--;
+            }
+        }
+    }
+    
+    private void record(Node node, long millis, boolean failed) {
+        synchronized (nodes) {
+            long now = SystemClock.elapsedRealtime();
+            if (failed) {
+                node.failures++;
+                node.consecutiveFailures++;
+                node.sample(Math.max(millis, FAILURE_PENALTY_MS));
+            } else {
+                node.consecutiveFailures = 0;
+                node.sample(millis);
+            }
+            
+            if (node.isEjected(now)) {
+                return;
+            }
+            
+            // Slowness is judged against the best of the others, so a node is never ejected for
+            // being slow in favour of itself
+            Node best = null;
+            for (Node other : nodes) {
+                if (other != node && !other.isEjected(now) && other.ewmaMs >= 0
+                        && (best == null || other.ewmaMs < best.ewmaMs)) {
+                    best = other;
+                }
+            }
+            boolean failing = node.consecutiveFailures >= FAILURES_TO_EJECT;
+            boolean slow = best != null && node.ewmaMs > best.ewmaMs * SLOW_RATIO
+                    && node.ewmaMs - best.ewmaMs > MIN_SLOW_GAP_MS;
+            if (failing || slow) {
+                node.ejectedUntil = now + EJECT_MS;
+                node.ejections++;
+                Log.d(TAG, "Ejected " + node.url + (failing ? " after " + node.consecutiveFailures + " failures" : " as slow")
+                        + ", EWMA " + Math.round(node.ewmaMs) + " ms");
+            }
+        }
+    }
+    
+    /**
+     * The node new requests go to right now
+     */
+    public HttpUrl getSelectedNode() {
+        synchronized (nodes) {
+            return choose(SystemClock.elapsedRealtime()).url;
+        }
+    }
+    
+    public List<NodeStats> getNodeStats() {
+        synchronized (nodes) {
+            long now = SystemClock.elapsedRealtime();
+            Node selected = choose(now);
+            List<NodeStats> stats = new ArrayList<>(nodes.size());
+            for (Node node : nodes) {
+                stats.add(new NodeStats(node.url.toString(), node.ewmaMs, node.inFlight, node.requests,
+                        node.failures, node.ejections, node.isEjected(now), node == selected));
+            }
+            return stats;
+        }
+    }
+    
+    /**
+     * The selected node and every node's score as JSON
+     */
+    public JSONObject dump() {
+        try {
+            JSONObject json = new JSONObject();
+            JSONArray nodesJson = new JSONArray();
+            for (NodeStats stats : getNodeStats()) {
+                if (stats.selected) {
+                    json.put("selected", stats.url);
+                }
+                JSONObject nodeJson = new JSONObject();
+                nodeJson.put("url", stats.url);
+                nodeJson.put("ewmaMs", stats.ewmaMs);
+                nodeJson.put("inFlight", stats.inFlight);
+                nodeJson.put("requests", stats.requests);
+                nodeJson.put("failures", stats.failures);
+                nodeJson.put("ejections", stats.ejections);
+                nodeJson.put("ejected", stats.ejected);
+                nodesJson.put(nodeJson);
+            }
+            json.put("nodes", nodesJson);
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.stratomercata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local order book for the gold market, built incrementally from marketplace listings.
+ * Price levels are kept sorted so a listing update is O(log n) and a quote walks only
+ * the levels it needs.
+ */
+public class OrderBook {
+    // Prices are stored as integer micro-dollars so equal prices share a level exactly
+    private static final double PRICE_SCALE = 1000000.0;
+    
+    private static class Level {
+        double quantity;
+        int listingCount;
+    }
+    
+    private static class Listing {
+        boolean bid;
+        long price;
+        double quantity;
+    }
+    
+    /**
+     * Result of walking the book for a given amount; reused between quotes to avoid allocation
+     */
+    public static class Quote {
+        public double requestedQuantity;
+        public double filledQuantity;
+        public double totalCost;
+        public double averagePrice;
+        public double bestPrice;
+        public double worstPrice;
+        public double slippage;
+        public boolean complete;
+    }
+    
+    private final TreeMap<Long, Level> asks = new TreeMap<>();
+    private final TreeMap<Long, Level> bids = new TreeMap<>(Collections.<Long>reverseOrder());
+    private final Map<String, Listing> listings = new HashMap<>();
+    
+    /**
+     * Adds, changes or (with a non-positive quantity) removes the listing with the given id
+     */
+    public void update(String id, boolean bid, double price, double quantity) {
+        remove(id);
+        if (quantity <= 0 || price <= 0) {
+            return;
+        }
+        
+        Listing listing = new Listing();
+        listing.bid = bid;
+        listing.price = Math.round(price * PRICE_SCALE);
+        listing.quantity = quantity;
+        listings.put(id, listing);
+        
+        TreeMap<Long, Level> side = bid ? bids : asks;
+        Level level = side.get(listing.price);
+        if (level == null) {
+            level = new Level();
+            side.put(listing.price, level);
+        }
+        level.quantity += quantity;
+        level.listingCount += 1;
+    }
+    
+    public void remove(String id) {
+        Listing listing = listings.remove(id);
+        if (listing == null) {
+            return;
+        }
+        
+        TreeMap<Long, Level> side = listing.bid ? bids : asks;
+        Level level = side.get(listing.price);
+        if (level == null) {
+            return;
+        }
+        level.listingCount -= 1;
+        level.quantity -= listing.quantity;
+        if (level.listingCount <= 0) {
+            side.remove(listing.price);
+        }
+    }
+    
+    public void clear() {
+        asks.clear();
+        bids.clear();
+        listings.clear();
+    }
+    
+    public boolean isEmpty() {
+        return asks.isEmpty() && bids.isEmpty();
+    }
+    
+    public int getLevelCount() {
+        return asks.size() + bids.size();
+    }
+    
+    /**
+     * Walks the opposite side of the book to fill the given amount. Buys consume asks from the
+     * lowest price up, sells consume bids from the highest price down. Returns false if that
+     * side of the book is empty.
+     */
+    public boolean quote(TradeOrder.Side side, double amount, Quote out) {
+        TreeMap<Long, Level> levels = side == TradeOrder.Side.BUY ? asks : bids;
+        
+        out.requestedQuantity = amount;
+        out.filledQuantity = 0;
+        out.totalCost = 0;
+        out.averagePrice = 0;
+        out.bestPrice = 0;
+        out.worstPrice = 0;
+        out.slippage = 0;
+        out.complete = false;
+        
+        if (levels.isEmpty() || amount <= 0) {
+            return false;
+        }
+        
+        double remaining = amount;
+        out.bestPrice = levels.firstKey() / PRICE_SCALE;
+        for (Map.Entry<Long, Level> entry : levels.entrySet()) {
+            double price = entry.getKey() / PRICE_SCALE;
+            double fill = Math.min(remaining, entry.getValue().quantity);
+            
+            out.filledQuantity += fill;
+            out.totalCost += fill * price;
+            out.worstPrice = price;
+            remaining -= fill;
+            
+            if (remaining <= 0) {
+                out.complete = true;
+                break;
+            }
+        }
+        
+        // Slippage is how far the volume-weighted price moves from the best price, against us
+        out.averagePrice = out.totalCost / out.filledQuantity;
+        out.slippage = Math.abs(out.averagePrice - out.bestPrice) / out.bestPrice;
+        return true;
+    }
+}
@@ -0,0 +1,222 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.annotations.SerializedName;
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.AssetRegistry;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+
+/**
+ * Keeps an OrderBook up to date from the Mercata sale listings of one asset. Tokens of different
+ * assets differ in decimals and price, so each asset has a book of its own. Listings are asks
+ * only; there is no bid side to walk for sells. After the first full read only listings changed
+ * since the last seen block are fetched.
+ */
+public class OrderBookFeed {
+    private static final String TAG = "OrderBookFeed";
+    private static final long POLL_INTERVAL_MS = 10000;
+    
+    // Model class
+    public static class Listing {
+        @SerializedName("address")
+        public String address;
+        
+        @SerializedName("name")
+        public String name;
+        
+        // Per whole token
+        @SerializedName("price")
+        public String price;
+        
+        // In base units, like token rows
+        @SerializedName("quantity")
+        public String quantity;
+        
+        @SerializedName("isOpen")
+        public Boolean isOpen;
+        
+        @SerializedName("block_number")
+        public Long blockNumber;
+    }
+    
+    // API interface
+    public interface ListingsApi {
+        @GET("BlockApps-Mercata-Sale")
+        Call<List<Listing>> getListings(@Query("name") String name,
+                                        @Query("block_number") String blockNumber,
+                                        @Query("order") String order);
+        
+        // Any one token row of the asset, for the decimals its quantities are in
+        @GET("BlockApps-Mercata-Asset")
+        Call<List<Asset>> getDecimals(@Query("name") String name,
+                                      @Query("select") String select,
+                                      @Query("limit") int limit);
+    }
+    
+    // Interface for book updates, called on the main thread
+    public interface OnBookChangedListener {
+        void onBookChanged(OrderBook orderBook);
+    }
+    
+    private final StratoClient stratoClient;
+    private final AssetsService assetsService;
+    private final String assetName;
+    private final OrderBook orderBook = new OrderBook();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ListingsApi listingsApi;
+    private OnBookChangedListener listener;
+    private int decimals = AssetRegistry.NO_DECIMALS;
+    private long lastBlockNumber = -1;
+    private boolean running = false;
+    
+    private final Runnable pollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            poll();
+            mainHandler.postDelayed(this, POLL_INTERVAL_MS);
+        }
+    };
+    
+    public OrderBookFeed(Context context, String assetName) {
+        this.stratoClient = StratoClient.getInstance(context);
+        this.assetsService = AssetsService.getInstance(context);
+        this.assetName = assetName;
+        
+        if (stratoClient.isConfigured()) {
+            listingsApi = stratoClient.getCirrusRetrofit().create(ListingsApi.class);
+        }
+    }
+    
+    public void setOnBookChangedListener(OnBookChangedListener listener) {
+        this.listener = listener;
+    }
+    
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+    
+    public void start() {
+        if (running || listingsApi == null) {
+            return;
+        }
+        running = true;
+        mainHandler.post(pollRunnable);
+    }
+    
+    public void stop() {
+        running = false;
+        mainHandler.removeCallbacks(pollRunnable);
+    }
+    
+    private void poll() {
+        stratoClient.getOAuthToken(new StratoClient.TokenCallback() {
+            @Override
+            public void onTokenReceived(String token) {
+                if (decimals == AssetRegistry.NO_DECIMALS) {
+                    fetchDecimals();
+                } else {
+                    fetchListings();
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "Error getting OAuth token: " + error);
+            }
+        });
+    }
+    
+    // Registered decimals win; otherwise the asset's token rows say what its base units are
+    private void fetchDecimals() {
+        final AssetRegistry registry = assetsService.getRegistry();
+        int id = registry.idOf(assetName);
+        if (id >= 0 && registry.getDecimals(id) != AssetRegistry.NO_DECIMALS) {
+            decimals = registry.getDecimals(id);
+            fetchListings();
+            return;
+        }
+        
+        listingsApi.getDecimals("eq." + assetName, "decimals", 1).enqueue(new Callback<List<Asset>>() {
+            @Override
+            public void onResponse(Call<List<Asset>> call, retrofit2.Response<List<Asset>> response) {
+                if (!running) {
+                    return;
+                }
+                List<Asset> rows = response.body();
+                if (!response.isSuccessful() || rows == null || rows.isEmpty()) {
+                    // Without decimals, listing quantities can't be read; try again next poll
+                    Log.e(TAG, "Decimals of " + assetName + " unavailable: " + response.code());
+                    return;
+                }
+                decimals = registry.decimalsFor(assetName, rows.get(0).decimals);
+                fetchListings();
+            }
+            
+            @Override
+            public void onFailure(Call<List<Asset>> call, Throwable t) {
+                Log.e(TAG, "Decimals API call failed: " + t.getMessage());
+            }
+        });
+    }
+    
+    private void fetchListings() {
+        // Re-read the last block too, since it may have gained rows after our previous read
+        String blockFilter = lastBlockNumber >= 0 ? "gte." + lastBlockNumber : null;
+        listingsApi.getListings("eq." + assetName, blockFilter, "block_number.asc").enqueue(new Callback<List<Listing>>() {
+            @Override
+            public void onResponse(Call<List<Listing>> call, retrofit2.Response<List<Listing>> response) {
+                if (!running) {
+                    return;
+                }
+                if (response.isSuccessful() && response.body() != null) {
+                    applyListings(response.body());
+                } else {
+                    Log.e(TAG, "Error fetching listings: " + response.code());
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<List<Listing>> call, Throwable t) {
+                Log.e(TAG, "Listings API call failed: " + t.getMessage());
+            }
+        });
+    }
+    
+    private void applyListings(List<Listing> listings) {
+        for (Listing listing : listings) {
+            if (listing.address == null || !assetName.equals(listing.name)) {
+                continue;
+            }
+            
+            try {
+                // Sale listings are asks; closed or emptied listings leave the book
+                boolean open = listing.isOpen == null || listing.isOpen;
+                double quantity = open && listing.quantity != null
+                        ? new BigDecimal(listing.quantity).movePointLeft(decimals).doubleValue() : 0;
+                double price = listing.price != null ? Double.parseDouble(listing.price) : 0;
+                orderBook.update(listing.address, false, price, quantity);
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "Skipping listing with invalid price or quantity: " + listing.address);
+            }
+            
+            if (listing.blockNumber != null) {
+                lastBlockNumber = Math.max(lastBlockNumber, listing.blockNumber);
+            }
+        }
+        
+        if (!listings.isEmpty() && listener != null) {
+            listener.onBookChanged(orderBook);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.stratomercata;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only, disk-backed journal of trade intent. Records are written by a single writer
+ * thread that fsyncs once per batch, so callers never block on disk and an order is durable
+ * before it is sent.
+ */
+public class OrderJournal {
+    private static final String TAG = "OrderJournal";
+    private static final String FILE_NAME = "orders.journal";
+    
+    // Record types
+    private static final String TYPE_ORDER = "order";
+    private static final String TYPE_STATE = "state";
+    
+    private final File file;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final CountDownLatch recovered = new CountDownLatch(1);
+    
+    // Latest known record per idempotency key, rebuilt from disk on startup
+    private final Map<String, JSONObject> orders = new LinkedHashMap<>();
+    
+    /**
+     * Completes once a record's batch has been written, and tells whether it reached disk
+     */
+    public static final class Write {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile IOException failure;
+        
+        /**
+         * Waits for the write; throws its error if the record never reached disk
+         */
+        public void await() throws InterruptedException, IOException {
+            done.await();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        
+        void complete(IOException failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+    
+    private static class Entry {
+        final JSONObject record;
+        final Write durable = new Write();
+        
+        Entry(JSONObject record) {
+            this.record = record;
+        }
+    }
+    
+    public OrderJournal(File directory) {
+        file = new File(directory, FILE_NAME);
+        
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recover();
+                writeLoop();
+            }
+        }, TAG);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+    
+    /**
+     * Queues a new order and returns its write, which completes once the record is on disk
+     */
+    public Write appendOrder(TradeOrder order) {
+        try {
+            JSONObject record = new JSONObject();
+            record.put("type", TYPE_ORDER);
+            record.put("key", order.idempotencyKey);
+            record.put("side", order.side.name());
+            record.put("asset", order.assetName);
+            record.put("quantity", order.quantity);
+            record.put("price", order.price);
+            record.put("state", order.state.name());
+            return enqueue(record);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Queues a state change for an order already in the journal
+     */
+    public void appendState(TradeOrder order) {
+        try {
+            JSONObject record = new JSONObject();
+            record.put("type", TYPE_STATE);
+            record.put("key", order.idempotencyKey);
+            record.put("state", order.state.name());
+            if (order.txHash != null) {
+                record.put("hash", order.txHash);
+            }
+            enqueue(record);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private Write enqueue(JSONObject record) {
+        Entry entry = new Entry(record);
+        queue.add(entry);
+        return entry.durable;
+    }
+    
+    /**
+     * Returns orders that were journaled but never confirmed or rejected. Blocks until the
+     * journal has been read back from disk, so only call it off the main thread.
+     */
+    public List<TradeOrder> loadPendingOrders() throws InterruptedException {
+        recovered.await();
+        
+        List<TradeOrder> pending = new ArrayList<>();
+        synchronized (orders) {
+            for (JSONObject record : orders.values()) {
+                TradeOrder.State state = TradeOrder.State.valueOf(record.optString("state"));
+                if (state == TradeOrder.State.CONFIRMED || state == TradeOrder.State.FAILED) {
+                    continue;
+                }
+                TradeOrder order = new TradeOrder(
+                        record.optString("key"),
+                        TradeOrder.Side.valueOf(record.optString("side")),
+                        record.optString("asset"),
+                        record.optDouble("quantity"),
+                        record.optDouble("price"));
+                order.txHash = record.optString("hash", null);
+                pending.add(order);
+            }
+        }
+        return pending;
+    }
+    
+    private void recover() {
+        try {
+            if (file.exists()) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        try {
+                            applyRecord(new JSONObject(line));
+                        } catch (JSONException e) {
+                            // A torn final line from a crash mid-write; everything before it is intact
+                            Log.e(TAG, "Skipping unreadable journal record");
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            compact();
+        } catch (IOException e) {
+            Log.e(TAG, "Error recovering order journal: " + e.getMessage());
+        } finally {
+            recovered.countDown();
+        }
+    }
+    
+    private void applyRecord(JSONObject record) throws JSONException {
+        String key = record.getString("key");
+        synchronized (orders) {
+            if (TYPE_ORDER.equals(record.optString("type"))) {
+                orders.put(key, record);
+                return;
+            }
+            
+            JSONObject order = orders.get(key);
+            if (order != null) {
+                order.put("state", record.getString("state"));
+                if (record.has("hash")) {
+                    order.put("hash", record.getString("hash"));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Rewrites the journal with only the orders that are still unresolved
+     */
+    private void compact() throws IOException {
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            synchronized (orders) {
+                List<String> finished = new ArrayList<>();
+                for (Map.Entry<String, JSONObject> entry : orders.entrySet()) {
+                    String state = entry.getValue().optString("state");
+                    if (TradeOrder.State.CONFIRMED.name().equals(state) || TradeOrder.State.FAILED.name().equals(state)) {
+                        finished.add(entry.getKey());
+                    } else {
+                        writer.write(entry.getValue().toString());
+                        writer.write('\n');
+                    }
+                }
+                for (String key : finished) {
+                    orders.remove(key);
+                }
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+    
+    private void writeLoop() {
+        FileOutputStream out = null;
+        BufferedWriter writer = null;
+        boolean torn = false;
+        List<Entry> batch = new ArrayList<>();
+        
+        while (true) {
+            IOException failure = null;
+            try {
+                // Wait for the first record, then take everything else that queued up meanwhile
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                
+                if (out == null) {
+                    out = new FileOutputStream(file, true);
+                    writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    
+                    // End any line a failed batch left half written, so it can't swallow the next record
+                    if (torn) {
+                        writer.write('\n');
+                        torn = false;
+                    }
+                }
+                
+                for (Entry entry : batch) {
+                    writer.write(entry.record.toString());
+                    writer.write('\n');
+                }
+                
+                // One fsync for the whole batch
+                writer.flush();
+                out.getFD().sync();
+                
+                for (Entry entry : batch) {
+                    applyRecord(entry.record);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing order journal: " + e.getMessage());
+                failure = e;
+                
+                // Start over with a fresh stream for the next batch
+                closeQuietly(out);
+                out = null;
+                writer = null;
+                torn = true;
+            } catch (JSONException e) {
+                // The batch is on disk; only the in-memory index missed a record
+                Log.e(TAG, "Error indexing order journal: " + e.getMessage());
+            }
+            
+            // Waiters on a failed batch get its error: an order that isn't on disk must not be sent
+            for (Entry entry : batch) {
+                entry.durable.complete(failure);
+            }
+            batch.clear();
+        }
+    }
+    
+    private static void closeQuietly(FileOutputStream out) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing order journal: " + e.getMessage());
+        }
+    }
+}
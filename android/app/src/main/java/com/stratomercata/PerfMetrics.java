@@ -0,0 +1,291 @@
+package com.stratomercata;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-stage timings and counters for the data pipeline and view rendering. Every stage is also
+ * a systrace/Perfetto section, so the same names show up in traces and in the debug overlay.
+ */
+public class PerfMetrics {
+    // Pipeline stages
+    public static final String STAGE_TOKEN = "token";
+    public static final String STAGE_ASSETS_CALL = "assets call";
+    public static final String STAGE_ORACLE_CALL = "oracle call";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_PROCESS = "processAssetData";
+    public static final String STAGE_DISPLAY_MODEL = "display model";
+    public static final String STAGE_MAIN_THREAD = "main thread";
+    
+    // Main-thread work per published portfolio update must fit in a quarter of a 60 Hz frame
+    public static final long MAIN_THREAD_BUDGET_MS = 4;
+    
+    // Histogram buckets double from 1ms; the last bucket holds everything slower
+    private static final int BUCKET_COUNT = 12;
+    
+    private static final Map<String, Stage> stages = new LinkedHashMap<>();
+    private static final AtomicInteger asyncCookies = new AtomicInteger();
+    private static long rowsProcessed;
+    private static long bytesReceived;
+    private static long bytesAllocated;
+    private static long mainThreadNanos;
+    private static long backgroundNanos;
+    private static long mainThreadBudgetOverruns;
+    
+    /**
+     * Timing summary for one stage
+     */
+    public static class Stage {
+        public final String name;
+        public long count;
+        public double lastMs;
+        public double totalMs;
+        public double maxMs;
+        public final int[] buckets = new int[BUCKET_COUNT];
+        
+        Stage(String name) {
+            this.name = name;
+        }
+        
+        void record(double ms) {
+            count++;
+            lastMs = ms;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+            
+            int bucket = 0;
+            double limit = 1;
+            while (ms >= limit && bucket < BUCKET_COUNT - 1) {
+                bucket++;
+                limit *= 2;
+            }
+            buckets[bucket]++;
+        }
+        
+        public double getMeanMs() {
+            return count > 0 ? totalMs / count : 0;
+        }
+    }
+    
+    /**
+     * Handle for a stage that starts on one thread or callback and ends on another
+     */
+    public static class AsyncSection {
+        final String stage;
+        final int cookie;
+        final long startNanos;
+        
+        AsyncSection(String stage, int cookie, long startNanos) {
+            this.stage = stage;
+            this.cookie = cookie;
+            this.startNanos = startNanos;
+        }
+    }
+    
+    private PerfMetrics() {
+    }
+    
+    /**
+     * Starts a stage on the current thread; pass the result to end on the same thread
+     */
+    public static long begin(String stage) {
+        Trace.beginSection(stage);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+    
+    public static void end(String stage, long startNanos) {
+        Trace.endSection();
+        record(stage, SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+    
+    public static AsyncSection beginAsync(String stage) {
+        int cookie = asyncCookies.incrementAndGet();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(stage, cookie);
+        }
+        return new AsyncSection(stage, cookie, SystemClock.elapsedRealtimeNanos());
+    }
+    
+    public static void endAsync(AsyncSection section) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(section.stage, section.cookie);
+        }
+        record(section.stage, SystemClock.elapsedRealtimeNanos() - section.startNanos);
+    }
+    
+    /**
+     * Ends the main-thread part of a pipeline update and accounts it against the background work
+     * that produced it. Returns true if the main thread went over MAIN_THREAD_BUDGET_MS.
+     */
+    public static boolean endMainThread(long startNanos, long updateBackgroundNanos) {
+        long nanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+        end(STAGE_MAIN_THREAD, startNanos);
+        
+        boolean overBudget = nanos > MAIN_THREAD_BUDGET_MS * 1000000;
+        synchronized (PerfMetrics.class) {
+            mainThreadNanos += nanos;
+            backgroundNanos += updateBackgroundNanos;
+            if (overBudget) {
+                mainThreadBudgetOverruns++;
+            }
+        }
+        return overBudget;
+    }
+    
+    private static void record(String stageName, long nanos) {
+        synchronized (stages) {
+            Stage stage = stages.get(stageName);
+            if (stage == null) {
+                stage = new Stage(stageName);
+                stages.put(stageName, stage);
+            }
+            stage.record(nanos / 1000000.0);
+        }
+    }
+    
+    public static synchronized void addRowsProcessed(long rows) {
+        rowsProcessed += rows;
+    }
+    
+    public static synchronized void addBytesReceived(long bytes) {
+        bytesReceived += bytes;
+    }
+    
+    public static synchronized void addBytesAllocated(long bytes) {
+        bytesAllocated += bytes;
+    }
+    
+    /**
+     * Total bytes the runtime has allocated so far, or -1 where the statistic is unavailable.
+     * Take the difference across a stage to attribute allocations to it.
+     */
+    public static long getRuntimeBytesAllocated() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    public static synchronized long getRowsProcessed() {
+        return rowsProcessed;
+    }
+    
+    public static synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+    
+    public static synchronized long getBytesAllocated() {
+        return bytesAllocated;
+    }
+    
+    /**
+     * Fraction of pipeline processing time spent on the main thread, from 0 to 1
+     */
+    public static synchronized double getMainThreadShare() {
+        long total = mainThreadNanos + backgroundNanos;
+        return total > 0 ? mainThreadNanos / (double) total : 0;
+    }
+    
+    public static synchronized long getMainThreadBudgetOverruns() {
+        return mainThreadBudgetOverruns;
+    }
+    
+    /**
+     * Returns a copy of every stage recorded so far, in first-seen order
+     */
+    public static Stage[] getStages() {
+        synchronized (stages) {
+            Stage[] copy = new Stage[stages.size()];
+            int i = 0;
+            for (Stage stage : stages.values()) {
+                Stage snapshot = new Stage(stage.name);
+                snapshot.count = stage.count;
+                snapshot.lastMs = stage.lastMs;
+                snapshot.totalMs = stage.totalMs;
+                snapshot.maxMs = stage.maxMs;
+                System.arraycopy(stage.buckets, 0, snapshot.buckets, 0, BUCKET_COUNT);
+                copy[i++] = snapshot;
+            }
+            return copy;
+        }
+    }
+    
+    /**
+     * Upper bound in milliseconds of the given histogram bucket; the last bucket is unbounded
+     */
+    public static long getBucketLimitMs(int bucket) {
+        return bucket < BUCKET_COUNT - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+    
+    /**
+     * All stages and counters as JSON, for logs and bug reports
+     */
+    public static JSONObject dump() {
+        try {
+            JSONObject json = new JSONObject();
+            JSONObject stagesJson = new JSONObject();
+            for (Stage stage : getStages()) {
+                JSONObject stageJson = new JSONObject();
+                stageJson.put("count", stage.count);
+                stageJson.put("lastMs", stage.lastMs);
+                stageJson.put("meanMs", stage.getMeanMs());
+                stageJson.put("maxMs", stage.maxMs);
+                
+                JSONArray histogram = new JSONArray();
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    JSONObject bucket = new JSONObject();
+                    bucket.put("ltMs", i < BUCKET_COUNT - 1 ? getBucketLimitMs(i) : -1);
+                    bucket.put("count", stage.buckets[i]);
+                    histogram.put(bucket);
+                }
+                stageJson.put("histogram", histogram);
+                stagesJson.put(stage.name, stageJson);
+            }
+            json.put("stages", stagesJson);
+            
+            JSONObject counters = new JSONObject();
+            counters.put("rowsProcessed", getRowsProcessed());
+            counters.put("bytesReceived", getBytesReceived());
+            counters.put("bytesAllocated", getBytesAllocated());
+            counters.put("mainThreadShare", getMainThreadShare());
+            counters.put("mainThreadBudgetMs", MAIN_THREAD_BUDGET_MS);
+            counters.put("mainThreadBudgetOverruns", getMainThreadBudgetOverruns());
+            json.put("counters", counters);
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Clears all stages and counters
+     */
+    public static void reset() {
+        synchronized (stages) {
+            stages.clear();
+        }
+        synchronized (PerfMetrics.class) {
+            rowsProcessed = 0;
+            bytesReceived = 0;
+            bytesAllocated = 0;
+            mainThreadNanos = 0;
+            backgroundNanos = 0;
+            mainThreadBudgetOverruns = 0;
+        }
+    }
+}
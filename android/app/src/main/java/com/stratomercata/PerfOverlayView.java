@@ -0,0 +1,278 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.View;
+import android.widget.Toast;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Debug overlay with live per-stage timings and histograms from PerfMetrics, node scores from
+ * NodeSelector and per-endpoint network percentiles from NetworkTelemetry. Tap to cycle between
+ * the stage page, the network page and a collapsed summary; long-press to export the metrics
+ * as JSON.
+ */
+public class PerfOverlayView extends View {
+    private static final String TAG = "PerfOverlayView";
+    private static final String DUMP_FILE_NAME = "perf-metrics.json";
+    private static final long REFRESH_INTERVAL_MS = 500;
+    
+    // Constants
+    private static final int PADDING = 16;
+    private static final int LINE_HEIGHT = 30;
+    private static final int TEXT_SIZE = 22;
+    private static final int NAME_WIDTH = 300;
+    private static final int STATS_WIDTH = 380;
+    private static final int BAR_WIDTH = 12;
+    private static final int PATH_WIDTH = 200;
+    private static final int PHASE_WIDTH = 150;
+    
+    // Pages, in tap order
+    private static final int PAGE_STAGES = 0;
+    private static final int PAGE_NETWORK = 1;
+    private static final int PAGE_COLLAPSED = 2;
+    private static final String[] NETWORK_PHASES = {
+            NetworkTelemetry.PHASE_DNS, NetworkTelemetry.PHASE_CONNECT, NetworkTelemetry.PHASE_TLS,
+            NetworkTelemetry.PHASE_REQUEST, NetworkTelemetry.PHASE_TTFB, NetworkTelemetry.PHASE_BODY,
+            NetworkTelemetry.PHASE_DECODE, NetworkTelemetry.PHASE_TOTAL
+    };
+    
+    // State
+    private int page = PAGE_STAGES;
+    private PerfMetrics.Stage[] stages = new PerfMetrics.Stage[0];
+    private List<NetworkTelemetry.EndpointStats> endpoints = Collections.emptyList();
+    private List<NodeSelector.NodeStats> nodes = Collections.emptyList();
+    private List<RequestScheduler.ClassStats> priorityClasses = Collections.emptyList();
+    private final DecimalFormat msFormat;
+    
+    // Paint objects
+    private final Paint backgroundPaint;
+    private final Paint textPaint;
+    private final Paint barPaint;
+    
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+    
+    public PerfOverlayView(Context context) {
+        this(context, null);
+    }
+    
+    public PerfOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        
+        msFormat = new DecimalFormat("0.0");
+        
+        backgroundPaint = new Paint();
+        backgroundPaint.setColor(Color.parseColor("#CC000000"));
+        
+        textPaint = new Paint();
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(TEXT_SIZE);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        textPaint.setAntiAlias(true);
+        
+        barPaint = new Paint();
+        barPaint.setColor(Color.parseColor("#4caf50"));
+        
+        setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                page = (page + 1) % 3;
+                requestLayout();
+                invalidate();
+            }
+        });
+        setOnLongClickListener(new OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                exportDump();
+                return true;
+            }
+        });
+    }
+    
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        post(refreshRunnable);
+    }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(refreshRunnable);
+        super.onDetachedFromWindow();
+    }
+    
+    private void refresh() {
+        int previousLines = getLineCount();
+        stages = PerfMetrics.getStages();
+        endpoints = NetworkTelemetry.getInstance().getEndpointStats();
+        nodes = StratoClient.getInstance(getContext()).getNodeSelector().getNodeStats();
+        priorityClasses = StratoClient.getInstance(getContext()).getScheduler().getClassStats();
+        if (getLineCount() != previousLines) {
+            requestLayout();
+        }
+        invalidate();
+    }
+    
+    /**
+     * Writes the current metrics to the app's files directory and the log
+     */
+    private void exportDump() {
+        String json;
+        try {
+            JSONObject dump = PerfMetrics.dump();
+            dump.put("network", NetworkTelemetry.getInstance().dump());
+            dump.put("resilience", StratoClient.getInstance(getContext()).getResilience().dump());
+            dump.put("nodes", StratoClient.getInstance(getContext()).getNodeSelector().dump());
+            dump.put("scheduler", StratoClient.getInstance(getContext()).getScheduler().dump());
+            json = dump.toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building metrics: " + e.getMessage());
+            return;
+        }
+        Log.d(TAG, json);
+        
+        File file = new File(getContext().getFilesDir(), DUMP_FILE_NAME);
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            } finally {
+                out.close();
+            }
+            Toast.makeText(getContext(), "Metrics written to " + file.getAbsolutePath(), Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing metrics: " + e.getMessage());
+        }
+    }
+    
+    private int getLineCount() {
+        switch (page) {
+            case PAGE_STAGES:
+                return stages.length + 2;
+            case PAGE_NETWORK:
+                // One line per priority class, per node, per endpoint and per phase an endpoint
+                // has samples for
+                int lines = 2 + priorityClasses.size() + nodes.size();
+                for (NetworkTelemetry.EndpointStats endpoint : endpoints) {
+                    lines += 1 + endpoint.percentilesMs.size();
+                }
+                return lines;
+            default:
+                return 1;
+        }
+    }
+    
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        setMeasuredDimension(width, PADDING * 2 + LINE_HEIGHT * getLineCount());
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawRect(0, 0, getWidth(), getHeight(), backgroundPaint);
+        
+        float y = PADDING + TEXT_SIZE;
+        canvas.drawText("rows " + PerfMetrics.getRowsProcessed()
+                + "  recv " + (PerfMetrics.getBytesReceived() / 1024) + "KB"
+                + "  alloc " + (PerfMetrics.getBytesAllocated() / 1024) + "KB"
+                + "  main " + Math.round(PerfMetrics.getMainThreadShare() * 100) + "%"
+                + " over " + PerfMetrics.getMainThreadBudgetOverruns(), PADDING, y, textPaint);
+        if (page == PAGE_NETWORK) {
+            drawNetwork(canvas, y);
+            return;
+        }
+        if (page != PAGE_STAGES) {
+            return;
+        }
+        
+        y += LINE_HEIGHT;
+        canvas.drawText("stage", PADDING, y, textPaint);
+        canvas.drawText("last/mean/max ms  n", PADDING + NAME_WIDTH, y, textPaint);
+        
+        for (PerfMetrics.Stage stage : stages) {
+            y += LINE_HEIGHT;
+            canvas.drawText(stage.name, PADDING, y, textPaint);
+            canvas.drawText(msFormat.format(stage.lastMs) + "/" + msFormat.format(stage.getMeanMs())
+                    + "/" + msFormat.format(stage.maxMs) + "  " + stage.count, PADDING + NAME_WIDTH, y, textPaint);
+            
+            // Histogram: one bar per doubling bucket, scaled to the fullest bucket
+            int maxBucket = 1;
+            for (int count : stage.buckets) {
+                maxBucket = Math.max(maxBucket, count);
+            }
+            float x = PADDING + NAME_WIDTH + STATS_WIDTH;
+            for (int count : stage.buckets) {
+                float barHeight = (LINE_HEIGHT - 6) * count / (float) maxBucket;
+                canvas.drawRect(x, y - barHeight, x + BAR_WIDTH - 2, y, barPaint);
+                x += BAR_WIDTH;
+            }
+        }
+    }
+    
+    private void drawNetwork(Canvas canvas, float y) {
+        // Queue wait per priority class, then what is waiting and running now
+        for (RequestScheduler.ClassStats priorityClass : priorityClasses) {
+            y += LINE_HEIGHT;
+            canvas.drawText(priorityClass.priority.name().toLowerCase(Locale.ROOT) + "  wait p50/p95/max "
+                    + priorityClass.waitP50Ms + "/" + priorityClass.waitP95Ms + "/" + priorityClass.waitMaxMs
+                    + "  n " + priorityClass.admitted + "  queued " + priorityClass.waiting
+                    + "  run " + priorityClass.inFlight + "/" + priorityClass.limit
+                    + (priorityClass.preempted > 0 ? "  preempted " + priorityClass.preempted : ""), PADDING, y, textPaint);
+        }
+        
+        // One line per node, the selected one marked
+        for (NodeSelector.NodeStats node : nodes) {
+            y += LINE_HEIGHT;
+            canvas.drawText((node.selected ? "> " : "  ") + node.url + "  ewma "
+                    + (node.ewmaMs >= 0 ? msFormat.format(node.ewmaMs) : "-") + "  fail " + node.failures
+                    + (node.ejected ? "  ejected" : ""), PADDING, y, textPaint);
+        }
+        
+        y += LINE_HEIGHT;
+        canvas.drawText("endpoint / phase", PADDING, y, textPaint);
+        canvas.drawText("p50/p90/p99 ms", PADDING + PATH_WIDTH + PHASE_WIDTH, y, textPaint);
+        
+        for (NetworkTelemetry.EndpointStats endpoint : endpoints) {
+            y += LINE_HEIGHT;
+            String path = endpoint.path.substring(endpoint.path.lastIndexOf('/') + 1);
+            canvas.drawText(path + "  n " + endpoint.calls + "  fail " + endpoint.failures
+                    + "  reuse " + Math.round(endpoint.connectionReuseRatio * 100) + "%", PADDING, y, textPaint);
+            
+            for (String phase : NETWORK_PHASES) {
+                double[] percentiles = endpoint.percentilesMs.get(phase);
+                if (percentiles == null) {
+                    continue;
+                }
+                y += LINE_HEIGHT;
+                canvas.drawText(phase, PADDING + PATH_WIDTH, y, textPaint);
+                canvas.drawText(msFormat.format(percentiles[0]) + "/" + msFormat.format(percentiles[1])
+                        + "/" + msFormat.format(percentiles[2]), PADDING + PATH_WIDTH + PHASE_WIDTH, y, textPaint);
+            }
+        }
+    }
+}
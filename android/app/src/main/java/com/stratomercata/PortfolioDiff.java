@@ -0,0 +1,135 @@
+package com.stratomercata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes between two display models' asset breakdown rows, keyed by asset name. Computed on
+ * the processing thread for each published model so the view can re-render only the rows that
+ * changed instead of the whole table.
+ */
+public final class PortfolioDiff {
+    // Every row is new; nothing cached for the previous model can be reused
+    public final boolean full;
+    
+    public final Set<String> inserted;
+    public final Set<String> removed;
+    
+    // In both models with a different quantity, token count, value or pending state
+    public final Set<String> changed;
+    
+    // In both models but out of their previous relative order
+    public final Set<String> moved;
+    
+    private PortfolioDiff(boolean full, Set<String> inserted, Set<String> removed, Set<String> changed,
+                          Set<String> moved) {
+        this.full = full;
+        this.inserted = inserted;
+        this.removed = removed;
+        this.changed = changed;
+        this.moved = moved;
+    }
+    
+    public boolean isEmpty() {
+        return !full && inserted.isEmpty() && removed.isEmpty() && changed.isEmpty() && moved.isEmpty();
+    }
+    
+    public static PortfolioDiff compute(PortfolioDisplayModel previous, PortfolioDisplayModel next) {
+        Set<String> none = Collections.emptySet();
+        if (previous == null) {
+            return new PortfolioDiff(true, none, none, none, none);
+        }
+        
+        List<PortfolioDisplayModel.Row> oldRows = previous.rows;
+        List<PortfolioDisplayModel.Row> newRows = next.rows;
+        Map<String, Integer> oldPositions = new HashMap<>(oldRows.size() * 2);
+        for (int i = 0; i < oldRows.size(); i++) {
+            oldPositions.put(oldRows.get(i).name, i);
+        }
+        
+        Set<String> inserted = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> kept = new HashSet<>();
+        
+        // Old positions of the kept rows, in their new order
+        int[] keptOldPositions = new int[newRows.size()];
+        String[] keptNames = new String[newRows.size()];
+        int keptCount = 0;
+        for (PortfolioDisplayModel.Row row : newRows) {
+            Integer oldPosition = oldPositions.get(row.name);
+            if (oldPosition == null) {
+                inserted.add(row.name);
+                continue;
+            }
+            kept.add(row.name);
+            if (!sameContent(oldRows.get(oldPosition), row)) {
+                changed.add(row.name);
+            }
+            keptOldPositions[keptCount] = oldPosition;
+            keptNames[keptCount] = row.name;
+            keptCount++;
+        }
+        
+        Set<String> removed = new HashSet<>();
+        for (PortfolioDisplayModel.Row row : oldRows) {
+            if (!kept.contains(row.name)) {
+                removed.add(row.name);
+            }
+        }
+        
+        // Rows outside the longest run still in their old relative order are the ones that moved
+        boolean[] inOrder = longestIncreasingSubsequence(keptOldPositions, keptCount);
+        Set<String> moved = new HashSet<>();
+        for (int i = 0; i < keptCount; i++) {
+            if (!inOrder[i]) {
+                moved.add(keptNames[i]);
+            }
+        }
+        
+        return new PortfolioDiff(false, inserted, removed, changed, moved);
+    }
+    
+    private static boolean sameContent(PortfolioDisplayModel.Row a, PortfolioDisplayModel.Row b) {
+        return a.quantity.equals(b.quantity)
+                && a.tokenCount.equals(b.tokenCount)
+                && a.value.equals(b.value)
+                && a.pending == b.pending;
+    }
+    
+    /**
+     * Marks one longest strictly increasing subsequence of values[0, count), in O(n log n)
+     */
+    static boolean[] longestIncreasingSubsequence(int[] values, int count) {
+        // tails[k]: index of the smallest last value of an increasing run of length k + 1
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        
+        boolean[] marked = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            marked[i] = true;
+        }
+        return marked;
+    }
+}
@@ -0,0 +1,105 @@
+package com.stratomercata;
+
+import com.stratomercata.portfolio.AssetGroup;
+import com.stratomercata.portfolio.AssetIndex;
+import com.stratomercata.portfolio.PortfolioCalculator;
+import com.stratomercata.portfolio.PortfolioSnapshot;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, pre-formatted portfolio for AssetsView, together with the PortfolioSnapshot it was
+ * formatted from. Built on the processing thread so the main thread only reads a reference and
+ * draws strings. The index answers search, filter and sort queries over the rows.
+ */
+public final class PortfolioDisplayModel {
+    // Formatted asset breakdown row
+    public static final class Row {
+        public final String name;
+        public final String quantity;
+        public final String tokenCount;
+        public final String value;
+        public final boolean pending;
+        
+        Row(String name, String quantity, String tokenCount, String value, boolean pending) {
+            this.name = name;
+            this.quantity = quantity;
+            this.tokenCount = tokenCount;
+            this.value = value;
+            this.pending = pending;
+        }
+    }
+    
+    public final PortfolioSnapshot snapshot;
+    public final List<Row> rows;
+    public final AssetIndex index;
+    public final int fungibleTokensCount;
+    public final int nonFungibleTokensCount;
+    public final int cataTokensCount;
+    public final String fungibleTokensValue;
+    public final String totalCataTokens;
+    
+    private PortfolioDisplayModel(PortfolioSnapshot snapshot, List<Row> rows, AssetIndex index, int fungibleTokensCount,
+                                  int nonFungibleTokensCount, int cataTokensCount, String fungibleTokensValue,
+                                  String totalCataTokens) {
+        this.snapshot = snapshot;
+        this.rows = rows;
+        this.index = index;
+        this.fungibleTokensCount = fungibleTokensCount;
+        this.nonFungibleTokensCount = nonFungibleTokensCount;
+        this.cataTokensCount = cataTokensCount;
+        this.fungibleTokensValue = fungibleTokensValue;
+        this.totalCataTokens = totalCataTokens;
+    }
+    
+    public int getTotalTokensCount() {
+        return fungibleTokensCount + nonFungibleTokensCount + cataTokensCount;
+    }
+    
+    /**
+     * Formats a snapshot. DecimalFormat is not thread-safe, so each build gets its own formatters.
+     */
+    public static PortfolioDisplayModel build(PortfolioSnapshot snapshot) {
+        DecimalFormat priceFormat = new DecimalFormat("$#,##0.00");
+        DecimalFormat quantityFormat = new DecimalFormat("#,##0.######");
+        
+        List<AssetGroup> sortedAssets = snapshot.sortedAssets;
+        Map<String, String> latestPrices = snapshot.latestPrices;
+        List<Row> rows = new ArrayList<>(sortedAssets.size());
+        for (AssetGroup asset : sortedAssets) {
+            // Format quantity
+            String quantity = PortfolioCalculator.calculateActualValue(asset.totalQuantity, asset.decimals);
+            if (asset.pending) {
+                quantity += " *";
+            }
+            
+            // Format token count
+            String tokenCount = asset.tokenCount + " token" + (asset.tokenCount != 1 ? "s" : "");
+            
+            // Format value
+            String value = "N/A";
+            if (latestPrices.get(asset.name) != null && asset.calculatedValue > 0) {
+                if (asset.calculatedValue < 0.01) {
+                    // For very small values, show at least $0.01
+                    value = "$0.01";
+                } else {
+                    // Round to the nearest cent
+                    value = priceFormat.format(Math.round(asset.calculatedValue * 100) / 100.0);
+                }
+            }
+            
+            rows.add(new Row(asset.name, quantity, tokenCount, value, asset.pending));
+        }
+        
+        return new PortfolioDisplayModel(snapshot, Collections.unmodifiableList(rows), AssetIndex.build(snapshot),
+                snapshot.fungibleTokensCount,
+                snapshot.nonFungibleTokensCount,
+                snapshot.cataTokensCount,
+                priceFormat.format(snapshot.fungibleTokensValue),
+                quantityFormat.format(snapshot.totalCataTokens));
+    }
+}
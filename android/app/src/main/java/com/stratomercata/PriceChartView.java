@@ -24,6 +24,8 @@ public class PriceChartView extends View {
     private static final int PERIOD_BUTTON_PADDING = 10;
     private static final int PERIOD_BUTTON_RADIUS = 8;
     private static final int HEX_SIZE = 15;
+    private static final String DRAW_SECTION = "PriceChartView.onDraw";
+    private static final String MEASURE_SECTION = "PriceChartView.onMeasure";
     
     // Mock data for the chart
     private final float[] priceData = {
@@ -141,8 +143,21 @@ public class PriceChartView extends View {
         chartIndicatorTextPaint.setFakeBoldText(true);
     }
     
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = PerfMetrics.begin(MEASURE_SECTION);
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        PerfMetrics.end(MEASURE_SECTION, start);
+    }
+    
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = PerfMetrics.begin(DRAW_SECTION);
+        drawView(canvas);
+        PerfMetrics.end(DRAW_SECTION, start);
+    }
+    
+    private void drawView(Canvas canvas) {
         super.onDraw(canvas);
         
         int width = getWidth();
@@ -0,0 +1,375 @@
+package com.stratomercata;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Application interceptor that decides which calls on the shared client go to the network next.
+ * OkHttp's dispatcher is first come, first served, so a burst of prefetches could hold up the
+ * asset load or a trade. Here every call has a priority class, tagged on its request:
+ *
+ * - INTERACTIVE: work the user is waiting on right now, such as submitting a trade
+ * - VISIBLE: the asset, oracle and order book refreshes behind what is on screen (the default)
+ * - PREFETCH: work ahead of the user, such as later token pages, thumbnails and metadata
+ *
+ * Each class has its own concurrency limit within an overall one, and a free slot goes to the
+ * highest class waiting. Prefetches are paused while interactive work is waiting or in flight;
+ * if interactive work finds no free slot, a prefetch still waiting for its response is cancelled
+ * with a PreemptedException, so its caller can send it again. A slot is held until the response
+ * body is closed. Event streams pass straight through.
+ */
+public class RequestScheduler implements Interceptor {
+    private static final String TAG = "RequestScheduler";
+    
+    public enum Priority {
+        INTERACTIVE,
+        VISIBLE,
+        PREFETCH
+    }
+    
+    // Calls admitted at once, OkHttp's default per-host limit
+    private static final int MAX_IN_FLIGHT = 5;
+    
+    // Per-class limits, by priority; visible work always leaves a slot for interactive work
+    private static final int[] CLASS_LIMITS = {MAX_IN_FLIGHT, 4, 2};
+    
+    // Queue wait samples kept per class for percentiles
+    private static final int WINDOW_SIZE = 128;
+    
+    // How often a waiting call checks whether its caller cancelled it
+    private static final long CANCEL_POLL_MS = 100;
+    
+    /**
+     * Thrown to the caller of a prefetch that was cancelled to make room for interactive work.
+     * The request itself was fine; send it again and it waits until the interactive work is done.
+     */
+    public static class PreemptedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        PreemptedException(String message) {
+            super(message);
+        }
+    }
+    
+    private static class Ticket {
+        final Priority priority;
+        final Call call;
+        final long enqueuedAt = SystemClock.elapsedRealtime();
+        boolean awaitingResponse;
+        boolean preempted;
+        boolean released;
+        
+        Ticket(Priority priority, Call call) {
+            this.priority = priority;
+            this.call = call;
+        }
+    }
+    
+    /**
+     * Queue, calls in flight and queue wait history for one priority class
+     */
+    private static class Lane {
+        final ArrayDeque<Ticket> waiting = new ArrayDeque<>();
+        final List<Ticket> running = new ArrayList<>();
+        final long[] waitSamples = new long[WINDOW_SIZE];
+        long admitted;
+        long preempted;
+        double totalWaitMs;
+        long maxWaitMs;
+        
+        void recordWait(long millis) {
+            waitSamples[(int) (admitted % WINDOW_SIZE)] = millis;
+            admitted++;
+            totalWaitMs += millis;
+            maxWaitMs = Math.max(maxWaitMs, millis);
+        }
+        
+        long percentileMs(double p) {
+            long[] sorted = Arrays.copyOf(waitSamples, (int) Math.min(admitted, WINDOW_SIZE));
+            if (sorted.length == 0) {
+                return 0;
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+    
+    /**
+     * Point-in-time state of one priority class
+     */
+    public static class ClassStats {
+        public final Priority priority;
+        public final int limit;
+        public final int waiting;
+        public final int inFlight;
+        public final long admitted;
+        public final long preempted;
+        public final double waitMeanMs;
+        public final long waitP50Ms;
+        public final long waitP95Ms;
+        public final long waitMaxMs;
+        
+        ClassStats(Priority priority, int limit, int waiting, int inFlight, long admitted, long preempted,
+                   double waitMeanMs, long waitP50Ms, long waitP95Ms, long waitMaxMs) {
+            this.priority = priority;
+            this.limit = limit;
+            this.waiting = waiting;
+            this.inFlight = inFlight;
+            this.admitted = admitted;
+            this.preempted = preempted;
+            this.waitMeanMs = waitMeanMs;
+            this.waitP50Ms = waitP50Ms;
+            this.waitP95Ms = waitP95Ms;
+            this.waitMaxMs = waitMaxMs;
+        }
+    }
+    
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private int inFlight;
+    
+    public RequestScheduler() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+    
+    /**
+     * The class a request was tagged with, VISIBLE if none
+     */
+    public static Priority priorityOf(Request request) {
+        Priority priority = request.tag(Priority.class);
+        return priority != null ? priority : Priority.VISIBLE;
+    }
+    
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if ("text/event-stream".equals(request.header("Accept"))) {
+            return chain.proceed(request);
+        }
+        
+        Ticket ticket = new Ticket(priorityOf(request), chain.call());
+        admit(ticket);
+        
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (release(ticket)) {
+                throw new PreemptedException("Preempted by interactive work");
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            release(ticket);
+            throw e;
+        }
+        
+        boolean preempted;
+        synchronized (this) {
+            ticket.awaitingResponse = false;
+            preempted = ticket.preempted;
+        }
+        // Cancelled just as the headers came in; its body would fail to read anyway
+        if (preempted) {
+            response.close();
+            release(ticket);
+            throw new PreemptedException("Preempted by interactive work");
+        }
+        
+        ResponseBody body = response.body();
+        if (body == null) {
+            release(ticket);
+            return response;
+        }
+        return response.newBuilder()
+                .body(new ReleasingBody(body, ticket))
+                .build();
+    }
+    
+    // Waits for a slot; gives up if the caller cancels while waiting
+    private synchronized void admit(Ticket ticket) throws IOException {
+        Lane lane = lanes[ticket.priority.ordinal()];
+        lane.waiting.add(ticket);
+        try {
+            while (!canAdmit(ticket)) {
+                if (ticket.priority == Priority.INTERACTIVE) {
+                    preemptPrefetch();
+                }
+                if (ticket.call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                try {
+                    wait(CANCEL_POLL_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for a request slot");
+                }
+            }
+        } finally {
+            lane.waiting.remove(ticket);
+            
+            // Whoever is next in this lane may be admissible now
+            notifyAll();
+        }
+        
+        ticket.awaitingResponse = true;
+        lane.running.add(ticket);
+        lane.recordWait(SystemClock.elapsedRealtime() - ticket.enqueuedAt);
+        inFlight++;
+    }
+    
+    private boolean canAdmit(Ticket ticket) {
+        int index = ticket.priority.ordinal();
+        Lane lane = lanes[index];
+        if (lane.waiting.peek() != ticket || lane.running.size() >= CLASS_LIMITS[index] || inFlight >= MAX_IN_FLIGHT) {
+            return false;
+        }
+        
+        // A free slot goes to a higher class that can use it
+        for (int higher = 0; higher < index; higher++) {
+            if (!lanes[higher].waiting.isEmpty() && lanes[higher].running.size() < CLASS_LIMITS[higher]) {
+                return false;
+            }
+        }
+        return ticket.priority != Priority.PREFETCH || lanes[Priority.INTERACTIVE.ordinal()].running.isEmpty();
+    }
+    
+    // Cancels the newest prefetch still waiting for its response, unless one is already on its way out
+    private void preemptPrefetch() {
+        if (inFlight < MAX_IN_FLIGHT) {
+            return;
+        }
+        Lane lane = lanes[Priority.PREFETCH.ordinal()];
+        Ticket newest = null;
+        for (Ticket running : lane.running) {
+            if (running.preempted) {
+                return;
+            }
+            if (running.awaitingResponse) {
+                newest = running;
+            }
+        }
+        if (newest != null) {
+            newest.preempted = true;
+            lane.preempted++;
+            newest.call.cancel();
+            Log.d(TAG, "Preempted " + newest.call.request().url().encodedPath());
+        }
+    }
+    
+    /**
+     * Frees the ticket's slot, once. Returns whether the call was preempted.
+     */
+    private synchronized boolean release(Ticket ticket) {
+        if (!ticket.released) {
+            ticket.released = true;
+            lanes[ticket.priority.ordinal()].running.remove(ticket);
+            inFlight--;
+            notifyAll();
+        }
+        return ticket.preempted;
+    }
+    
+    /**
+     * Response body that gives the slot back when the caller closes it
+     */
+    private class ReleasingBody extends ResponseBody {
+        private final ResponseBody body;
+        private final BufferedSource source;
+        
+        ReleasingBody(ResponseBody body, final Ticket ticket) {
+            this.body = body;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release(ticket);
+                    }
+                }
+            });
+        }
+        
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+        
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+        
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+    
+    public synchronized List<ClassStats> getClassStats() {
+        List<ClassStats> stats = new ArrayList<>(lanes.length);
+        for (Priority priority : Priority.values()) {
+            Lane lane = lanes[priority.ordinal()];
+            stats.add(new ClassStats(priority, CLASS_LIMITS[priority.ordinal()], lane.waiting.size(),
+                    lane.running.size(), lane.admitted, lane.preempted,
+                    lane.admitted > 0 ? lane.totalWaitMs / lane.admitted : 0,
+                    lane.percentileMs(0.5), lane.percentileMs(0.95), lane.maxWaitMs));
+        }
+        return stats;
+    }
+    
+    /**
+     * Limits, current queues and queue wait per class as JSON
+     */
+    public JSONObject dump() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("maxInFlight", MAX_IN_FLIGHT);
+            JSONObject classes = new JSONObject();
+            for (ClassStats stats : getClassStats()) {
+                JSONObject classJson = new JSONObject();
+                classJson.put("limit", stats.limit);
+                classJson.put("waiting", stats.waiting);
+                classJson.put("inFlight", stats.inFlight);
+                classJson.put("admitted", stats.admitted);
+                classJson.put("preempted", stats.preempted);
+                classJson.put("waitMeanMs", stats.waitMeanMs);
+                classJson.put("waitP50Ms", stats.waitP50Ms);
+                classJson.put("waitP95Ms", stats.waitP95Ms);
+                classJson.put("waitMaxMs", stats.waitMaxMs);
+                classes.put(stats.priority.name().toLowerCase(Locale.ROOT), classJson);
+            }
+            json.put("classes", classes);
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.stratomercata;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor that keeps slow or failing node responses from reaching the UI as
+ * errors or minute-long hangs. For idempotent GETs, per endpoint path, it:
+ *
+ * - retries I/O errors, 408, 429 and 5xx with exponential backoff and full jitter, while the
+ *   endpoint's retry budget lasts
+ * - sends a duplicate (hedged) request once the first has been outstanding longer than the
+ *   endpoint's recent p95, keeps whichever answers first and cancels the other
+ * - gives up on an attempt after a deadline derived from the recent p99, instead of waiting
+ *   for the client's 60 second read timeout
+ *
+ * Latency here is time to response headers. The deadline covers the whole exchange: it is the
+ * call timeout of each attempt, so it also bounds the body the caller reads afterwards. Writes
+ * and event streams pass straight through.
+ */
+public class ResilienceInterceptor implements Interceptor {
+    private static final String TAG = "ResilienceInterceptor";
+    
+    // Attempts per call, counting the first
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 4000;
+    
+    // Each call earns a fifth of a retry or hedge, so together they add at most ~20% load once
+    // the reserve is spent
+    private static final double BUDGET_PER_CALL = 0.2;
+    private static final double MAX_BUDGET = 10;
+    
+    // Latency samples kept per endpoint; hedging waits until there are enough for a stable p95
+    private static final int WINDOW_SIZE = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final long MIN_HEDGE_DELAY_MS = 50;
+    
+    // Attempt deadline as a multiple of p99, within bounds; until there are enough samples the
+    // upper bound applies
+    private static final int DEADLINE_P99_MULTIPLE = 4;
+    private static final long MIN_DEADLINE_MS = 2000;
+    private static final long MAX_DEADLINE_MS = 20000;
+    
+    // How often a waiting call checks whether its caller cancelled it
+    private static final long CANCEL_POLL_MS = 100;
+    
+    private final OkHttpClient attemptClient;
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    
+    /**
+     * Rolling latencies, retry budget and counters for one endpoint, keyed by URL path
+     */
+    private static class Endpoint {
+        final long[] samples = new long[WINDOW_SIZE];
+        int sampleCount;
+        double budget = MAX_BUDGET;
+        long calls;
+        long retries;
+        long hedges;
+        long hedgeWins;
+        long deadlinesExceeded;
+        long budgetExhausted;
+        
+        void record(long millis) {
+            samples[sampleCount % WINDOW_SIZE] = millis;
+            sampleCount++;
+        }
+        
+        long percentileMs(double p) {
+            long[] sorted = Arrays.copyOf(samples, Math.min(sampleCount, WINDOW_SIZE));
+            if (sorted.length == 0) {
+                return 0;
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+        
+        // Zero until there are enough samples to hedge on
+        long hedgeDelayMs() {
+            if (sampleCount < MIN_SAMPLES) {
+                return 0;
+            }
+            return Math.max(MIN_HEDGE_DELAY_MS, percentileMs(0.95));
+        }
+        
+        long deadlineMs() {
+            if (sampleCount < MIN_SAMPLES) {
+                return MAX_DEADLINE_MS;
+            }
+            return Math.max(MIN_DEADLINE_MS, Math.min(MAX_DEADLINE_MS, percentileMs(0.99) * DEADLINE_P99_MULTIPLE));
+        }
+        
+        boolean withdraw() {
+            if (budget < 1) {
+                budgetExhausted++;
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+    }
+    
+    /**
+     * The calls racing for one attempt. Responses that arrive after the race is settled are
+     * closed as they come in, so a cancelled loser never leaks its connection.
+     */
+    private static class Race {
+        private final ArrayDeque<Outcome> outcomes = new ArrayDeque<>();
+        private final List<Call> calls = new ArrayList<>(2);
+        private boolean settled;
+        
+        synchronized void offer(Outcome outcome) {
+            if (settled) {
+                outcome.close();
+                return;
+            }
+            outcomes.add(outcome);
+            notifyAll();
+        }
+        
+        synchronized Call first() {
+            return calls.get(0);
+        }
+        
+        synchronized Outcome poll(long timeoutMs) throws InterruptedIOException {
+            long until = SystemClock.elapsedRealtime() + timeoutMs;
+            long remaining = timeoutMs;
+            while (outcomes.isEmpty() && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for response");
+                }
+                remaining = until - SystemClock.elapsedRealtime();
+            }
+            return outcomes.poll();
+        }
+        
+        // Ends the race, keeping winner open; every other call is cancelled and its response closed
+        synchronized void settle(Call winner) {
+            settled = true;
+            for (Call call : calls) {
+                if (call != winner) {
+                    call.cancel();
+                }
+            }
+            for (Outcome outcome : outcomes) {
+                if (outcome.call != winner) {
+                    outcome.close();
+                }
+            }
+            outcomes.clear();
+        }
+    }
+    
+    private static class Outcome {
+        final Call call;
+        final Response response;
+        final IOException error;
+        final long latencyMs;
+        
+        Outcome(Call call, Response response, IOException error, long latencyMs) {
+            this.call = call;
+            this.response = response;
+            this.error = error;
+            this.latencyMs = latencyMs;
+        }
+        
+        void close() {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+    
+    /**
+     * @param attemptClient client that sends each attempt. It needs its own dispatcher: the
+     *                      calls waiting here hold slots on the shared one and must not be able
+     *                      to starve their own attempts.
+     */
+    public ResilienceInterceptor(OkHttpClient attemptClient) {
+        this.attemptClient = attemptClient;
+    }
+    
+    /**
+     * Whether a request is retried and hedged here; everything else passes straight through
+     */
+    public static boolean handles(Request request) {
+        return "GET".equals(request.method()) && !"text/event-stream".equals(request.header("Accept"));
+    }
+    
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || (code >= 500 && code != 501 && code != 505);
+    }
+    
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!handles(request)) {
+            return chain.proceed(request);
+        }
+        
+        String path = request.url().encodedPath();
+        Endpoint endpoint;
+        synchronized (endpoints) {
+            endpoint = endpoints.get(path);
+            if (endpoint == null) {
+                endpoint = new Endpoint();
+                endpoints.put(path, endpoint);
+            }
+            endpoint.calls++;
+            endpoint.budget = Math.min(MAX_BUDGET, endpoint.budget + BUDGET_PER_CALL);
+        }
+        
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            IOException error = null;
+            try {
+                response = race(chain.call(), request, endpoint);
+                if (!isRetryable(response.code())) {
+                    return response;
+                }
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    throw e;
+                }
+                error = e;
+            }
+            
+            boolean retry;
+            synchronized (endpoints) {
+                retry = attempt < MAX_ATTEMPTS && endpoint.withdraw();
+                if (retry) {
+                    endpoint.retries++;
+                }
+            }
+            if (!retry) {
+                // Out of attempts or budget: the caller sees the last status or error
+                if (response != null) {
+                    return response;
+                }
+                throw error;
+            }
+            if (response != null) {
+                response.close();
+            }
+            
+            // Full jitter: anywhere up to the exponential ceiling, so clients that failed together
+            // don't all come back together
+            long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1));
+            long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            Log.d(TAG, "Retrying " + path + " in " + backoff + " ms after "
+                    + (error != null ? error.getMessage() : "HTTP " + response.code()));
+            sleep(chain.call(), backoff);
+        }
+    }
+    
+    /**
+     * One attempt: the request, plus a hedged duplicate if it is slower than the endpoint's p95.
+     * Returns the first usable response, or the last retryable one if nothing better arrives.
+     */
+    private Response race(Call parent, Request request, Endpoint endpoint) throws IOException {
+        long hedgeDelayMs;
+        long deadlineMs;
+        synchronized (endpoints) {
+            hedgeDelayMs = endpoint.hedgeDelayMs();
+            deadlineMs = endpoint.deadlineMs();
+        }
+        
+        Race race = new Race();
+        long start = SystemClock.elapsedRealtime();
+        send(race, request, deadlineMs);
+        int outstanding = 1;
+        boolean hedged = hedgeDelayMs == 0;
+        
+        // The call whose response is returned stays open when the race is settled
+        Call winner = null;
+        Outcome fallback = null;
+        IOException lastError = null;
+        try {
+            while (outstanding > 0) {
+                if (parent.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                long elapsed = SystemClock.elapsedRealtime() - start;
+                if (elapsed >= deadlineMs) {
+                    synchronized (endpoints) {
+                        endpoint.deadlinesExceeded++;
+                        // Keep the tail visible, or the deadline would shrink to fit the survivors
+                        endpoint.record(deadlineMs);
+                    }
+                    break;
+                }
+                
+                if (!hedged && elapsed >= hedgeDelayMs) {
+                    hedged = true;
+                    boolean allowed;
+                    synchronized (endpoints) {
+                        allowed = endpoint.withdraw();
+                        if (allowed) {
+                            endpoint.hedges++;
+                        }
+                    }
+                    if (allowed) {
+                        // Due by the same deadline as the call it hedges
+                        send(race, request, deadlineMs - elapsed);
+                        outstanding++;
+                    }
+                    continue;
+                }
+                
+                long wait = deadlineMs - elapsed;
+                if (!hedged) {
+                    wait = Math.min(wait, hedgeDelayMs - elapsed);
+                }
+                Outcome outcome = race.poll(Math.min(wait, CANCEL_POLL_MS));
+                if (outcome == null) {
+                    continue;
+                }
+                outstanding--;
+                
+                if (outcome.response != null && !isRetryable(outcome.response.code())) {
+                    Call first = race.first();
+                    synchronized (endpoints) {
+                        endpoint.record(outcome.latencyMs);
+                        if (outcome.call != first) {
+                            endpoint.hedgeWins++;
+                        }
+                    }
+                    winner = outcome.call;
+                    return outcome.response;
+                }
+                
+                // Failed; keep the status in case the other call fails too, and wait for it
+                if (outcome.response != null) {
+                    if (fallback != null) {
+                        fallback.close();
+                    }
+                    fallback = outcome;
+                } else {
+                    lastError = outcome.error;
+                }
+            }
+            
+            if (fallback != null) {
+                winner = fallback.call;
+                return fallback.response;
+            }
+            if (lastError != null && outstanding == 0) {
+                throw lastError;
+            }
+            throw new SocketTimeoutException("No response from " + request.url().encodedPath()
+                    + " within " + deadlineMs + " ms");
+        } finally {
+            if (fallback != null && fallback.call != winner) {
+                fallback.close();
+            }
+            race.settle(winner);
+        }
+    }
+    
+    private void send(final Race race, Request request, long timeoutMs) {
+        final long start = SystemClock.elapsedRealtime();
+        Call call = attemptClient.newCall(request);
+        call.timeout().timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        synchronized (race) {
+            race.calls.add(call);
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                race.offer(new Outcome(call, null, e, SystemClock.elapsedRealtime() - start));
+            }
+            
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                race.offer(new Outcome(call, response, null, SystemClock.elapsedRealtime() - start));
+            }
+        });
+    }
+    
+    // Sleeps between attempts in slices, waking early if the caller cancels
+    private static void sleep(Call parent, long millis) throws IOException {
+        for (long remaining = millis; remaining > 0; remaining -= CANCEL_POLL_MS) {
+            if (parent.isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            try {
+                Thread.sleep(Math.min(remaining, CANCEL_POLL_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during retry backoff");
+            }
+        }
+    }
+    
+    public void reset() {
+        synchronized (endpoints) {
+            endpoints.clear();
+        }
+    }
+    
+    /**
+     * Per-endpoint latency percentiles, current hedge delay and deadline, and retry counters
+     */
+    public JSONObject dump() {
+        try {
+            JSONObject json = new JSONObject();
+            synchronized (endpoints) {
+                for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                    Endpoint endpoint = entry.getValue();
+                    JSONObject endpointJson = new JSONObject();
+                    endpointJson.put("calls", endpoint.calls);
+                    endpointJson.put("retries", endpoint.retries);
+                    endpointJson.put("hedges", endpoint.hedges);
+                    endpointJson.put("hedgeWins", endpoint.hedgeWins);
+                    endpointJson.put("deadlinesExceeded", endpoint.deadlinesExceeded);
+                    endpointJson.put("budgetExhausted", endpoint.budgetExhausted);
+                    endpointJson.put("budget", endpoint.budget);
+                    endpointJson.put("p50Ms", endpoint.percentileMs(0.50));
+                    endpointJson.put("p95Ms", endpoint.percentileMs(0.95));
+                    endpointJson.put("p99Ms", endpoint.percentileMs(0.99));
+                    endpointJson.put("hedgeDelayMs", endpoint.hedgeDelayMs());
+                    endpointJson.put("deadlineMs", endpoint.deadlineMs());
+                    json.put(entry.getKey(), endpointJson);
+                }
+            }
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.stratomercata.portfolio.PortfolioJson;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Process-wide authenticated client for the STRATO node: credentials, the shared OkHttp client
+ * and the cached OAuth token. Shared by asset loading and trade submission.
+ */
+public class StratoClient {
+    private static final String TAG = "StratoClient";
+    private static final String DEFAULT_TOKEN_URL = "https://keycloak.blockapps.net/auth/realms/mercata/protocol/openid-connect/token";
+    private static final long TOKEN_LIFETIME_RESERVE_SECONDS = 120; // Reserve 2 minutes for token expiration check
+    
+    private static StratoClient instance;
+    
+    // Credentials
+    private String clientUrl;
+    private String[] nodeUrls;
+    private String tokenUrl;
+    private String streamUrl;
+    private String tradeContractAddress;
+    private String userCommonName;
+    private String clientId;
+    private String clientSecret;
+    private String credentialsError;
+    
+    // Token state, written from OkHttp and executor threads
+    private volatile String accessToken;
+    private volatile long tokenExpiresAt;
+    
+    // Clients share one connection pool; only httpClient adds the bearer token, schedules calls
+    // by priority and retries GETs
+    private OkHttpClient baseClient;
+    private OkHttpClient httpClient;
+    private RequestScheduler scheduler;
+    private ResilienceInterceptor resilience;
+    private NodeSelector nodeSelector;
+    private Retrofit cirrusRetrofit;
+    
+    public interface TokenCallback {
+        void onTokenReceived(String token);
+        void onError(String error);
+    }
+    
+    public static synchronized StratoClient getInstance(Context context) {
+        if (instance == null) {
+            instance = new StratoClient();
+        }
+        return instance;
+    }
+    
+    /**
+     * Builds the shared client on a background thread, so OkHttp's TLS and platform setup
+     * overlaps layout inflation instead of running inside the first view that needs it
+     */
+    public static void preload(final Context context) {
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                getInstance(appContext);
+            }
+        }, "StratoClient-init").start();
+    }
+    
+    private StratoClient() {
+        loadCredentials();
+        initHttpClient();
+    }
+    
+    /**
+     * Credentials are compiled into BuildConfig from credentials.yaml at build time (see
+     * app/build.gradle), so nothing is read or parsed here on the startup path
+     */
+    private void loadCredentials() {
+        if (!BuildConfig.CREDENTIALS_FOUND) {
+            Log.e(TAG, "No credentials.yaml was found when this app was built");
+            credentialsError = "Error loading credentials: credentials.yaml was missing at build time";
+            return;
+        }
+        
+        clientUrl = BuildConfig.CLIENT_URL;
+        nodeUrls = BuildConfig.NODE_URLS != null ? BuildConfig.NODE_URLS.split(",") : new String[0];
+        userCommonName = BuildConfig.USER_COMMON_NAME;
+        clientId = BuildConfig.CLIENT_ID;
+        clientSecret = BuildConfig.CLIENT_SECRET;
+        
+        // Optional endpoints, used to point the app at a local mock server
+        tokenUrl = BuildConfig.TOKEN_URL != null ? BuildConfig.TOKEN_URL : DEFAULT_TOKEN_URL;
+        streamUrl = BuildConfig.STREAM_URL;
+        tradeContractAddress = BuildConfig.TRADE_CONTRACT_ADDRESS;
+    }
+    
+    private void initHttpClient() {
+        baseClient = new OkHttpClient.Builder()
+                .connectTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .eventListenerFactory(NetworkTelemetry.getInstance())
+                .build();
+        
+        // Add authorization header if token is available
+        Interceptor authInterceptor = new Interceptor() {
+            @NonNull
+            @Override
+            public Response intercept(@NonNull Chain chain) throws IOException {
+                Request original = chain.request();
+                String token = accessToken;
+                
+                if (token != null && !token.isEmpty()) {
+                    Request request = original.newBuilder()
+                            .header("Authorization", "Bearer " + token)
+                            .method(original.method(), original.body())
+                            .build();
+                    return chain.proceed(request);
+                }
+                
+                return chain.proceed(original);
+            }
+        };
+        
+        // Probes go straight to the node they measure, and stay out of the endpoint telemetry
+        nodeSelector = new NodeSelector(parseNodeUrls(), baseClient.newBuilder()
+                .addInterceptor(authInterceptor)
+                .eventListener(EventListener.NONE)
+                .build());
+        
+        // Retried and hedged GETs are sent as separate calls, on their own dispatcher so the
+        // calls waiting for them can't take every slot on the shared one
+        resilience = new ResilienceInterceptor(baseClient.newBuilder()
+                .dispatcher(newUnqueuedDispatcher())
+                .addInterceptor(nodeSelector)
+                .build());
+        
+        // The scheduler decides which call goes next, so the dispatcher in front of it must not
+        // hold calls back in its own first-come queue
+        scheduler = new RequestScheduler();
+        httpClient = baseClient.newBuilder()
+                .dispatcher(newUnqueuedDispatcher())
+                .addInterceptor(scheduler)
+                .addInterceptor(authInterceptor)
+                .addInterceptor(resilience)
+                // Reached only by requests the resilience interceptor passes through
+                .addInterceptor(nodeSelector)
+                // Calls the interceptor takes over are measured per attempt instead
+                .eventListenerFactory(new EventListener.Factory() {
+                    @NonNull
+                    @Override
+                    public EventListener create(@NonNull Call call) {
+                        if (ResilienceInterceptor.handles(call.request())) {
+                            return EventListener.NONE;
+                        }
+                        return NetworkTelemetry.getInstance().create(call);
+                    }
+                })
+                .build();
+        
+        // One converter for every Cirrus API: the streaming portfolio adapters, timed per endpoint
+        if (isConfigured()) {
+            cirrusRetrofit = new Retrofit.Builder()
+                    .baseUrl(getBaseUrl() + "/cirrus/search/")
+                    .client(httpClient)
+                    .addConverterFactory(new TracingConverterFactory(GsonConverterFactory.create(PortfolioJson.newGson())))
+                    .build();
+        }
+    }
+    
+    // Calls reaching these dispatchers are already bounded by the scheduler (plus a hedge each),
+    // so the per-host limit is lifted to the overall one
+    private static Dispatcher newUnqueuedDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(dispatcher.getMaxRequests());
+        return dispatcher;
+    }
+    
+    // clientUrl first, then any extra nodes serving the same chain
+    private List<HttpUrl> parseNodeUrls() {
+        List<HttpUrl> urls = new ArrayList<>();
+        if (!isConfigured()) {
+            return urls;
+        }
+        HttpUrl primary = HttpUrl.parse(getBaseUrl());
+        if (primary != null) {
+            urls.add(primary);
+        }
+        for (String nodeUrl : nodeUrls) {
+            nodeUrl = nodeUrl.trim();
+            HttpUrl url = HttpUrl.parse(nodeUrl.contains("://") ? nodeUrl : "https://" + nodeUrl);
+            if (url == null) {
+                Log.e(TAG, "Ignoring invalid node URL: " + nodeUrl);
+            } else if (!urls.contains(url)) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+    
+    public boolean isConfigured() {
+        return clientUrl != null;
+    }
+    
+    public String getCredentialsError() {
+        return credentialsError;
+    }
+    
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+    
+    /**
+     * Priority classes and queue wait for calls on the authenticated client
+     */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    /**
+     * Retry, hedging and tail latency stats for calls on the authenticated client
+     */
+    public ResilienceInterceptor getResilience() {
+        return resilience;
+    }
+    
+    /**
+     * Node choice and latency scores, when more than one node is configured
+     */
+    public NodeSelector getNodeSelector() {
+        return nodeSelector;
+    }
+    
+    /**
+     * Retrofit for the Cirrus search API on the authenticated client, or null if not configured.
+     * Callbacks run on the main thread; use newBuilder() to deliver them elsewhere.
+     */
+    public Retrofit getCirrusRetrofit() {
+        return cirrusRetrofit;
+    }
+    
+    /**
+     * The shared client without the bearer token, for URLs that may point off the node
+     */
+    public OkHttpClient getBaseClient() {
+        return baseClient;
+    }
+    
+    public String getBaseUrl() {
+        // Hosts without a scheme are STRATO nodes served over HTTPS
+        return clientUrl.contains("://") ? clientUrl : "https://" + clientUrl;
+    }
+    
+    public String getStreamUrl() {
+        return streamUrl;
+    }
+    
+    public String getTradeContractAddress() {
+        return tradeContractAddress;
+    }
+    
+    public String getUserCommonName() {
+        return userCommonName;
+    }
+    
+    private boolean hasValidToken() {
+        long currentTime = System.currentTimeMillis() / 1000;
+        return accessToken != null && tokenExpiresAt > currentTime + TOKEN_LIFETIME_RESERVE_SECONDS;
+    }
+    
+    private Request buildTokenRequest() {
+        // Create request body with client credentials
+        RequestBody formBody = new FormBody.Builder()
+                .add("grant_type", "client_credentials")
+                .add("client_id", clientId)
+                .add("client_secret", clientSecret)
+                .build();
+        
+        return new Request.Builder()
+                .url(tokenUrl)
+                .post(formBody)
+                .build();
+    }
+    
+    private String parseTokenResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            Log.e(TAG, "Failed to get OAuth token: " + response.code());
+            throw new IOException("HTTP error: " + response.code());
+        }
+        
+        try {
+            String responseBody = response.body().string();
+            long decodeStart = System.nanoTime();
+            JSONObject jsonObject = new JSONObject(responseBody);
+            NetworkTelemetry.getInstance().recordDecode(response.request().url().encodedPath(),
+                    System.nanoTime() - decodeStart);
+            String token = jsonObject.getString("access_token");
+            long expiresIn = jsonObject.getLong("expires_in");
+            
+            // Calculate expiration time
+            tokenExpiresAt = System.currentTimeMillis() / 1000 + expiresIn;
+            accessToken = token;
+            Log.d(TAG, "New OAuth token expires at: " + tokenExpiresAt);
+            
+            return token;
+        } catch (JSONException e) {
+            Log.e(TAG, "Error parsing OAuth token response: " + e.getMessage());
+            throw new IOException("Error parsing response: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Fetches a token asynchronously, or returns the cached one if it is still valid
+     */
+    public void getOAuthToken(final TokenCallback callback) {
+        // Check if we have a valid cached token
+        if (hasValidToken()) {
+            Log.d(TAG, "Using cached token");
+            callback.onTokenReceived(accessToken);
+            return;
+        }
+        
+        // Execute request asynchronously
+        baseClient.newCall(buildTokenRequest()).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(@NonNull okhttp3.Call call, @NonNull IOException e) {
+                Log.e(TAG, "Failed to get OAuth token: " + e.getMessage());
+                callback.onError(e.getMessage());
+            }
+            
+            @Override
+            public void onResponse(@NonNull okhttp3.Call call, @NonNull Response response) {
+                try {
+                    callback.onTokenReceived(parseTokenResponse(response));
+                } catch (IOException e) {
+                    callback.onError(e.getMessage());
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Blocking variant of getOAuthToken for use on background executors
+     */
+    public String getOAuthTokenBlocking() throws IOException {
+        if (hasValidToken()) {
+            return accessToken;
+        }
+        
+        Response response = baseClient.newCall(buildTokenRequest()).execute();
+        try {
+            return parseTokenResponse(response);
+        } finally {
+            response.close();
+        }
+    }
+}
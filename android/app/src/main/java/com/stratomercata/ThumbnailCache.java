@@ -0,0 +1,349 @@
+package com.stratomercata;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Two-level cache of item images decoded at display size. Bitmaps are kept in a memory LRU
+ * bounded by bytes; below it, the display-size images are kept on disk (also LRU, by last
+ * use) so an image is downloaded and decoded from full size only once. Downloads and decodes
+ * run on background threads and concurrent requests for the same image share one load.
+ */
+public class ThumbnailCache {
+    private static final String TAG = "ThumbnailCache";
+    private static final String DIRECTORY_NAME = "thumbnails";
+    private static final long MAX_DISK_BYTES = 32 * 1024 * 1024;
+    private static final long MAX_DOWNLOAD_BYTES = 8 * 1024 * 1024;
+    private static final int LOADER_THREADS = 2;
+    
+    // Share of the app's memory class the decoded bitmaps may use
+    private static final int MEMORY_FRACTION = 8;
+    
+    // Called on the main thread; bitmap is null if the image could not be loaded
+    public interface Callback {
+        void onThumbnailLoaded(String url, int size, Bitmap bitmap);
+    }
+    
+    private static ThumbnailCache instance;
+    
+    private final LruCache<String, Bitmap> memory;
+    private final File directory;
+    private final OkHttpClient client;
+    private final ExecutorService loader;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    // Callbacks waiting on each loading key; main thread only
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+    
+    // Bytes on disk, counted on first use; guarded by the directory
+    private long diskBytes = -1;
+    
+    public static synchronized ThumbnailCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private ThumbnailCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_FRACTION;
+        memory = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        
+        directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+        
+        // Images come from arbitrary hosts, so they are fetched without the Authorization header,
+        // but still wait behind node requests the user is waiting on
+        StratoClient stratoClient = StratoClient.getInstance(context);
+        client = stratoClient.getBaseClient().newBuilder()
+                .addInterceptor(stratoClient.getScheduler())
+                .build();
+        
+        loader = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, TAG);
+            }
+        });
+    }
+    
+    /**
+     * Returns the image if it is already in memory. Call on the main thread.
+     */
+    public Bitmap get(String url, int size) {
+        return memory.get(key(url, size));
+    }
+    
+    /**
+     * Loads the image scaled to fit within size x size pixels and delivers it to the callback,
+     * from memory immediately if possible. Call on the main thread.
+     */
+    public void load(final String url, final int size, Callback callback) {
+        final String key = key(url, size);
+        Bitmap cached = memory.get(key);
+        if (cached != null) {
+            callback.onThumbnailLoaded(url, size, cached);
+            return;
+        }
+        
+        List<Callback> callbacks = pending.get(key);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        pending.put(key, callbacks);
+        
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loadBlocking(url, size, key);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (bitmap != null) {
+                            memory.put(key, bitmap);
+                        }
+                        List<Callback> waiting = pending.remove(key);
+                        if (waiting != null) {
+                            for (Callback waitingCallback : waiting) {
+                                waitingCallback.onThumbnailLoaded(url, size, bitmap);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Drops the in-memory images; the disk copies stay
+     */
+    public void clearMemory() {
+        memory.evictAll();
+    }
+    
+    private Bitmap loadBlocking(String url, int size, String key) {
+        File file = new File(directory, fileName(key));
+        
+        // Disk hit: the file is already at display size
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+            deleteFile(file);
+        }
+        
+        try {
+            byte[] bytes = download(url);
+            if (bytes == null) {
+                return null;
+            }
+            Bitmap bitmap = decodeScaled(bytes, size);
+            if (bitmap != null) {
+                writeFile(file, bitmap);
+            }
+            return bitmap;
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private byte[] download(String url) throws IOException {
+        // Rows are usable without their image, so images are fetched at the lowest priority
+        Request request = new Request.Builder()
+                .url(url)
+                .tag(RequestScheduler.Priority.class, RequestScheduler.Priority.PREFETCH)
+                .build();
+        try {
+            return download(request);
+        } catch (RequestScheduler.PreemptedException e) {
+            // Made way for interactive work; the second try waits until that is done
+            return download(request);
+        }
+    }
+    
+    private byte[] download(Request request) throws IOException {
+        String url = request.url().toString();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                Log.e(TAG, "Error downloading " + url + ": " + response.code());
+                return null;
+            }
+            // The declared length may be missing or wrong, so read at most one byte past the limit
+            BufferedSource source = body.source();
+            if (body.contentLength() > MAX_DOWNLOAD_BYTES || source.request(MAX_DOWNLOAD_BYTES + 1)) {
+                Log.e(TAG, "Image too large: " + url);
+                return null;
+            }
+            return source.readByteArray();
+        }
+    }
+    
+    /**
+     * Decodes at the smallest power-of-two reduction that still covers size, then scales the
+     * remainder down, so a full-size bitmap is never allocated
+     */
+    static Bitmap decodeScaled(byte[] bytes, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (decoded == null) {
+            return null;
+        }
+        
+        float scale = Math.min((float) size / decoded.getWidth(), (float) size / decoded.getHeight());
+        if (scale >= 1) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+    
+    private void writeFile(File file, Bitmap bitmap) {
+        synchronized (directory) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                return;
+            }
+            if (diskBytes < 0) {
+                diskBytes = 0;
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File existing : files) {
+                        diskBytes += existing.length();
+                    }
+                }
+            }
+        }
+        
+        // Written to a temporary file first so a crash never leaves a truncated image behind
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail: " + e.getMessage());
+            deleteFile(temp);
+            return;
+        }
+        
+        synchronized (directory) {
+            // An image written again replaces the old file, which was already counted
+            long replaced = file.length();
+            if (!temp.renameTo(file)) {
+                deleteFile(temp);
+                return;
+            }
+            diskBytes += file.length() - replaced;
+            if (diskBytes > MAX_DISK_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+    
+    // Deletes the least recently used files until the cache is back to three quarters full
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (diskBytes <= MAX_DISK_BYTES * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+    
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "Could not delete " + file.getName());
+        }
+    }
+    
+    private static String key(String url, int size) {
+        return size + ":" + url;
+    }
+    
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 4);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(".png").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
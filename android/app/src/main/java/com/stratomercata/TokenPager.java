@@ -0,0 +1,244 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+import retrofit2.http.Tag;
+
+/**
+ * Loads the token rows of one asset from Cirrus a page at a time, in id order, as the list
+ * showing them scrolls. The page after the one being shown is requested ahead of time so rows
+ * are usually loaded before they are reached. Use from the main thread only.
+ */
+public class TokenPager {
+    private static final String TAG = "TokenPager";
+    public static final int PAGE_SIZE = 30;
+    
+    // Model class
+    public static class Token {
+        @SerializedName("id")
+        public String id;
+        
+        @SerializedName("name")
+        public String name;
+        
+        @SerializedName("quantity")
+        public String quantity;
+        
+        @SerializedName("decimals")
+        public Integer decimals;
+        
+        @SerializedName("description")
+        public String description;
+        
+        // Image URLs, possibly relative to the node
+        @SerializedName("images")
+        public List<String> images;
+    }
+    
+    // API interface
+    public interface TokensApi {
+        @GET("BlockApps-Mercata-Asset")
+        Call<List<Token>> getTokens(@Query("ownerCommonName") String ownerCommonName,
+                                    @Query("name") String name,
+                                    @Query("order") String order,
+                                    @Query("limit") int limit,
+                                    @Query("offset") int offset,
+                                    @Tag RequestScheduler.Priority priority);
+    }
+    
+    // Interface for paging events, called on the main thread
+    public interface OnPageLoadedListener {
+        void onPageLoaded();
+        void onError(String errorMessage);
+    }
+    
+    private final StratoClient stratoClient;
+    private final String assetName;
+    private final List<Token> tokens = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private TokensApi tokensApi;
+    private OnPageLoadedListener listener;
+    private Call<List<Token>> inFlight;
+    private boolean loading = false;
+    private boolean endReached = false;
+    private String errorMessage;
+    
+    public TokenPager(Context context, String assetName) {
+        this.stratoClient = StratoClient.getInstance(context);
+        this.assetName = assetName;
+        
+        if (stratoClient.isConfigured()) {
+            // The shared Cirrus client delivers callbacks on the main thread
+            tokensApi = stratoClient.getCirrusRetrofit().create(TokensApi.class);
+        } else {
+            endReached = true;
+            errorMessage = stratoClient.getCredentialsError();
+        }
+    }
+    
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        this.listener = listener;
+    }
+    
+    public String getAssetName() {
+        return assetName;
+    }
+    
+    /**
+     * Tokens loaded so far, in id order
+     */
+    public List<Token> getTokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+    
+    public boolean isEndReached() {
+        return endReached;
+    }
+    
+    public boolean isLoading() {
+        return loading;
+    }
+    
+    /**
+     * Message of the last failed page, cleared when a retry starts
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    /**
+     * Called as the row at position is shown. Requests the next page once the last loaded page
+     * is reached, so it arrives while that page is still being scrolled through.
+     */
+    public void onPositionShown(int position) {
+        if (position >= tokens.size() - PAGE_SIZE) {
+            loadNextPage();
+        }
+    }
+    
+    /**
+     * Requests the next page unless one is already loading, the end has been reached or the
+     * previous page failed (use retry for that)
+     */
+    public void loadNextPage() {
+        if (loading || endReached || errorMessage != null || tokensApi == null) {
+            return;
+        }
+        loading = true;
+        
+        // A fresh token arrives on an OkHttp thread, so hop back before touching state
+        stratoClient.getOAuthToken(new StratoClient.TokenCallback() {
+            @Override
+            public void onTokenReceived(String token) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetchPage();
+                    }
+                });
+            }
+            
+            @Override
+            public void onError(final String error) {
+                Log.e(TAG, "Error getting OAuth token: " + error);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        fail("Error getting OAuth token: " + error);
+                    }
+                });
+            }
+        });
+    }
+    
+    public void retry() {
+        errorMessage = null;
+        loadNextPage();
+    }
+    
+    /**
+     * Cancels the request in flight; call when the list goes away
+     */
+    public void cancel() {
+        listener = null;
+        loading = false;
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+    
+    private void fetchPage() {
+        // The list may have gone away while the token was being fetched
+        if (!loading) {
+            return;
+        }
+        
+        // The first page is what the screen shows; later ones are fetched ahead of the scroll
+        final int offset = tokens.size();
+        RequestScheduler.Priority priority = offset == 0 ? RequestScheduler.Priority.VISIBLE : RequestScheduler.Priority.PREFETCH;
+        inFlight = tokensApi.getTokens("eq." + stratoClient.getUserCommonName(), "eq." + assetName,
+                "id.asc", PAGE_SIZE, offset, priority);
+        inFlight.enqueue(new Callback<List<Token>>() {
+            @Override
+            public void onResponse(Call<List<Token>> call, retrofit2.Response<List<Token>> response) {
+                if (call.isCanceled()) {
+                    return;
+                }
+                inFlight = null;
+                loading = false;
+                if (response.isSuccessful() && response.body() != null) {
+                    List<Token> page = response.body();
+                    tokens.addAll(page);
+                    
+                    // A short page is the last one
+                    endReached = page.size() < PAGE_SIZE;
+                    Log.d(TAG, "Loaded " + page.size() + " " + assetName + " tokens at offset " + offset);
+                    if (listener != null) {
+                        listener.onPageLoaded();
+                    }
+                } else {
+                    Log.e(TAG, "Error fetching tokens: " + response.code());
+                    fail("Error fetching tokens: " + response.code());
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<List<Token>> call, Throwable t) {
+                // Made way for interactive work; ask again, which waits until that is done
+                if (t instanceof RequestScheduler.PreemptedException && call == inFlight) {
+                    fetchPage();
+                    return;
+                }
+                if (call.isCanceled()) {
+                    return;
+                }
+                inFlight = null;
+                loading = false;
+                Log.e(TAG, "Token API call failed: " + t.getMessage());
+                fail("Token API call failed: " + t.getMessage());
+            }
+        });
+    }
+    
+    private void fail(String message) {
+        loading = false;
+        errorMessage = message;
+        if (listener != null) {
+            listener.onError(message);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextUtils;
+import android.view.View;
+
+/**
+ * One token in the asset drill-down list: its thumbnail, id, quantity and description.
+ * The thumbnail is requested from ThumbnailCache when the row is bound and drawn once it
+ * arrives, unless the row has been reused for another token by then.
+ */
+public class TokenRowView extends View implements ThumbnailCache.Callback {
+    private static final int ROW_HEIGHT = 160;
+    private static final int THUMBNAIL_SIZE = 128;
+    private static final int PADDING = 16;
+    private static final int TEXT_SIZE_TITLE = 32;
+    private static final int TEXT_SIZE_CONTENT = 28;
+    
+    private final ThumbnailCache thumbnailCache;
+    
+    // UI
+    private final Paint titlePaint;
+    private final Paint contentPaint;
+    private final Paint placeholderPaint;
+    private final Paint dividerPaint;
+    
+    // Bound token
+    private String title = "";
+    private String quantity = "";
+    private String description = "";
+    private String imageUrl;
+    private Bitmap thumbnail;
+    
+    public TokenRowView(Context context) {
+        super(context);
+        thumbnailCache = ThumbnailCache.getInstance(context);
+        
+        titlePaint = new Paint();
+        titlePaint.setColor(Color.parseColor("#333333"));
+        titlePaint.setTextSize(TEXT_SIZE_TITLE);
+        titlePaint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
+        titlePaint.setAntiAlias(true);
+        
+        contentPaint = new Paint();
+        contentPaint.setColor(Color.parseColor("#555555"));
+        contentPaint.setTextSize(TEXT_SIZE_CONTENT);
+        contentPaint.setAntiAlias(true);
+        
+        placeholderPaint = new Paint();
+        placeholderPaint.setColor(Color.parseColor("#EEEEEE"));
+        placeholderPaint.setStyle(Paint.Style.FILL);
+        
+        dividerPaint = new Paint();
+        dividerPaint.setColor(Color.parseColor("#DDDDDD"));
+        dividerPaint.setStrokeWidth(2);
+    }
+    
+    /**
+     * Shows a token. imageUrl must be absolute, or null if the token has no image.
+     */
+    public void bind(String title, String quantity, String description, String imageUrl) {
+        this.title = title != null ? title : "";
+        this.quantity = quantity != null ? quantity : "";
+        this.description = description != null ? description : "";
+        this.imageUrl = imageUrl;
+        
+        // Cached thumbnails are drawn straight away; the rest arrive through onThumbnailLoaded
+        thumbnail = null;
+        if (imageUrl != null) {
+            thumbnailCache.load(imageUrl, THUMBNAIL_SIZE, this);
+        }
+        invalidate();
+    }
+    
+    @Override
+    public void onThumbnailLoaded(String url, int size, Bitmap bitmap) {
+        // The row may have been recycled for another token while this one was loading
+        if (bitmap != null && url.equals(imageUrl)) {
+            thumbnail = bitmap;
+            invalidate();
+        }
+    }
+    
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), ROW_HEIGHT);
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int width = getWidth();
+        int top = (ROW_HEIGHT - THUMBNAIL_SIZE) / 2;
+        
+        // Thumbnail, centered in its square, or a placeholder while it loads
+        if (thumbnail != null) {
+            float left = PADDING + (THUMBNAIL_SIZE - thumbnail.getWidth()) / 2f;
+            float y = top + (THUMBNAIL_SIZE - thumbnail.getHeight()) / 2f;
+            canvas.drawBitmap(thumbnail, left, y, null);
+        } else {
+            canvas.drawRect(PADDING, top, PADDING + THUMBNAIL_SIZE, top + THUMBNAIL_SIZE, placeholderPaint);
+        }
+        
+        // Text column
+        float x = PADDING * 2 + THUMBNAIL_SIZE;
+        float textWidth = width - x - PADDING;
+        canvas.drawText(ellipsize(title, titlePaint, textWidth), x, top + TEXT_SIZE_TITLE, titlePaint);
+        canvas.drawText(ellipsize(quantity, contentPaint, textWidth), x, top + TEXT_SIZE_TITLE + PADDING + TEXT_SIZE_CONTENT, contentPaint);
+        canvas.drawText(ellipsize(description, contentPaint, textWidth), x, top + TEXT_SIZE_TITLE + PADDING * 2 + TEXT_SIZE_CONTENT * 2, contentPaint);
+        
+        canvas.drawLine(0, ROW_HEIGHT - 1, width, ROW_HEIGHT - 1, dividerPaint);
+    }
+    
+    private static String ellipsize(String text, Paint paint, float maxWidth) {
+        if (paint.measureText(text) <= maxWidth) {
+            return text;
+        }
+        int fit = paint.breakText(text, true, maxWidth - paint.measureText("..."), null);
+        return TextUtils.substring(text, 0, Math.max(0, fit)) + "...";
+    }
+}
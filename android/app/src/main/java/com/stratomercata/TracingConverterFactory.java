@@ -0,0 +1,75 @@
+package com.stratomercata;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.HttpUrl;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+
+/**
+ * Wraps another converter factory so response parsing is recorded as its own PerfMetrics stage
+ * and as the decode phase of the endpoint in NetworkTelemetry
+ */
+public class TracingConverterFactory extends Converter.Factory {
+    private final Converter.Factory delegate;
+    
+    public TracingConverterFactory(Converter.Factory delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        final Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null) {
+            return null;
+        }
+        
+        final String path = getEndpointPath(annotations, retrofit);
+        return new Converter<ResponseBody, Object>() {
+            @Override
+            public Object convert(@NonNull ResponseBody value) throws IOException {
+                long start = PerfMetrics.begin(PerfMetrics.STAGE_PARSE);
+                try {
+                    return converter.convert(value);
+                } finally {
+                    PerfMetrics.end(PerfMetrics.STAGE_PARSE, start);
+                    if (path != null) {
+                        NetworkTelemetry.getInstance().recordDecode(path, SystemClock.elapsedRealtimeNanos() - start);
+                    }
+                }
+            }
+        };
+    }
+    
+    /**
+     * Resolves the URL path of the annotated service method, matching the path OkHttp reports
+     */
+    private static String getEndpointPath(Annotation[] annotations, Retrofit retrofit) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) {
+                HttpUrl url = retrofit.baseUrl().resolve(((GET) annotation).value());
+                return url != null ? url.encodedPath() : null;
+            }
+            if (annotation instanceof POST) {
+                HttpUrl url = retrofit.baseUrl().resolve(((POST) annotation).value());
+                return url != null ? url.encodedPath() : null;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public Converter<?, okhttp3.RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                                  Annotation[] methodAnnotations, Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+}
@@ -14,7 +14,7 @@ import android.widget.Toast;
 
 import java.text.DecimalFormat;
 
-public class TradeFormView extends View {
+public class TradeFormView extends View implements TradeSubmitter.TradeListener {
     // Constants
     private static final int PADDING = 40;
     private static final int BUTTON_PADDING = 20;
@@ -22,12 +22,27 @@ public class TradeFormView extends View {
     private static final int INPUT_HEIGHT = 100;
     private static final int INPUT_RADIUS = 8;
     private static final int BUTTON_HEIGHT = 120;
+    private static final String TRADE_ASSET_NAME = "PAXGST";
+    private static final String DRAW_SECTION = "TradeFormView.onDraw";
+    private static final String MEASURE_SECTION = "TradeFormView.onMeasure";
     
     // State
     private boolean isBuySelected = true;
     private float amount = 1.0f;
     private float currentPrice = 1923.45f;
     private boolean isAmountInputActive = false;
+    private TradeOrder lastOrder;
+    
+    // Whether lastOrder is still being sent; an order parked in the journal no longer counts
+    private boolean tradeInFlight = false;
+    
+    // Trade submission
+    private final TradeSubmitter tradeSubmitter;
+    
+    // Market depth for fill price and slippage preview
+    private final OrderBookFeed orderBookFeed;
+    private final OrderBook.Quote quote = new OrderBook.Quote();
+    private boolean hasQuote = false;
     
     // UI elements
     private RectF buyButton;
@@ -59,10 +74,12 @@ public class TradeFormView extends View {
     private final Paint disclaimerTextPaint;
     private final Paint tradeIndicatorBgPaint;
     private final Paint tradeIndicatorTextPaint;
+    private final Paint statusTextPaint;
     
     // Formatters
     private final DecimalFormat amountFormat;
     private final DecimalFormat priceFormat;
+    private final DecimalFormat slippageFormat;
     
     public TradeFormView(Context context) {
         this(context, null);
@@ -74,6 +91,7 @@ public class TradeFormView extends View {
         // Initialize formatters
         amountFormat = new DecimalFormat("#,##0.00");
         priceFormat = new DecimalFormat("$#,##0.00");
+        slippageFormat = new DecimalFormat("0.00%");
         
         // Initialize paints
         backgroundPaint = new Paint();
@@ -180,6 +198,38 @@ public class TradeFormView extends View {
         tradeIndicatorTextPaint.setTextSize(30);
         tradeIndicatorTextPaint.setTextAlign(Paint.Align.CENTER);
         tradeIndicatorTextPaint.setFakeBoldText(true);
+        
+        statusTextPaint = new Paint();
+        statusTextPaint.setColor(Color.parseColor("#333333"));
+        statusTextPaint.setTextSize(28);
+        statusTextPaint.setTextAlign(Paint.Align.LEFT);
+        statusTextPaint.setAntiAlias(true);
+        
+        // Trades are submitted on a background executor and report progress back to this view
+        tradeSubmitter = TradeSubmitter.getInstance(context);
+        
+        // Re-quote whenever the book changes
+        orderBookFeed = new OrderBookFeed(context, TRADE_ASSET_NAME);
+        orderBookFeed.setOnBookChangedListener(new OrderBookFeed.OnBookChangedListener() {
+            @Override
+            public void onBookChanged(OrderBook orderBook) {
+                updateQuote();
+            }
+        });
+    }
+    
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        tradeSubmitter.addTradeListener(this);
+        orderBookFeed.start();
+    }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+        tradeSubmitter.removeTradeListener(this);
+        orderBookFeed.stop();
+        super.onDetachedFromWindow();
     }
     
     @Override
@@ -255,8 +305,21 @@ public class TradeFormView extends View {
         );
     }
     
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = PerfMetrics.begin(MEASURE_SECTION);
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        PerfMetrics.end(MEASURE_SECTION, start);
+    }
+    
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = PerfMetrics.begin(DRAW_SECTION);
+        drawView(canvas);
+        PerfMetrics.end(DRAW_SECTION, start);
+    }
+    
+    private void drawView(Canvas canvas) {
         super.onDraw(canvas);
         
         int width = getWidth();
@@ -321,14 +384,29 @@ public class TradeFormView extends View {
                 priceDisplay.left, priceDisplay.top - PADDING / 2, labelPaint);
         canvas.drawRoundRect(priceDisplay, INPUT_RADIUS, INPUT_RADIUS, inputBackgroundPaint);
         
-        float totalPrice = amount * currentPrice;
+        // Price the order against market depth when we have it, otherwise at the current price
+        double totalPrice = hasQuote && quote.complete ? quote.totalCost : amount * currentPrice;
         canvas.drawText(priceFormat.format(totalPrice), 
                 priceDisplay.right - PADDING, priceDisplay.centerY() + 15, inputTextPaint);
         
+        if (hasQuote) {
+            String depthText;
+            if (quote.complete) {
+                depthText = "Avg fill " + priceFormat.format(quote.averagePrice) + 
+                        ", slippage " + slippageFormat.format(quote.slippage);
+            } else {
+                depthText = "Only " + amountFormat.format(quote.filledQuantity) + " oz available at listed prices";
+            }
+            canvas.drawText(depthText, priceDisplay.left, priceDisplay.bottom + PADDING, statusTextPaint);
+        } else if (!isBuySelected) {
+            canvas.drawText("Sells are priced at the oracle price, not checked against depth",
+                    priceDisplay.left, priceDisplay.bottom + PADDING, statusTextPaint);
+        }
+        
         // Draw execute button
         Paint executeButtonPaint = isBuySelected ? buyExecuteButtonPaint : sellExecuteButtonPaint;
         canvas.drawRoundRect(executeButton, BUTTON_RADIUS, BUTTON_RADIUS, executeButtonPaint);
-        canvas.drawText(getContext().getString(R.string.execute), 
+        canvas.drawText(tradeInFlight ? getContext().getString(R.string.submitting) : getContext().getString(R.string.execute), 
                 executeButton.centerX(), executeButton.centerY() + 15, executeButtonTextPaint);
         
         // Draw disclaimer
@@ -343,6 +421,25 @@ public class TradeFormView extends View {
         String disclaimer = "Trading involves risk. Please ensure you understand the risks before trading.";
         canvas.drawText(disclaimer, 
                 disclaimerBox.left + PADDING, disclaimerBox.centerY() + 10, disclaimerTextPaint);
+        
+        // Draw status of the most recent trade
+        if (lastOrder != null) {
+            canvas.drawText(getTradeStatusText(lastOrder), 
+                    disclaimerBox.left, disclaimerBox.bottom + PADDING, statusTextPaint);
+        }
+    }
+    
+    private String getTradeStatusText(TradeOrder order) {
+        switch (order.state) {
+            case PENDING:
+                return order.errorMessage != null ? "Trade saved (" + order.errorMessage + ")" : "Trade pending...";
+            case SUBMITTED:
+                return "Trade submitted in " + order.submitLatencyMs + " ms, awaiting confirmation...";
+            case CONFIRMED:
+                return "Trade confirmed (submitted in " + order.submitLatencyMs + " ms)";
+            default:
+                return "Trade failed: " + order.errorMessage;
+        }
     }
     
     @Override
@@ -354,18 +451,18 @@ public class TradeFormView extends View {
             case MotionEvent.ACTION_DOWN:
                 if (buyButton.contains(x, y)) {
                     isBuySelected = true;
-                    invalidate();
+                    updateQuote();
                     return true;
                 } else if (sellButton.contains(x, y)) {
                     isBuySelected = false;
-                    invalidate();
+                    updateQuote();
                     return true;
                 } else if (amountInput.contains(x, y)) {
                     isAmountInputActive = true;
                     // In a real app, this would show a number input dialog
                     // For this demo, we'll just increment the amount
                     amount += 0.5f;
-                    invalidate();
+                    updateQuote();
                     return true;
                 } else if (executeButton.contains(x, y)) {
                     executeTrade();
@@ -378,13 +475,51 @@ public class TradeFormView extends View {
     }
     
     private void executeTrade() {
-        String action = isBuySelected ? "Bought" : "Sold";
-        float totalPrice = amount * currentPrice;
+        // One order at a time: every tap is a new order with its own idempotency key, so repeated
+        // taps would otherwise place repeated trades
+        if (tradeInFlight) {
+            return;
+        }
         
-        String message = action + " " + amountFormat.format(amount) + " oz of gold for " + 
-                priceFormat.format(totalPrice);
+        // Build the order from the form state and hand it to the background submitter
+        TradeOrder.Side side = isBuySelected ? TradeOrder.Side.BUY : TradeOrder.Side.SELL;
+        double price = hasQuote && quote.complete ? quote.averagePrice : currentPrice;
+        lastOrder = new TradeOrder(side, TRADE_ASSET_NAME, amount, price);
+        tradeInFlight = true;
+        tradeSubmitter.submit(lastOrder);
+        invalidate();
+    }
+    
+    /**
+     * Walks the order book for the current amount; cheap enough to run on every change. The book
+     * holds sale listings only, so just buys are quoted.
+     */
+    private void updateQuote() {
+        hasQuote = isBuySelected && orderBookFeed.getOrderBook().quote(TradeOrder.Side.BUY, amount, quote);
+        invalidate();
+    }
+    
+    @Override
+    public void onTradeUpdated(TradeOrder.Update update) {
+        TradeOrder order = update.order;
+        if (order != lastOrder) {
+            return;
+        }
+        
+        // An order the node couldn't take stays journaled and is replayed when a network comes
+        // up, which may be much later; it shouldn't hold the form until then
+        tradeInFlight = !update.isFinished() && !update.isParked();
+        
+        if (update.state == TradeOrder.State.CONFIRMED) {
+            String action = order.side == TradeOrder.Side.BUY ? "Bought" : "Sold";
+            String message = action + " " + amountFormat.format(order.quantity) + " oz of gold for " + 
+                    priceFormat.format(order.quantity * order.price);
+            Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+        } else if (update.state == TradeOrder.State.FAILED) {
+            Toast.makeText(getContext(), "Trade failed: " + update.errorMessage, Toast.LENGTH_LONG).show();
+        }
         
-        Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+        invalidate();
     }
     
     public void setCurrentPrice(float price) {
@@ -0,0 +1,82 @@
+package com.stratomercata;
+
+import android.os.SystemClock;
+
+import java.util.UUID;
+
+/**
+ * A buy or sell order built from the trade form, tracked from tap to on-chain result
+ */
+public class TradeOrder {
+    public enum Side { BUY, SELL }
+    
+    public enum State { PENDING, SUBMITTED, CONFIRMED, FAILED }
+    
+    // Immutable order details
+    public final String idempotencyKey;
+    public final Side side;
+    public final String assetName;
+    public final double quantity;
+    public final double price;
+    public final long createdAtMs; // Uptime when the order was tapped
+    
+    // Progress, written on the submission executor and read on the main thread
+    public volatile State state = State.PENDING;
+    public volatile String txHash;
+    public volatile String errorMessage;
+    public volatile long submitLatencyMs = -1;
+    
+    // Node that accepted the transaction, which result polls go back to
+    public final NodeSelector.Pin node = new NodeSelector.Pin();
+    
+    /**
+     * The order's progress at one moment. Listeners get one per event, so queued events keep
+     * the state they were sent with even as the order moves on.
+     */
+    public static final class Update {
+        public final TradeOrder order;
+        public final State state;
+        public final String txHash;
+        public final String errorMessage;
+        
+        Update(TradeOrder order, State state, String txHash, String errorMessage) {
+            this.order = order;
+            this.state = state;
+            this.txHash = txHash;
+            this.errorMessage = errorMessage;
+        }
+        
+        public boolean isFinished() {
+            return state == State.CONFIRMED || state == State.FAILED;
+        }
+        
+        /**
+         * Whether the order is waiting in the journal for a replay after losing touch with the node,
+         * before or after it was submitted
+         */
+        public boolean isParked() {
+            return !isFinished() && errorMessage != null;
+        }
+    }
+    
+    public TradeOrder(Side side, String assetName, double quantity, double price) {
+        this(UUID.randomUUID().toString(), side, assetName, quantity, price);
+    }
+    
+    public TradeOrder(String idempotencyKey, Side side, String assetName, double quantity, double price) {
+        this.idempotencyKey = idempotencyKey;
+        this.side = side;
+        this.assetName = assetName;
+        this.quantity = quantity;
+        this.price = price;
+        this.createdAtMs = SystemClock.uptimeMillis();
+    }
+    
+    public boolean isFinished() {
+        return state == State.CONFIRMED || state == State.FAILED;
+    }
+    
+    public Update snapshot() {
+        return new Update(this, state, txHash, errorMessage);
+    }
+}
@@ -0,0 +1,342 @@
+package com.stratomercata;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Submits trade orders as Mercata contract calls on a background executor and reports
+ * their progress (pending, submitted, confirmed, failed) back on the main thread.
+ * Every order is journaled before it is sent; orders that could not reach the node are
+ * replayed in batches when connectivity returns.
+ */
+public class TradeSubmitter {
+    private static final String TAG = "TradeSubmitter";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final String TRANSACTION_PATH = "/bloc/v2.2/transaction?resolve=false";
+    private static final String RESULT_PATH = "/bloc/v2.2/transactions/%s/result?resolve=true";
+    private static final String TRADE_CONTRACT_NAME = "Marketplace";
+    private static final long GAS_LIMIT = 32100000000L;
+    private static final int MAX_RESULT_POLLS = 30;
+    private static final long RESULT_POLL_INTERVAL_MS = 1000;
+    private static final int MAX_CONCURRENT_SUBMISSIONS = 3;
+    private static final int REPLAY_BATCH_SIZE = 10;
+    
+    // Interface for trade progress events, always called on the main thread
+    public interface TradeListener {
+        void onTradeUpdated(TradeOrder.Update update);
+    }
+    
+    private static TradeSubmitter instance;
+    
+    private final StratoClient stratoClient;
+    private final OrderJournal journal;
+    private final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_SUBMISSIONS);
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<TradeListener> listeners = new ArrayList<>();
+    
+    // Idempotency keys of orders currently being submitted, so replays never send an order twice at once
+    private final Set<String> inFlight = new HashSet<>();
+    
+    // Set while a replay is queued but not yet started, so back-to-back requests share one pass
+    private final AtomicBoolean replayQueued = new AtomicBoolean(false);
+    
+    // Thrown when the node definitively rejects an order, as opposed to being unreachable
+    private static class TradeRejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        TradeRejectedException(String message) {
+            super(message);
+        }
+    }
+    
+    public static synchronized TradeSubmitter getInstance(Context context) {
+        if (instance == null) {
+            instance = new TradeSubmitter(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private TradeSubmitter(Context context) {
+        this.stratoClient = StratoClient.getInstance(context);
+        this.journal = new OrderJournal(context.getFilesDir());
+        
+        // Replay anything left over from a previous run whenever a network comes up. The callback
+        // fires straight away for a network that is already up, which covers startup.
+        if (!registerNetworkCallback(context)) {
+            replayPendingOrders();
+        }
+    }
+    
+    private boolean registerNetworkCallback(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return false;
+        }
+        
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                Log.d(TAG, "Network available, replaying journaled orders");
+                replayPendingOrders();
+            }
+        });
+        return true;
+    }
+    
+    public void addTradeListener(TradeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeTradeListener(TradeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Journals the order and queues it for submission, returning immediately
+     */
+    public void submit(TradeOrder order) {
+        // The journal write is batched on its own thread; we only wait for it off the main thread
+        OrderJournal.Write durable = journal.appendOrder(order);
+        notifyListeners(order);
+        dispatch(order, durable, null);
+    }
+    
+    private void dispatch(final TradeOrder order, final OrderJournal.Write durable, final CountDownLatch done) {
+        synchronized (inFlight) {
+            if (!inFlight.add(order.idempotencyKey)) {
+                if (done != null) {
+                    done.countDown();
+                }
+                return;
+            }
+        }
+        
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Never send an order whose intent is not yet on disk
+                    if (durable != null) {
+                        durable.await();
+                    }
+                    runOrder(order);
+                } catch (IOException e) {
+                    // The journal couldn't store the order, so it can't be replayed either; fail it
+                    Log.e(TAG, "Trade " + order.idempotencyKey + " not journaled: " + e.getMessage());
+                    order.errorMessage = "Could not save trade: " + e.getMessage();
+                    order.state = TradeOrder.State.FAILED;
+                    notifyListeners(order);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    synchronized (inFlight) {
+                        inFlight.remove(order.idempotencyKey);
+                    }
+                    if (done != null) {
+                        done.countDown();
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Re-sends journaled orders that were never confirmed or rejected, a batch at a time.
+     * Does nothing if a replay is already queued; that one will see the same journal.
+     */
+    public void replayPendingOrders() {
+        if (!replayQueued.compareAndSet(false, true)) {
+            return;
+        }
+        replayExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayQueued.set(false);
+                try {
+                    List<TradeOrder> pending = journal.loadPendingOrders();
+                    for (int start = 0; start < pending.size(); start += REPLAY_BATCH_SIZE) {
+                        List<TradeOrder> batch = pending.subList(start, Math.min(start + REPLAY_BATCH_SIZE, pending.size()));
+                        CountDownLatch done = new CountDownLatch(batch.size());
+                        for (TradeOrder order : batch) {
+                            notifyListeners(order);
+                            dispatch(order, null, done);
+                        }
+                        done.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+    
+    private void runOrder(TradeOrder order) {
+        try {
+            if (!stratoClient.isConfigured()) {
+                throw new TradeRejectedException("API client is not configured");
+            }
+            
+            // Make sure the shared client holds a valid token
+            stratoClient.getOAuthTokenBlocking();
+            
+            // A replayed order that already reached the node only needs its result
+            if (order.txHash == null) {
+                order.txHash = postTransaction(order);
+                order.submitLatencyMs = SystemClock.uptimeMillis() - order.createdAtMs;
+                Log.d(TAG, "Trade " + order.idempotencyKey + " submitted in " + order.submitLatencyMs + "ms, tx " + order.txHash);
+            }
+            order.state = TradeOrder.State.SUBMITTED;
+            order.errorMessage = null;
+            journal.appendState(order);
+            notifyListeners(order);
+            
+            awaitResult(order);
+        } catch (TradeRejectedException | JSONException e) {
+            Log.e(TAG, "Trade " + order.idempotencyKey + " failed: " + e.getMessage());
+            order.errorMessage = e.getMessage();
+            order.state = TradeOrder.State.FAILED;
+        } catch (IOException e) {
+            // Node unreachable: keep the order journaled so it is replayed when connectivity returns
+            Log.e(TAG, "Trade " + order.idempotencyKey + " queued for replay: " + e.getMessage());
+            order.errorMessage = "Waiting for connection";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            order.errorMessage = "Interrupted";
+        }
+        
+        if (order.isFinished()) {
+            journal.appendState(order);
+        }
+        notifyListeners(order);
+    }
+    
+    private String postTransaction(TradeOrder order) throws IOException, JSONException {
+        JSONObject args = new JSONObject();
+        args.put("assetName", order.assetName);
+        args.put("quantity", String.format(Locale.US, "%.6f", order.quantity));
+        args.put("price", String.format(Locale.US, "%.2f", order.price));
+        
+        JSONObject payload = new JSONObject();
+        payload.put("contractName", TRADE_CONTRACT_NAME);
+        payload.put("contractAddress", stratoClient.getTradeContractAddress());
+        payload.put("method", order.side == TradeOrder.Side.BUY ? "buy" : "sell");
+        payload.put("args", args);
+        
+        JSONObject tx = new JSONObject();
+        tx.put("type", "FUNCTION");
+        tx.put("payload", payload);
+        
+        // The idempotency key travels with the transaction so a replayed order is not executed twice
+        JSONObject metadata = new JSONObject();
+        metadata.put("idempotencyKey", order.idempotencyKey);
+        tx.put("metadata", metadata);
+        
+        JSONObject txParams = new JSONObject();
+        txParams.put("gasLimit", GAS_LIMIT);
+        txParams.put("gasPrice", 1);
+        
+        JSONObject body = new JSONObject();
+        body.put("txs", new JSONArray().put(tx));
+        body.put("txParams", txParams);
+        
+        Request request = new Request.Builder()
+                .url(stratoClient.getBaseUrl() + TRANSACTION_PATH)
+                .header("Idempotency-Key", order.idempotencyKey)
+                .post(RequestBody.create(body.toString(), JSON))
+                .tag(RequestScheduler.Priority.class, RequestScheduler.Priority.INTERACTIVE)
+                .tag(NodeSelector.Pin.class, order.node)
+                .build();
+        
+        Response response = stratoClient.getHttpClient().newCall(request).execute();
+        try {
+            if (response.code() >= 400 && response.code() < 500) {
+                throw new TradeRejectedException("HTTP error: " + response.code());
+            } else if (!response.isSuccessful()) {
+                throw new IOException("HTTP error: " + response.code());
+            }
+            JSONArray results = new JSONArray(response.body().string());
+            return results.getJSONObject(0).getString("hash");
+        } finally {
+            response.close();
+        }
+    }
+    
+    private void awaitResult(TradeOrder order) throws IOException, JSONException, InterruptedException {
+        Request request = new Request.Builder()
+                .url(stratoClient.getBaseUrl() + String.format(RESULT_PATH, order.txHash))
+                .tag(RequestScheduler.Priority.class, RequestScheduler.Priority.INTERACTIVE)
+                .tag(NodeSelector.Pin.class, order.node)
+                .build();
+        
+        for (int i = 0; i < MAX_RESULT_POLLS; i++) {
+            Response response = stratoClient.getHttpClient().newCall(request).execute();
+            JSONObject result;
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("HTTP error: " + response.code());
+                }
+                result = new JSONObject(response.body().string());
+            } finally {
+                response.close();
+            }
+            
+            String status = result.optString("status");
+            if ("Success".equals(status)) {
+                order.state = TradeOrder.State.CONFIRMED;
+                return;
+            } else if ("Failure".equals(status)) {
+                JSONObject txResult = result.optJSONObject("txResult");
+                throw new TradeRejectedException(txResult != null ? txResult.optString("message", "Transaction failed") : "Transaction failed");
+            }
+            
+            // Still pending
+            Thread.sleep(RESULT_POLL_INTERVAL_MS);
+        }
+        
+        throw new IOException("Timed out waiting for transaction " + order.txHash);
+    }
+    
+    private void notifyListeners(TradeOrder order) {
+        // Taken now: by the time the post runs, this thread may have moved the order on
+        final TradeOrder.Update update = order.snapshot();
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (TradeListener listener : new ArrayList<>(listeners)) {
+                    listener.onTradeUpdated(update);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoadGateTest {
+    private static final long TIMEOUT_MS = 1000;
+    
+    @Test
+    public void requestsDuringALoadJoinIt() {
+        LoadGate gate = new LoadGate(TIMEOUT_MS);
+        int load = gate.begin(0);
+        assertNotEquals(LoadGate.JOINED, load);
+        assertEquals(LoadGate.JOINED, gate.begin(10));
+        
+        assertTrue(gate.finish(load));
+        assertNotEquals(LoadGate.JOINED, gate.begin(20));
+    }
+    
+    @Test
+    public void lostCallbackDoesNotBlockLaterLoads() {
+        LoadGate gate = new LoadGate(TIMEOUT_MS);
+        int lost = gate.begin(0);
+        
+        // The callback that would finish the load never runs
+        assertEquals(LoadGate.JOINED, gate.begin(TIMEOUT_MS - 1));
+        assertFalse(gate.isInFlight(TIMEOUT_MS));
+        int next = gate.begin(TIMEOUT_MS);
+        assertNotEquals(LoadGate.JOINED, next);
+        assertNotEquals(lost, next);
+        
+        // A late callback from the lost load can't end the new one
+        assertFalse(gate.isCurrent(lost));
+        assertFalse(gate.finish(lost));
+        assertTrue(gate.isInFlight(TIMEOUT_MS + 1));
+        assertTrue(gate.finish(next));
+    }
+    
+    @Test
+    public void loadEndsOnlyOnce() {
+        LoadGate gate = new LoadGate(TIMEOUT_MS);
+        int load = gate.begin(0);
+        assertTrue(gate.finish(load));
+        assertFalse(gate.finish(load));
+        assertFalse(gate.isInFlight(1));
+    }
+}
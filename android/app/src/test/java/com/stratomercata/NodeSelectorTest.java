@@ -0,0 +1,120 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class NodeSelectorTest {
+    private static final String QUERY_PATH = "/cirrus/search/BlockApps-Mercata-Asset?limit=1";
+    
+    private MockWebServer primary;
+    private MockWebServer secondary;
+    private NodeSelector selector;
+    private OkHttpClient client;
+    
+    @Before
+    public void setUp() throws IOException {
+        primary = new MockWebServer();
+        primary.start();
+        secondary = new MockWebServer();
+        secondary.start();
+        
+        // The nodes serve the same API under different base paths
+        selector = new NodeSelector(Arrays.asList(primary.url("/strato"), secondary.url("/node2/")),
+                new OkHttpClient());
+        client = new OkHttpClient.Builder()
+                .addInterceptor(selector)
+                .build();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        primary.shutdown();
+        secondary.shutdown();
+    }
+    
+    private int send(NodeSelector.Pin pin) throws IOException {
+        Request request = new Request.Builder()
+                .url(primary.url("/strato" + QUERY_PATH))
+                .tag(NodeSelector.Pin.class, pin)
+                .build();
+        Response response = client.newCall(request).execute();
+        response.close();
+        return response.code();
+    }
+    
+    // One 503 from the primary, so the secondary has the lower average
+    private void failPrimaryOnce() throws IOException {
+        primary.enqueue(new MockResponse().setResponseCode(503));
+        assertEquals(503, send(null));
+    }
+    
+    @Test
+    public void failoverKeepsTheOtherNodesBasePath() throws Exception {
+        failPrimaryOnce();
+        secondary.enqueue(new MockResponse().setBody("[]"));
+        
+        assertEquals(200, send(null));
+        
+        assertEquals("/strato" + QUERY_PATH, primary.takeRequest().getPath());
+        assertEquals("/node2" + QUERY_PATH, secondary.takeRequest().getPath());
+        assertEquals(secondary.url("/node2/"), selector.getSelectedNode());
+    }
+    
+    @Test
+    public void pinnedRequestsStayOnTheNodeThatFirstAnswered() throws Exception {
+        NodeSelector.Pin pin = new NodeSelector.Pin();
+        primary.enqueue(new MockResponse().setBody("[]"));
+        assertEquals(200, send(pin));
+        assertEquals(primary.url("/strato"), pin.getNode());
+        
+        // Unpinned requests move to the secondary; pinned ones do not
+        failPrimaryOnce();
+        secondary.enqueue(new MockResponse().setBody("[]"));
+        assertEquals(200, send(null));
+        primary.enqueue(new MockResponse().setBody("[]"));
+        assertEquals(200, send(pin));
+        
+        assertEquals(3, primary.getRequestCount());
+        assertEquals(1, secondary.getRequestCount());
+    }
+    
+    @Test
+    public void failedResponseDoesNotSetThePin() throws IOException {
+        NodeSelector.Pin pin = new NodeSelector.Pin();
+        primary.enqueue(new MockResponse().setResponseCode(503));
+        
+        assertEquals(503, send(pin));
+        assertNull(pin.getNode());
+    }
+    
+    @Test
+    public void otherHostsPassThrough() throws Exception {
+        MockWebServer other = new MockWebServer();
+        other.enqueue(new MockResponse().setBody("ok"));
+        other.start();
+        try {
+            HttpUrl url = other.url("/image.png");
+            client.newCall(new Request.Builder().url(url).build()).execute().close();
+            
+            assertEquals("/image.png", other.takeRequest().getPath());
+            assertEquals(0, primary.getRequestCount());
+            assertEquals(0, secondary.getRequestCount());
+        } finally {
+            other.shutdown();
+        }
+    }
+}
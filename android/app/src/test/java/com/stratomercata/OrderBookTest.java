@@ -0,0 +1,106 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderBookTest {
+    private static final double DELTA = 1e-9;
+    
+    private OrderBook book;
+    private OrderBook.Quote quote;
+    
+    @Before
+    public void setUp() {
+        book = new OrderBook();
+        quote = new OrderBook.Quote();
+    }
+    
+    @Test
+    public void listingsAtOnePriceShareALevel() {
+        book.update("a", false, 2350.00, 1.0);
+        book.update("b", false, 2350.00, 2.0);
+        book.update("c", false, 2360.00, 1.0);
+        
+        assertEquals(2, book.getLevelCount());
+        assertTrue(book.quote(TradeOrder.Side.BUY, 3.0, quote));
+        assertTrue(quote.complete);
+        assertEquals(2350.00, quote.worstPrice, DELTA);
+    }
+    
+    @Test
+    public void updateMovesAListingBetweenLevels() {
+        book.update("a", false, 2350.00, 1.0);
+        book.update("a", false, 2370.00, 0.5);
+        
+        assertEquals(1, book.getLevelCount());
+        assertTrue(book.quote(TradeOrder.Side.BUY, 0.5, quote));
+        assertEquals(2370.00, quote.bestPrice, DELTA);
+        assertEquals(0.5, quote.filledQuantity, DELTA);
+    }
+    
+    @Test
+    public void emptiedListingLeavesTheBook() {
+        book.update("a", false, 2350.00, 1.0);
+        book.update("b", false, 2350.00, 1.0);
+        book.update("a", false, 2350.00, 0);
+        
+        assertEquals(1, book.getLevelCount());
+        assertTrue(book.quote(TradeOrder.Side.BUY, 5.0, quote));
+        assertEquals(1.0, quote.filledQuantity, DELTA);
+        
+        book.remove("b");
+        assertTrue(book.isEmpty());
+        assertFalse(book.quote(TradeOrder.Side.BUY, 1.0, quote));
+    }
+    
+    @Test
+    public void buyWalksAsksFromTheLowestPrice() {
+        book.update("high", false, 2400.00, 1.0);
+        book.update("low", false, 2300.00, 1.0);
+        book.update("mid", false, 2350.00, 1.0);
+        
+        assertTrue(book.quote(TradeOrder.Side.BUY, 2.5, quote));
+        assertTrue(quote.complete);
+        assertEquals(2.5, quote.filledQuantity, DELTA);
+        assertEquals(2300.00 + 2350.00 + 0.5 * 2400.00, quote.totalCost, DELTA);
+        assertEquals(quote.totalCost / 2.5, quote.averagePrice, DELTA);
+        assertEquals(2300.00, quote.bestPrice, DELTA);
+        assertEquals(2400.00, quote.worstPrice, DELTA);
+        assertEquals((quote.averagePrice - 2300.00) / 2300.00, quote.slippage, DELTA);
+    }
+    
+    @Test
+    public void sellWalksBidsFromTheHighestPrice() {
+        book.update("low", true, 2300.00, 1.0);
+        book.update("high", true, 2400.00, 1.0);
+        book.update("ask", false, 2500.00, 1.0);
+        
+        assertTrue(book.quote(TradeOrder.Side.SELL, 1.5, quote));
+        assertEquals(2400.00, quote.bestPrice, DELTA);
+        assertEquals(2300.00, quote.worstPrice, DELTA);
+        assertEquals(2400.00 + 0.5 * 2300.00, quote.totalCost, DELTA);
+    }
+    
+    @Test
+    public void shallowBookGivesAnIncompleteQuote() {
+        book.update("a", false, 2350.00, 0.75);
+        
+        assertTrue(book.quote(TradeOrder.Side.BUY, 2.0, quote));
+        assertFalse(quote.complete);
+        assertEquals(0.75, quote.filledQuantity, DELTA);
+        assertEquals(2.0, quote.requestedQuantity, DELTA);
+        assertEquals(2350.00, quote.averagePrice, DELTA);
+    }
+    
+    @Test
+    public void emptySideHasNoQuote() {
+        book.update("ask", false, 2350.00, 1.0);
+        
+        assertFalse(book.quote(TradeOrder.Side.SELL, 1.0, quote));
+        assertFalse(book.quote(TradeOrder.Side.BUY, 0, quote));
+    }
+}
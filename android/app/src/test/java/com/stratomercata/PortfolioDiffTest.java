@@ -0,0 +1,83 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.PortfolioCalculator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class PortfolioDiffTest {
+    private static Asset asset(String id, String name, long quantity, Integer decimals) {
+        Asset asset = new Asset();
+        asset.id = id;
+        asset.name = name;
+        asset.quantity = quantity;
+        asset.decimals = decimals;
+        return asset;
+    }
+    
+    private static PortfolioDisplayModel model(Asset... assets) {
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processAssetData(Arrays.asList(assets));
+        return PortfolioDisplayModel.build(calculator.getSnapshot());
+    }
+    
+    @Test
+    public void firstModelIsAFullRender() {
+        PortfolioDiff diff = PortfolioDiff.compute(null, model(asset("1", "USDST", 100, 2)));
+        
+        assertTrue(diff.full);
+        assertFalse(diff.isEmpty());
+    }
+    
+    @Test
+    public void identicalModelsHaveNoChanges() {
+        PortfolioDiff diff = PortfolioDiff.compute(
+                model(asset("1", "USDST", 100, 2), asset("2", "Gold Bar", 1, 0)),
+                model(asset("1", "USDST", 100, 2), asset("2", "Gold Bar", 1, 0)));
+        
+        assertTrue(diff.isEmpty());
+    }
+    
+    @Test
+    public void rowsAreInsertedRemovedAndChangedByName() {
+        PortfolioDiff diff = PortfolioDiff.compute(
+                model(asset("1", "USDST", 100, 2), asset("2", "Gold Bar", 1, 0), asset("3", "Silver Bar", 1, 0)),
+                model(asset("1", "USDST", 250, 2), asset("3", "Silver Bar", 1, 0), asset("4", "Art Print", 1, 0)));
+        
+        assertFalse(diff.full);
+        assertEquals(Collections.singleton("Art Print"), diff.inserted);
+        assertEquals(Collections.singleton("Gold Bar"), diff.removed);
+        assertEquals(Collections.singleton("USDST"), diff.changed);
+        assertTrue(diff.moved.isEmpty());
+    }
+    
+    @Test
+    public void anotherTokenOfTheSameAssetIsAChange() {
+        PortfolioDiff diff = PortfolioDiff.compute(
+                model(asset("1", "Gold Bar", 1, 0)),
+                model(asset("1", "Gold Bar", 1, 0), asset("2", "Gold Bar", 1, 0)));
+        
+        assertEquals(Collections.singleton("Gold Bar"), diff.changed);
+        assertTrue(diff.inserted.isEmpty());
+    }
+    
+    @Test
+    public void rowsOutsideTheLongestOrderedRunAreTheOnesThatMoved() {
+        // Old positions in new order: the row from 4 moved to the front
+        boolean[] inOrder = PortfolioDiff.longestIncreasingSubsequence(new int[] {4, 0, 1, 2, 3}, 5);
+        assertArrayEquals(new boolean[] {false, true, true, true, true}, inOrder);
+        
+        inOrder = PortfolioDiff.longestIncreasingSubsequence(new int[] {0, 3, 1, 2}, 4);
+        assertArrayEquals(new boolean[] {true, false, true, true}, inOrder);
+        
+        assertEquals(0, PortfolioDiff.longestIncreasingSubsequence(new int[0], 0).length);
+    }
+}
@@ -0,0 +1,179 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class RequestSchedulerTest {
+    private static final long TIMEOUT_MS = 5000;
+    
+    private MockWebServer server;
+    private RequestScheduler scheduler;
+    private OkHttpClient client;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    
+    // Responses held open, so their calls keep their slots until the test ends
+    private final List<Response> open = new ArrayList<>();
+    
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        // "/slow" never answers, so its calls stay waiting for a response
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                if ("/slow".equals(request.getPath())) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+                }
+                return new MockResponse().setBody("ok");
+            }
+        });
+        server.start();
+        scheduler = new RequestScheduler();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(scheduler)
+                .build();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        synchronized (open) {
+            for (Response response : open) {
+                response.close();
+            }
+        }
+        executor.shutdownNow();
+        server.shutdown();
+    }
+    
+    private Future<Response> submit(final String path, final RequestScheduler.Priority priority) {
+        return executor.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws IOException {
+                Request request = new Request.Builder()
+                        .url(server.url(path))
+                        .tag(RequestScheduler.Priority.class, priority)
+                        .build();
+                Response response = client.newCall(request).execute();
+                synchronized (open) {
+                    open.add(response);
+                }
+                return response;
+            }
+        });
+    }
+    
+    private Response get(Future<Response> future) throws Exception {
+        return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private RequestScheduler.ClassStats stats(RequestScheduler.Priority priority) {
+        return scheduler.getClassStats().get(priority.ordinal());
+    }
+    
+    // Waits until a class has the given number of calls queued and in flight
+    private void awaitLane(RequestScheduler.Priority priority, int waiting, int inFlight) throws InterruptedException {
+        long until = System.currentTimeMillis() + TIMEOUT_MS;
+        while (stats(priority).waiting != waiting || stats(priority).inFlight != inFlight) {
+            if (System.currentTimeMillis() > until) {
+                fail(priority + " has " + stats(priority).waiting + " waiting and " + stats(priority).inFlight
+                        + " in flight");
+            }
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    public void slotIsHeldUntilTheBodyIsClosed() throws Exception {
+        Response first = get(submit("/a", RequestScheduler.Priority.PREFETCH));
+        get(submit("/b", RequestScheduler.Priority.PREFETCH));
+        Future<Response> third = submit("/c", RequestScheduler.Priority.PREFETCH);
+        
+        // Two prefetches at a time
+        awaitLane(RequestScheduler.Priority.PREFETCH, 1, 2);
+        assertFalse(third.isDone());
+        
+        first.close();
+        assertEquals(200, get(third).code());
+        assertEquals(3, stats(RequestScheduler.Priority.PREFETCH).admitted);
+    }
+    
+    @Test
+    public void visibleWorkLeavesASlotForInteractiveWork() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            get(submit("/visible" + i, RequestScheduler.Priority.VISIBLE));
+        }
+        Future<Response> fifth = submit("/visible4", RequestScheduler.Priority.VISIBLE);
+        awaitLane(RequestScheduler.Priority.VISIBLE, 1, 4);
+        
+        assertEquals(200, get(submit("/trade", RequestScheduler.Priority.INTERACTIVE)).code());
+        assertFalse(fifth.isDone());
+    }
+    
+    @Test
+    public void prefetchWaitsWhileInteractiveWorkIsInFlight() throws Exception {
+        Response trade = get(submit("/trade", RequestScheduler.Priority.INTERACTIVE));
+        Future<Response> prefetch = submit("/thumbnail", RequestScheduler.Priority.PREFETCH);
+        awaitLane(RequestScheduler.Priority.PREFETCH, 1, 0);
+        
+        trade.close();
+        assertEquals(200, get(prefetch).code());
+    }
+    
+    @Test
+    public void interactiveWorkPreemptsAPrefetchWaitingForItsResponse() throws Exception {
+        List<Future<Response>> prefetches = new ArrayList<>();
+        prefetches.add(submit("/slow", RequestScheduler.Priority.PREFETCH));
+        prefetches.add(submit("/slow", RequestScheduler.Priority.PREFETCH));
+        awaitLane(RequestScheduler.Priority.PREFETCH, 0, 2);
+        for (int i = 0; i < 3; i++) {
+            get(submit("/visible" + i, RequestScheduler.Priority.VISIBLE));
+        }
+        
+        // Every slot is taken, so the trade cancels one prefetch and takes its slot
+        assertEquals(200, get(submit("/trade", RequestScheduler.Priority.INTERACTIVE)).code());
+        
+        int preempted = 0;
+        for (Future<Response> prefetch : prefetches) {
+            try {
+                prefetch.get(1000, TimeUnit.MILLISECONDS);
+                fail("A prefetch of /slow got a response");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RequestScheduler.PreemptedException);
+                preempted++;
+            } catch (TimeoutException e) {
+                // Still waiting for its response
+            }
+        }
+        assertEquals(1, preempted);
+        assertEquals(1, stats(RequestScheduler.Priority.PREFETCH).preempted);
+    }
+}
@@ -0,0 +1,121 @@
+package com.stratomercata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class ResilienceInterceptorTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+    
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        ResilienceInterceptor resilience = new ResilienceInterceptor(new OkHttpClient());
+        client = new OkHttpClient.Builder()
+                .addInterceptor(resilience)
+                .build();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+    
+    private Response get(String path) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+    }
+    
+    @Test
+    public void serverErrorIsRetried() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+        
+        Response response = get("/cirrus/search/BlockApps-Mercata-Asset");
+        
+        assertEquals(200, response.code());
+        assertEquals("ok", response.body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+    
+    @Test
+    public void lastStatusIsReturnedOnceAttemptsRunOut() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        
+        Response response = get("/cirrus/search/BlockApps-Mercata-Asset");
+        response.close();
+        
+        assertEquals(503, response.code());
+        assertEquals(3, server.getRequestCount());
+    }
+    
+    @Test
+    public void clientErrorIsNotRetried() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        
+        Response response = get("/cirrus/search/Missing");
+        response.close();
+        
+        assertEquals(404, response.code());
+        assertEquals(1, server.getRequestCount());
+    }
+    
+    @Test
+    public void writesPassStraightThrough() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        
+        Request request = new Request.Builder()
+                .url(server.url("/strato/v2.3/transaction/parallel"))
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build();
+        Response response = client.newCall(request).execute();
+        response.close();
+        
+        assertEquals(503, response.code());
+        assertEquals(1, server.getRequestCount());
+    }
+    
+    @Test
+    public void deadlineCoversTheResponseBody() throws IOException {
+        // Enough fast calls for the deadline to drop from its upper bound to its 2 s floor
+        String path = "/cirrus/search/BlockApps-Mercata-OracleService";
+        for (int i = 0; i < 20; i++) {
+            server.enqueue(new MockResponse().setBody("[]"));
+            get(path).close();
+        }
+        
+        // Headers at once, then a byte a second
+        server.enqueue(new MockResponse()
+                .setBody("[" + new String(new char[60]).replace('\0', ' ') + "]")
+                .throttleBody(1, 1, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        Response response = get(path);
+        try {
+            response.body().string();
+            fail("Stalled body was read to the end");
+        } catch (IOException expected) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Gave up after " + elapsedMs + " ms", elapsedMs < 10000);
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.stratomercata.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.Oracle;
+import com.stratomercata.portfolio.PortfolioJson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response decoding as Retrofit's Gson converter does it, reflective against the streaming
+ * PortfolioJson adapters. Run with the GC profiler: gc.alloc.rate.norm is garbage per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    // The asset row as it was decoded before PortfolioJson: reflective, every field a String
+    public static class ReflectiveAsset {
+        @SerializedName("id")
+        public String id;
+        
+        @SerializedName("name")
+        public String name;
+        
+        @SerializedName("quantity")
+        public String quantity;
+        
+        @SerializedName("decimals")
+        public Integer decimals;
+    }
+    
+    @Param({"10000"})
+    public int rows;
+    
+    @Param({"8", "1000"})
+    public int distinctNames;
+    
+    private byte[] assetsJson;
+    private byte[] oraclesJson;
+    private TypeAdapter<List<ReflectiveAsset>> reflectiveAssets;
+    private TypeAdapter<List<Oracle>> reflectiveOracles;
+    private TypeAdapter<List<Asset>> streamingAssets;
+    private TypeAdapter<List<Oracle>> streamingOracles;
+    
+    @Setup
+    public void setUp() {
+        // Serialize with the streaming adapters so quantities go over the wire as strings, like Cirrus
+        Gson streaming = PortfolioJson.newGson();
+        List<Asset> assets = SyntheticPortfolio.assets(rows, distinctNames, SyntheticPortfolio.DECIMALS_MIXED, 42);
+        assetsJson = streaming.toJson(assets).getBytes(StandardCharsets.UTF_8);
+        oraclesJson = streaming.toJson(SyntheticPortfolio.oracles(rows / 4, 42)).getBytes(StandardCharsets.UTF_8);
+        
+        Gson reflective = new Gson();
+        reflectiveAssets = reflective.getAdapter(new TypeToken<List<ReflectiveAsset>>() {});
+        reflectiveOracles = reflective.getAdapter(new TypeToken<List<Oracle>>() {});
+        streamingAssets = streaming.getAdapter(new TypeToken<List<Asset>>() {});
+        streamingOracles = streaming.getAdapter(new TypeToken<List<Oracle>>() {});
+    }
+    
+    private static <T> T parse(TypeAdapter<T> adapter, byte[] json) throws IOException {
+        return adapter.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+    }
+    
+    @Benchmark
+    public Object reflectiveAssets() throws IOException {
+        return parse(reflectiveAssets, assetsJson);
+    }
+    
+    @Benchmark
+    public Object streamingAssets() throws IOException {
+        return parse(streamingAssets, assetsJson);
+    }
+    
+    @Benchmark
+    public Object reflectiveOracles() throws IOException {
+        return parse(reflectiveOracles, oraclesJson);
+    }
+    
+    @Benchmark
+    public Object streamingOracles() throws IOException {
+        return parse(streamingOracles, oraclesJson);
+    }
+}
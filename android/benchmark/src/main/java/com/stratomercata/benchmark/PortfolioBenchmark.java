@@ -0,0 +1,65 @@
+package com.stratomercata.benchmark;
+
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.HoldingsStore;
+import com.stratomercata.portfolio.PortfolioCalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouping and valuation of a whole portfolio, the work done on every asset, oracle or trade update
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PortfolioBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows;
+    
+    @Param({"8", "1000"})
+    public int distinctNames;
+    
+    @Param({SyntheticPortfolio.DECIMALS_UNIFORM, SyntheticPortfolio.DECIMALS_MIXED})
+    public String decimalsMix;
+    
+    private List<Asset> assets;
+    private HoldingsStore holdings;
+    private PortfolioCalculator calculator;
+    
+    @Setup
+    public void setUp() {
+        assets = SyntheticPortfolio.assets(rows, distinctNames, decimalsMix, 42);
+        holdings = HoldingsStore.of(assets);
+        calculator = new PortfolioCalculator();
+        calculator.processOracleData(SyntheticPortfolio.oracles(1, 42));
+    }
+    
+    @Benchmark
+    public double processAssetData() {
+        calculator.processAssetData(assets);
+        return calculator.getFungibleTokensValue();
+    }
+    
+    // Oracle and trade updates regroup the stored holdings without decoding them again
+    @Benchmark
+    public double processHoldings() {
+        calculator.processAssetData(holdings);
+        return calculator.getFungibleTokensValue();
+    }
+}
@@ -0,0 +1,109 @@
+package com.stratomercata.benchmark;
+
+import com.stratomercata.portfolio.AssetGroup;
+import com.stratomercata.portfolio.AssetIndex;
+import com.stratomercata.portfolio.PortfolioCalculator;
+import com.stratomercata.portfolio.PortfolioSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asset breakdown search as the user types: building the index once per snapshot, then one
+ * query per keystroke, against filtering and re-sorting the group list on every keystroke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SearchBenchmark {
+    // Rows shown in the breakdown, as in AssetsView
+    private static final int LIMIT = 200;
+    
+    @Param({"1000", "100000"})
+    public int distinctNames;
+    
+    private PortfolioSnapshot snapshot;
+    private AssetIndex index;
+    private AssetIndex.Query prefixQuery;
+    private AssetIndex.Query topQuantityQuery;
+    
+    @Setup
+    public void setUp() {
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processOracleData(SyntheticPortfolio.oracles(1, 42));
+        calculator.processAssetData(SyntheticPortfolio.assets(distinctNames * 2, distinctNames,
+                SyntheticPortfolio.DECIMALS_MIXED, 42));
+        snapshot = calculator.getSnapshot();
+        index = AssetIndex.build(snapshot);
+        
+        // Matches "Item #12", "Item #120" and so on
+        prefixQuery = new AssetIndex.Query();
+        prefixQuery.text = "12";
+        prefixQuery.limit = LIMIT;
+        
+        topQuantityQuery = new AssetIndex.Query();
+        topQuantityQuery.sortKey = AssetIndex.SortKey.QUANTITY;
+        topQuantityQuery.limit = LIMIT;
+    }
+    
+    @Benchmark
+    public AssetIndex buildIndex() {
+        return AssetIndex.build(snapshot);
+    }
+    
+    @Benchmark
+    public int searchPrefix() {
+        return index.query(prefixQuery).matchCount;
+    }
+    
+    @Benchmark
+    public int topByQuantity() {
+        return index.query(topQuantityQuery).rows.length;
+    }
+    
+    // What a keystroke would cost without the index: split and test every name
+    @Benchmark
+    public int searchPrefixUnindexed() {
+        List<AssetGroup> matches = new ArrayList<>();
+        for (AssetGroup asset : snapshot.sortedAssets) {
+            for (String word : asset.name.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (word.startsWith("12")) {
+                    matches.add(asset);
+                    break;
+                }
+            }
+        }
+        return Math.min(matches.size(), LIMIT);
+    }
+    
+    @Benchmark
+    public int topByQuantityUnindexed() {
+        List<AssetGroup> sorted = new ArrayList<>(snapshot.sortedAssets);
+        Collections.sort(sorted, new Comparator<AssetGroup>() {
+            @Override
+            public int compare(AssetGroup a1, AssetGroup a2) {
+                return Double.compare(a2.totalQuantity / Math.pow(10, a2.decimals), a1.totalQuantity / Math.pow(10, a1.decimals));
+            }
+        });
+        return Math.min(sorted.size(), LIMIT);
+    }
+}
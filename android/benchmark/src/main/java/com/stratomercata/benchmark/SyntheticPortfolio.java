@@ -0,0 +1,77 @@
+package com.stratomercata.benchmark;
+
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.Oracle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic Cirrus data for the benchmarks
+ */
+public class SyntheticPortfolio {
+    // Real asset names first, so small portfolios hit the oracle mappings and hardcoded decimals
+    private static final String[] KNOWN_NAMES = {
+            "ETHST", "PAXGST", "WBTCST", "USDST", "STRAT", "CATA", "USDCST", "USDTST"
+    };
+    
+    // Decimals mixes: every row at 18, or the spread seen on a real node
+    public static final String DECIMALS_UNIFORM = "uniform";
+    public static final String DECIMALS_MIXED = "mixed";
+    private static final int[] MIXED_DECIMALS = {0, 2, 4, 6, 8, 18};
+    
+    private SyntheticPortfolio() {
+    }
+    
+    /**
+     * Builds the given number of token rows spread over at most distinctNames asset names.
+     * Names beyond the known tokens have no oracle price, like non-fungible items.
+     */
+    public static List<Asset> assets(int rows, int distinctNames, String decimalsMix, long seed) {
+        Random random = new Random(seed);
+        String[] names = names(distinctNames);
+        
+        List<Asset> assets = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Asset asset = new Asset();
+            asset.id = String.format("%040x", i);
+            asset.name = names[random.nextInt(names.length)];
+            asset.decimals = DECIMALS_MIXED.equals(decimalsMix) ? MIXED_DECIMALS[random.nextInt(MIXED_DECIMALS.length)] : 18;
+            
+            // Keep group totals inside a long even when a million rows share one name
+            asset.quantity = 1 + (random.nextLong() >>> 24);
+            assets.add(asset);
+        }
+        return assets;
+    }
+    
+    public static String[] names(int distinctNames) {
+        String[] names = new String[Math.max(1, distinctNames)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = i < KNOWN_NAMES.length ? KNOWN_NAMES[i] : "Item #" + i;
+        }
+        return names;
+    }
+    
+    /**
+     * Oracle rows for the four priced feeds, repeated the given number of times as the
+     * OracleService table keeps every submission
+     */
+    public static List<Oracle> oracles(int repeats, long seed) {
+        Random random = new Random(seed);
+        String[] feeds = {"ETH", "BTC", "Gold", "Silver"};
+        double[] basePrices = {3150.25, 64210.80, 2345.10, 29.45};
+        
+        List<Oracle> oracles = new ArrayList<>(repeats * feeds.length);
+        for (int r = 0; r < repeats; r++) {
+            for (int f = 0; f < feeds.length; f++) {
+                Oracle oracle = new Oracle();
+                oracle.name = feeds[f];
+                oracle.consensusPrice = Double.toString(basePrices[f] * (0.95 + random.nextDouble() * 0.1));
+                oracles.add(oracle);
+            }
+        }
+        return oracles;
+    }
+}
@@ -0,0 +1,89 @@
+package com.stratomercata.benchmark;
+
+import com.stratomercata.portfolio.AssetRegistry;
+import com.stratomercata.portfolio.Oracle;
+import com.stratomercata.portfolio.PortfolioCalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row helpers and oracle processing, measured in isolation over a batch of inputs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValuationBenchmark {
+    private static final int BATCH = 1024;
+    
+    @Param({SyntheticPortfolio.DECIMALS_UNIFORM, SyntheticPortfolio.DECIMALS_MIXED})
+    public String decimalsMix;
+    
+    @Param({"1", "100"})
+    public int oracleRepeats;
+    
+    private final String[] names = new String[BATCH];
+    private final Integer[] originalDecimals = new Integer[BATCH];
+    private final long[] quantities = new long[BATCH];
+    private final int[] decimals = new int[BATCH];
+    private List<Oracle> oracles;
+    private PortfolioCalculator calculator;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] pool = SyntheticPortfolio.names(64);
+        int[] mixed = {0, 2, 4, 6, 8, 18};
+        
+        for (int i = 0; i < BATCH; i++) {
+            names[i] = pool[random.nextInt(pool.length)];
+            decimals[i] = SyntheticPortfolio.DECIMALS_MIXED.equals(decimalsMix) ? mixed[random.nextInt(mixed.length)] : 18;
+            originalDecimals[i] = decimals[i];
+            quantities[i] = random.nextLong() >>> 1;
+        }
+        
+        oracles = SyntheticPortfolio.oracles(oracleRepeats, 42);
+        calculator = new PortfolioCalculator();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decimalsFor(Blackhole blackhole) {
+        AssetRegistry registry = AssetRegistry.DEFAULT;
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(registry.decimalsFor(names[i], originalDecimals[i]));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void calculateActualValue(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(PortfolioCalculator.calculateActualValue(quantities[i], decimals[i]));
+        }
+    }
+    
+    @Benchmark
+    public Object processOracleData() {
+        calculator.processOracleData(oracles);
+        return calculator.getLatestPrices();
+    }
+}
@@ -0,0 +1,68 @@
+package com.stratomercata.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Cold start with no ahead-of-time compilation against cold start with the baseline profile
+ * applied, to show what the checked-in profile buys
+ */
+public class BaselineProfileBenchmark {
+    private static final int ITERATIONS = 10;
+    
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+    
+    @Before
+    public void setUp() throws IOException {
+        MockBackend.setPortfolioSize(100);
+    }
+    
+    @Test
+    public void startupWithoutCompilation() {
+        startup(new CompilationMode.None());
+    }
+    
+    @Test
+    public void startupWithBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+    
+    private void startup(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                StartupBenchmark.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.pressHome();
+                        return Unit.INSTANCE;
+                    }
+                },
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.startActivityAndWait();
+                        StartupBenchmark.waitForPortfolio(scope);
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+}
@@ -0,0 +1,53 @@
+package com.stratomercata.macrobenchmark;
+
+import androidx.benchmark.macro.ExperimentalBaselineProfilesApi;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiObject2;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Collects the baseline profile checked in as app/src/main/baseline-prof.txt: launch, the first
+ * portfolio load and a first scroll through every view. Needs a rooted device or a userdebug
+ * emulator; copy the generated file over the checked-in one.
+ */
+@ExperimentalBaselineProfilesApi
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+    
+    @Test
+    public void generate() throws IOException {
+        MockBackend.setPortfolioSize(100);
+        
+        baselineProfileRule.collectBaselineProfile(
+                StartupBenchmark.PACKAGE_NAME,
+                Collections.<String>emptyList(),
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.pressHome();
+                        scope.startActivityAndWait();
+                        StartupBenchmark.waitForPortfolio(scope);
+                        
+                        UiObject2 scrollView = scope.getDevice().findObject(By.res(StartupBenchmark.PACKAGE_NAME, "main_scroll"));
+                        scrollView.setGestureMargin(scope.getDevice().getDisplayWidth() / 5);
+                        scrollView.fling(Direction.DOWN);
+                        scope.getDevice().waitForIdle();
+                        scrollView.fling(Direction.DOWN);
+                        scope.getDevice().waitForIdle();
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+}
@@ -0,0 +1,37 @@
+package com.stratomercata.macrobenchmark;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Reconfigures the local mock server (android/mockserver) that benchmark builds of the app load from
+ */
+public class MockBackend {
+    private static final String DEFAULT_URL = "http://10.0.2.2:8090";
+    
+    private MockBackend() {
+    }
+    
+    /**
+     * Serves a synthetic portfolio with one asset per row, so the table has that many rows
+     */
+    public static void setPortfolioSize(int rows) throws IOException {
+        String baseUrl = InstrumentationRegistry.getArguments().getString("mockServerUrl", DEFAULT_URL);
+        URL url = new URL(baseUrl + "/admin/config?rows=" + rows + "&distinctNames=" + rows
+                + "&latencyMs=0&bandwidthBytesPerSecond=0&errorRate=0");
+        
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            int code = connection.getResponseCode();
+            if (code != 200) {
+                throw new IOException("Mock server rejected config: HTTP " + code);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.stratomercata.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiObject2;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Frame timing while flinging the main screen down through the asset table and price chart
+ * and back up, at several portfolio sizes
+ */
+@RunWith(Parameterized.class)
+public class ScrollBenchmark {
+    private static final int ITERATIONS = 5;
+    
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+    
+    private final int portfolioSize;
+    
+    @Parameterized.Parameters(name = "rows={0}")
+    public static List<Integer> parameters() {
+        return Arrays.asList(10, 100, 1000);
+    }
+    
+    public ScrollBenchmark(int portfolioSize) {
+        this.portfolioSize = portfolioSize;
+    }
+    
+    @Before
+    public void setUp() throws IOException {
+        MockBackend.setPortfolioSize(portfolioSize);
+    }
+    
+    @Test
+    public void fling() {
+        benchmarkRule.measureRepeated(
+                StartupBenchmark.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                CompilationMode.DEFAULT,
+                null,
+                ITERATIONS,
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        // Start fresh at the top with the portfolio loaded, outside the measured section
+                        scope.pressHome();
+                        scope.startActivityAndWait();
+                        StartupBenchmark.waitForPortfolio(scope);
+                        return Unit.INSTANCE;
+                    }
+                },
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        UiObject2 scrollView = scope.getDevice().findObject(By.res(StartupBenchmark.PACKAGE_NAME, "main_scroll"));
+                        
+                        // Keep gestures clear of the system navigation areas
+                        scrollView.setGestureMargin(scope.getDevice().getDisplayWidth() / 5);
+                        
+                        // Down through the asset table, on past the chart, then back to the top
+                        scrollView.fling(Direction.DOWN);
+                        scope.getDevice().waitForIdle();
+                        scrollView.fling(Direction.DOWN);
+                        scope.getDevice().waitForIdle();
+                        scrollView.fling(Direction.UP);
+                        scope.getDevice().waitForIdle();
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+}
@@ -0,0 +1,93 @@
+package com.stratomercata.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Cold and warm start of MainActivity. Time to initial display is the first frame; time to
+ * full display is reported by AssetsView when the first portfolio load has been drawn.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+    static final String PACKAGE_NAME = "com.stratomercata";
+    static final long LOAD_TIMEOUT_MS = 30000;
+    private static final int ITERATIONS = 10;
+    
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+    
+    private final StartupMode startupMode;
+    private final int portfolioSize;
+    
+    @Parameterized.Parameters(name = "mode={0},rows={1}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (StartupMode mode : new StartupMode[] {StartupMode.COLD, StartupMode.WARM}) {
+            for (int rows : new int[] {10, 100, 1000}) {
+                parameters.add(new Object[] {mode, rows});
+            }
+        }
+        return parameters;
+    }
+    
+    public StartupBenchmark(StartupMode startupMode, int portfolioSize) {
+        this.startupMode = startupMode;
+        this.portfolioSize = portfolioSize;
+    }
+    
+    @Before
+    public void setUp() throws IOException {
+        MockBackend.setPortfolioSize(portfolioSize);
+    }
+    
+    @Test
+    public void startup() {
+        benchmarkRule.measureRepeated(
+                PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                CompilationMode.DEFAULT,
+                startupMode,
+                ITERATIONS,
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.pressHome();
+                        return Unit.INSTANCE;
+                    }
+                },
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.startActivityAndWait();
+                        waitForPortfolio(scope);
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+    
+    /**
+     * Waits until AssetsView has drawn its first load, which is also when it reports fully drawn
+     */
+    static void waitForPortfolio(MacrobenchmarkScope scope) {
+        scope.getDevice().wait(Until.hasObject(By.desc("Portfolio loaded")), LOAD_TIMEOUT_MS);
+    }
+}
@@ -0,0 +1,80 @@
+package com.stratomercata.mockserver;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Bounded in-memory log of server-sent events, used to resume clients from their last event id
+ */
+public class EventLog {
+    private static final int MAX_EVENTS = 1000;
+    
+    public static class Event {
+        public final long id;
+        public final String type;
+        public final String data;
+        
+        Event(long id, String type, String data) {
+            this.id = id;
+            this.type = type;
+            this.data = data;
+        }
+    }
+    
+    private final LinkedList<Event> events = new LinkedList<>();
+    private long lastId = 0;
+    
+    public synchronized Event append(String type, String data) {
+        Event event = new Event(++lastId, type, data);
+        events.add(event);
+        
+        // Drop the oldest events once the log is full
+        while (events.size() > MAX_EVENTS) {
+            events.removeFirst();
+        }
+        
+        notifyAll();
+        return event;
+    }
+    
+    /**
+     * Returns true if a client that last saw the given id can be resumed without a full reload
+     */
+    public synchronized boolean canResumeFrom(long afterId) {
+        if (afterId == lastId) {
+            return true;
+        }
+        // An id from the future means the server was restarted
+        if (afterId > lastId) {
+            return false;
+        }
+        return !events.isEmpty() && events.getFirst().id <= afterId + 1;
+    }
+    
+    public synchronized long getLastId() {
+        return lastId;
+    }
+    
+    /**
+     * Waits up to the given timeout for events newer than afterId and returns them in order
+     */
+    public synchronized List<Event> awaitAfter(long afterId, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (lastId <= afterId) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return new ArrayList<>();
+            }
+            wait(remaining);
+        }
+        
+        List<Event> result = new ArrayList<>();
+        for (Event event : events) {
+            if (event.id > afterId) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
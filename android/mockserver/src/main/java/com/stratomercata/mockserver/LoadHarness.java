@@ -0,0 +1,322 @@
+package com.stratomercata.mockserver;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stratomercata.portfolio.Asset;
+import com.stratomercata.portfolio.AssetTotal;
+import com.stratomercata.portfolio.Oracle;
+import com.stratomercata.portfolio.PortfolioCalculator;
+import com.stratomercata.portfolio.PortfolioJson;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.EventListener;
+import okhttp3.FormBody;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+
+/**
+ * Runs the app's full asset load (token, assets, oracles, valuation) repeatedly against an
+ * in-process MockServer and records latency percentiles and peak heap. Each run is appended
+ * to a JSON-lines results file so runs with the same settings can be compared over time.
+ *
+ * Options are --iterations=N, --warmup=N, --label=text, --results=path and --aggregate=true
+ * (load per-asset totals, as the app's aggregated mode does); every other --key=value is a
+ * MockConfig setting, e.g. --rows=100000 --latencyMs=200 --errorRate=0.05
+ */
+public class LoadHarness {
+    private static final String DEFAULT_RESULTS = "load-results.jsonl";
+    
+    // Same endpoints and client settings as AssetsService and StratoClient in the app
+    public interface ApiService {
+        @GET("BlockApps-Mercata-Asset")
+        Call<List<Asset>> getAssets(@Query("ownerCommonName") String ownerCommonName);
+        
+        @GET("BlockApps-Mercata-Asset")
+        Call<List<AssetTotal>> getAssetTotals(@Query("ownerCommonName") String ownerCommonName,
+                                              @Query("select") String select);
+        
+        @GET("BlockApps-Mercata-OracleService")
+        Call<List<Oracle>> getOracleValues();
+    }
+    
+    private final String baseUrl;
+    private final OkHttpClient baseClient;
+    private final OkHttpClient httpClient;
+    private final ApiService apiService;
+    private final boolean aggregate;
+    private volatile String accessToken;
+    
+    // Body size of the last asset response
+    private volatile long assetBytes;
+    
+    public LoadHarness(String baseUrl, boolean aggregate) {
+        this.baseUrl = baseUrl;
+        this.aggregate = aggregate;
+        baseClient = new OkHttpClient.Builder()
+                .connectTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .eventListener(new EventListener() {
+                    @Override
+                    public void responseBodyEnd(okhttp3.Call call, long byteCount) {
+                        if (call.request().url().encodedPath().endsWith("BlockApps-Mercata-Asset")) {
+                            assetBytes = byteCount;
+                        }
+                    }
+                })
+                .build();
+        httpClient = baseClient.newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return chain.proceed(chain.request().newBuilder()
+                                .header("Authorization", "Bearer " + accessToken)
+                                .build());
+                    }
+                })
+                .build();
+        apiService = new Retrofit.Builder()
+                .baseUrl(baseUrl + "/cirrus/search/")
+                .client(httpClient)
+                .addConverterFactory(GsonConverterFactory.create(PortfolioJson.newGson()))
+                .build()
+                .create(ApiService.class);
+    }
+    
+    /**
+     * One cold load as the app does it on launch: a fresh token, then assets, then oracles,
+     * then valuation. Returns the number of asset rows processed.
+     */
+    public int loadOnce() throws IOException {
+        Request tokenRequest = new Request.Builder()
+                .url(baseUrl + "/auth/token")
+                .post(new FormBody.Builder()
+                        .add("grant_type", "client_credentials")
+                        .add("client_id", "load-harness")
+                        .add("client_secret", "load-harness")
+                        .build())
+                .build();
+        Response response = baseClient.newCall(tokenRequest).execute();
+        try {
+            if (!response.isSuccessful()) {
+                throw new IOException("Token HTTP error: " + response.code());
+            }
+            JsonObject token = JsonParser.parseString(response.body().string()).getAsJsonObject();
+            accessToken = token.get("access_token").getAsString();
+        } finally {
+            response.close();
+        }
+        
+        if (aggregate) {
+            retrofit2.Response<List<AssetTotal>> totals = apiService.getAssetTotals("eq.load-harness", AssetTotal.SELECT).execute();
+            if (!totals.isSuccessful() || totals.body() == null) {
+                throw new IOException("Asset totals HTTP error: " + totals.code());
+            }
+            PortfolioCalculator calculator = new PortfolioCalculator();
+            calculator.processOracleData(fetchOracles());
+            calculator.processAssetTotals(totals.body());
+            return totals.body().size();
+        }
+        
+        retrofit2.Response<List<Asset>> assets = apiService.getAssets("eq.load-harness").execute();
+        if (!assets.isSuccessful() || assets.body() == null) {
+            throw new IOException("Assets HTTP error: " + assets.code());
+        }
+        
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processOracleData(fetchOracles());
+        calculator.processAssetData(assets.body());
+        return assets.body().size();
+    }
+    
+    private List<Oracle> fetchOracles() throws IOException {
+        retrofit2.Response<List<Oracle>> oracles = apiService.getOracleValues().execute();
+        if (!oracles.isSuccessful() || oracles.body() == null) {
+            throw new IOException("Oracle HTTP error: " + oracles.code());
+        }
+        return oracles.body();
+    }
+    
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+    
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int iterations = 20;
+        int warmup = 3;
+        String label = "";
+        String resultsPath = DEFAULT_RESULTS;
+        boolean aggregate = false;
+        MockConfig config = new MockConfig();
+        
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            String key = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (key.equals("iterations")) {
+                iterations = Integer.parseInt(value);
+            } else if (key.equals("warmup")) {
+                warmup = Integer.parseInt(value);
+            } else if (key.equals("label")) {
+                label = value;
+            } else if (key.equals("results")) {
+                resultsPath = value;
+            } else if (key.equals("aggregate")) {
+                aggregate = Boolean.parseBoolean(value);
+            } else {
+                config.set(key, value);
+            }
+        }
+        
+        MockServer server = new MockServer(0, config);
+        server.start();
+        try {
+            LoadHarness harness = new LoadHarness("http://localhost:" + server.getPort(), aggregate);
+            
+            // Warm up the JIT and connection pool with faults off, then measure with them on
+            double errorRate = config.errorRate;
+            config.errorRate = 0;
+            for (int i = 0; i < warmup; i++) {
+                harness.loadOnce();
+            }
+            config.errorRate = errorRate;
+            
+            List<MemoryPoolMXBean> pools = heapPools();
+            System.gc();
+            for (MemoryPoolMXBean pool : pools) {
+                pool.resetPeakUsage();
+            }
+            
+            long[] latencies = new long[iterations];
+            int succeeded = 0;
+            int failed = 0;
+            int rows = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                try {
+                    rows = harness.loadOnce();
+                    latencies[succeeded++] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                } catch (IOException e) {
+                    failed++;
+                }
+            }
+            
+            // Peak of each pool is summed, so this is an upper bound on the true peak
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : pools) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+            
+            long[] sorted = Arrays.copyOf(latencies, succeeded);
+            Arrays.sort(sorted);
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("timestamp", System.currentTimeMillis());
+            result.put("label", label);
+            result.put("config", config.toMap());
+            result.put("aggregate", aggregate);
+            result.put("iterations", iterations);
+            result.put("succeeded", succeeded);
+            result.put("failed", failed);
+            result.put("rowsPerLoad", rows);
+            result.put("assetBytesPerLoad", harness.assetBytes);
+            result.put("p50Ms", percentile(sorted, 0.50));
+            result.put("p90Ms", percentile(sorted, 0.90));
+            result.put("p99Ms", percentile(sorted, 0.99));
+            result.put("maxMs", sorted.length > 0 ? sorted[sorted.length - 1] : -1);
+            result.put("peakHeapBytes", peakHeap);
+            
+            Gson gson = new Gson();
+            String line = gson.toJson(result);
+            File resultsFile = new File(resultsPath);
+            String previous = findPreviousRun(resultsFile, gson.toJson(config.toMap()), aggregate, gson);
+            
+            if (resultsFile.getParentFile() != null) {
+                resultsFile.getParentFile().mkdirs();
+            }
+            FileWriter writer = new FileWriter(resultsFile, true);
+            try {
+                writer.write(line);
+                writer.write('\n');
+            } finally {
+                writer.close();
+            }
+            
+            System.out.println("This run:     " + line);
+            if (previous != null) {
+                System.out.println("Previous run: " + previous);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+    
+    /**
+     * Returns the most recent recorded run with the same server settings and fetch mode, or null
+     */
+    private static String findPreviousRun(File resultsFile, String configJson, boolean aggregate, Gson gson)
+            throws IOException {
+        if (!resultsFile.exists()) {
+            return null;
+        }
+        
+        String previous = null;
+        BufferedReader reader = new BufferedReader(new FileReader(resultsFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JsonObject run = JsonParser.parseString(line).getAsJsonObject();
+                    boolean runAggregate = run.has("aggregate") && run.get("aggregate").getAsBoolean();
+                    if (configJson.equals(gson.toJson(run.get("config"))) && runAggregate == aggregate) {
+                        previous = line;
+                    }
+                } catch (RuntimeException e) {
+                    // Skip lines that are not results
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,249 @@
+package com.stratomercata.mockserver;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * In-memory holdings and oracle prices served by the mock Cirrus endpoints and mutated by the event generator
+ */
+public class MarketState {
+    // Row shapes match the Cirrus BlockApps-Mercata-Asset and OracleService tables
+    public static class Asset {
+        public String id;
+        public String name;
+        public String quantity;
+        public Integer decimals;
+        public String description;
+        public List<String> images;
+        
+        Asset(String id, String name, String quantity, Integer decimals) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+            this.decimals = decimals;
+        }
+    }
+    
+    public static class Oracle {
+        public String name;
+        public String consensusPrice;
+        
+        Oracle(String name, String consensusPrice) {
+            this.name = name;
+            this.consensusPrice = consensusPrice;
+        }
+    }
+    
+    // Row shape matches the Cirrus BlockApps-Mercata-Sale table: price per whole token, quantity
+    // in base units
+    public static class Listing {
+        public String address;
+        public String name;
+        public String price;
+        public String quantity;
+        public Boolean isOpen;
+        public Long block_number;
+        
+        // Of the listed token, not part of the row
+        transient int decimals;
+        
+        Listing(String address, String name, String price, String quantity, int decimals, long blockNumber) {
+            this.address = address;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+            this.decimals = decimals;
+            this.isOpen = true;
+            this.block_number = blockNumber;
+        }
+    }
+    
+    private static final int GALLERY_SIZE = 150;
+    
+    private final Map<String, Asset> assets = new LinkedHashMap<>();
+    private final Map<String, Listing> listings = new LinkedHashMap<>();
+    private long blockNumber = 1;
+    private final Map<String, Double> prices = new LinkedHashMap<>();
+    private final Random random = new Random();
+    
+    public MarketState() {
+        // Fungible tokens with oracle prices
+        addAsset("ETHST", "1250000000000000000", 18);
+        addAsset("PAXGST", "350", 2);
+        addAsset("WBTCST", "1500000", 8);
+        addAsset("USDST", "250000", 2);
+        addAsset("STRAT", "1200000", 4);
+        addAsset("CATA", "4200000000000000000", 18);
+        
+        // Non-fungible items without a price oracle
+        for (int i = 1; i <= 5; i++) {
+            addItem("Art Print #" + i, "Limited edition print " + i + " of 5");
+        }
+        
+        // A collection large enough to page through in the drill-down
+        for (int i = 1; i <= GALLERY_SIZE; i++) {
+            addItem("Mercata Gallery", "Gallery piece " + i);
+        }
+        
+        prices.put("ETH", 3150.25);
+        prices.put("BTC", 64210.80);
+        prices.put("Gold", 2345.10);
+        prices.put("Silver", 29.45);
+        
+        // A ladder of gold sale listings above the oracle price
+        for (int i = 0; i < 12; i++) {
+            addListing(i % 2 == 0 ? "PAXGST" : "GOLDST", 2345.10 * (1.001 + i * 0.0015), 0.5 + random.nextInt(8) * 0.25);
+        }
+    }
+    
+    // PAXGST as in the holdings above; GOLDST has 18 decimals
+    private Listing addListing(String name, double price, double quantity) {
+        String address = String.format("%040x", new BigInteger(64, random));
+        int decimals = "PAXGST".equals(name) ? 2 : 18;
+        Listing listing = new Listing(address, name, String.format(Locale.US, "%.2f", price),
+                toBaseUnits(quantity, decimals), decimals, blockNumber);
+        listings.put(address, listing);
+        return listing;
+    }
+    
+    private static String toBaseUnits(double quantity, int decimals) {
+        return BigDecimal.valueOf(quantity).movePointRight(decimals).toBigInteger().toString();
+    }
+    
+    private Asset addAsset(String name, String quantity, int decimals) {
+        String id = String.format("%040x", new BigInteger(64, random));
+        Asset asset = new Asset(id, name, quantity, decimals);
+        assets.put(id, asset);
+        return asset;
+    }
+    
+    // One non-fungible token with an image served by the mock's /images endpoint
+    private void addItem(String name, String description) {
+        Asset asset = addAsset(name, "1", 0);
+        asset.description = description;
+        asset.images = Collections.singletonList("/images/" + asset.id + ".png");
+    }
+    
+    public synchronized List<Asset> getAssets() {
+        return new ArrayList<>(assets.values());
+    }
+    
+    public synchronized List<Oracle> getOracles() {
+        List<Oracle> oracles = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : prices.entrySet()) {
+            oracles.add(new Oracle(entry.getKey(), String.format(Locale.US, "%.2f", entry.getValue())));
+        }
+        return oracles;
+    }
+    
+    /**
+     * Returns listings for the given token names whose block number is at least minBlock
+     */
+    public synchronized List<Listing> getListings(List<String> names, long minBlock) {
+        List<Listing> result = new ArrayList<>();
+        for (Listing listing : listings.values()) {
+            if ((names == null || names.contains(listing.name)) && listing.block_number >= minBlock) {
+                result.add(listing);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Mines a block that partially fills, closes or adds one gold listing
+     */
+    public synchronized Listing mutateListing() {
+        blockNumber++;
+        
+        List<Listing> open = new ArrayList<>();
+        for (Listing listing : listings.values()) {
+            if (listing.isOpen) {
+                open.add(listing);
+            }
+        }
+        
+        int action = open.isEmpty() ? 2 : random.nextInt(3);
+        if (action == 2) {
+            double price = prices.get("Gold") * (1.001 + random.nextInt(12) * 0.0015);
+            return addListing(random.nextBoolean() ? "PAXGST" : "GOLDST", price, 0.5 + random.nextInt(8) * 0.25);
+        }
+        
+        Listing listing = open.get(random.nextInt(open.size()));
+        double remaining = new BigDecimal(listing.quantity).movePointLeft(listing.decimals).doubleValue() - 0.25;
+        if (action == 1 || remaining <= 0) {
+            listing.isOpen = false;
+        } else {
+            listing.quantity = toBaseUnits(remaining, listing.decimals);
+        }
+        listing.block_number = blockNumber;
+        return listing;
+    }
+    
+    /**
+     * Moves every oracle price by up to 0.5% and returns the new prices
+     */
+    public synchronized List<Oracle> tickOracles() {
+        for (Map.Entry<String, Double> entry : prices.entrySet()) {
+            double change = (random.nextDouble() - 0.5) * 0.01;
+            entry.setValue(entry.getValue() * (1 + change));
+        }
+        return getOracles();
+    }
+    
+    /**
+     * Changes the quantity of one fungible holding and returns the updated row
+     */
+    public synchronized Asset mutateHolding() {
+        List<Asset> fungible = new ArrayList<>();
+        for (Asset asset : assets.values()) {
+            if (asset.decimals != null && asset.decimals > 0) {
+                fungible.add(asset);
+            }
+        }
+        Asset asset = fungible.get(random.nextInt(fungible.size()));
+        
+        // Apply a change of up to 10% in either direction, staying within the client's long range
+        BigInteger quantity = new BigInteger(asset.quantity);
+        BigInteger delta = quantity.divide(BigInteger.valueOf(10 + random.nextInt(90)));
+        boolean grow = random.nextBoolean() && quantity.add(delta).bitLength() < 62;
+        asset.quantity = (grow ? quantity.add(delta) : quantity.subtract(delta)).toString();
+        return asset;
+    }
+    
+    /**
+     * Applies a buy or sell of a decimal quantity to the holding with the given name and returns
+     * the updated row, or throws if a sale exceeds the holding
+     */
+    public synchronized Asset applyTrade(boolean buy, String assetName, String quantity) {
+        Asset holding = null;
+        for (Asset asset : assets.values()) {
+            if (asset.name.equals(assetName)) {
+                holding = asset;
+                break;
+            }
+        }
+        if (holding == null) {
+            String id = String.format("%040x", new BigInteger(64, random));
+            holding = new Asset(id, assetName, "0", 2);
+            assets.put(id, holding);
+        }
+        
+        // Convert the decimal quantity to base units using the holding's decimals
+        BigInteger units = new BigDecimal(quantity).movePointRight(holding.decimals).toBigInteger();
+        BigInteger current = new BigInteger(holding.quantity);
+        BigInteger updated = buy ? current.add(units) : current.subtract(units);
+        if (updated.signum() < 0) {
+            throw new IllegalStateException("Insufficient balance of " + assetName);
+        }
+        
+        holding.quantity = updated.toString();
+        return holding;
+    }
+}
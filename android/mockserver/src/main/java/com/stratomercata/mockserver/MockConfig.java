@@ -0,0 +1,104 @@
+package com.stratomercata.mockserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load and fault settings for the mock server: synthetic portfolio size and shape, plus latency,
+ * bandwidth and error injection on the token and Cirrus endpoints. Set from the command line as
+ * --key=value or at runtime with POST /admin/config?key=value.
+ */
+public class MockConfig {
+    // Synthetic portfolio; 0 rows serves the live in-memory market instead
+    public volatile int rows = 0;
+    public volatile int distinctNames = 8;
+    public volatile String decimalsMix = "mixed";
+    public volatile int oracleRows = 4;
+    public volatile long seed = 42;
+    
+    // Fault injection
+    public volatile long latencyMs = 0;
+    public volatile long jitterMs = 0;
+    public volatile long bandwidthBytesPerSecond = 0;
+    public volatile double errorRate = 0;
+    
+    // Whether aggregate selects on the asset table are allowed, as on a node with aggregates on
+    public volatile boolean aggregates = true;
+    
+    /**
+     * Applies one setting, throwing IllegalArgumentException for unknown keys or bad values
+     */
+    public void set(String key, String value) {
+        try {
+            switch (key) {
+                case "rows":
+                    rows = Integer.parseInt(value);
+                    break;
+                case "distinctNames":
+                    distinctNames = Integer.parseInt(value);
+                    break;
+                case "decimalsMix":
+                    if (!"uniform".equals(value) && !"mixed".equals(value)) {
+                        throw new IllegalArgumentException("decimalsMix must be uniform or mixed");
+                    }
+                    decimalsMix = value;
+                    break;
+                case "oracleRows":
+                    oracleRows = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "latencyMs":
+                    latencyMs = Long.parseLong(value);
+                    break;
+                case "jitterMs":
+                    jitterMs = Long.parseLong(value);
+                    break;
+                case "bandwidthBytesPerSecond":
+                    bandwidthBytesPerSecond = Long.parseLong(value);
+                    break;
+                case "errorRate":
+                    errorRate = Double.parseDouble(value);
+                    break;
+                case "aggregates":
+                    if (!"true".equals(value) && !"false".equals(value)) {
+                        throw new IllegalArgumentException("aggregates must be true or false");
+                    }
+                    aggregates = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting: " + key);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+    
+    /**
+     * Parses --key=value arguments; anything else is left for the caller
+     */
+    public void parseArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                int eq = arg.indexOf('=');
+                set(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+    
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("rows", rows);
+        map.put("distinctNames", distinctNames);
+        map.put("decimalsMix", decimalsMix);
+        map.put("oracleRows", oracleRows);
+        map.put("seed", seed);
+        map.put("latencyMs", latencyMs);
+        map.put("jitterMs", jitterMs);
+        map.put("bandwidthBytesPerSecond", bandwidthBytesPerSecond);
+        map.put("errorRate", errorRate);
+        map.put("aggregates", aggregates);
+        return map;
+    }
+}
@@ -0,0 +1,610 @@
+package com.stratomercata.mockserver;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stratomercata.portfolio.AssetRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Local stand-in for the Keycloak token endpoint, the Cirrus search API and the push stream,
+ * so the app can be run and tested without BlockApps infrastructure.
+ *
+ * Asset metadata (BlockApps-Mercata-AssetMetadata) is served from the app's built-in registry.
+ *
+ * Point credentials.yaml at it with, for the Android emulator:
+ *   clientUrl: "http://10.0.2.2:8090"
+ *   tokenUrl: "http://10.0.2.2:8090/auth/token"
+ *   streamUrl: "http://10.0.2.2:8090/stream"
+ *
+ * Asset rows can be paged per asset with name=eq.X, order=id.asc, limit and offset, and
+ * non-fungible items link to generated pictures under /images. An aggregate select returns
+ * one total per asset name instead, unless --aggregates=false makes it fail like a node that
+ * doesn't allow aggregates.
+ *
+ * Trades posted to /bloc/v2.2/transaction are pending for a couple of seconds, then applied
+ * to the holdings and pushed to stream clients as an asset event. Gold sale listings for the
+ * order book change every few seconds, each change in a new block.
+ *
+ * For load testing, --rows=N (or POST /admin/config?rows=N) replaces the holdings with a
+ * synthetic portfolio, and latencyMs, jitterMs, bandwidthBytesPerSecond and errorRate inject
+ * faults into the token and Cirrus endpoints. See MockConfig for all settings.
+ */
+public class MockServer {
+    private static final int DEFAULT_PORT = 8090;
+    private static final long ORACLE_INTERVAL_SECONDS = 5;
+    private static final long HOLDINGS_INTERVAL_SECONDS = 15;
+    private static final long LISTINGS_INTERVAL_SECONDS = 7;
+    private static final long KEEP_ALIVE_MS = 15000;
+    private static final int TOKEN_LIFETIME_SECONDS = 300;
+    private static final long TRADE_CONFIRMATION_MS = 2000;
+    private static final String KEYCLOAK_TOKEN_PATH = "/auth/realms/mercata/protocol/openid-connect/token";
+    private static final long THROTTLE_SLICE_MS = 100;
+    private static final int IMAGE_SIZE = 256;
+    
+    // A submitted trade and its outcome once resolved
+    private static class Trade {
+        final String hash = UUID.randomUUID().toString().replace("-", "");
+        final long submittedAt = System.currentTimeMillis();
+        final boolean buy;
+        final String assetName;
+        final String quantity;
+        String status = "Pending";
+        String message;
+        
+        Trade(boolean buy, String assetName, String quantity) {
+            this.buy = buy;
+            this.assetName = assetName;
+            this.quantity = quantity;
+        }
+    }
+    
+    private final MarketState state = new MarketState();
+    private final EventLog eventLog = new EventLog();
+    private final Gson gson = new Gson();
+    private final AtomicInteger tokenCounter = new AtomicInteger();
+    private final Map<String, Trade> tradesByHash = new HashMap<>();
+    private final Map<String, Trade> tradesByIdempotencyKey = new HashMap<>();
+    private final HttpServer server;
+    private final ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool();
+    private final MockConfig config;
+    private final Random faultRandom = new Random();
+    
+    // Serialized synthetic portfolio, rebuilt when the settings that shape it change
+    private String syntheticAssetsKey;
+    private List<MarketState.Asset> syntheticAssets;
+    private String syntheticAssetsJson;
+    
+    public MockServer(int port) throws IOException {
+        this(port, new MockConfig());
+    }
+    
+    public MockServer(int port, MockConfig config) throws IOException {
+        this.config = config;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(requestExecutor);
+        
+        HttpHandler tokenHandler = new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (injectFaults(exchange)) {
+                    handleToken(exchange);
+                }
+            }
+        };
+        server.createContext("/auth/token", tokenHandler);
+        server.createContext(KEYCLOAK_TOKEN_PATH, tokenHandler);
+        server.createContext("/cirrus/search/BlockApps-Mercata-Asset", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (injectFaults(exchange)) {
+                    handleAssets(exchange);
+                }
+            }
+        });
+        server.createContext("/cirrus/search/BlockApps-Mercata-OracleService", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (injectFaults(exchange)) {
+                    sendJson(exchange, gson.toJson(config.rows > 0 ? SyntheticData.oracles(config) : state.getOracles()));
+                }
+            }
+        });
+        server.createContext("/cirrus/search/BlockApps-Mercata-AssetMetadata", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (injectFaults(exchange)) {
+                    sendJson(exchange, gson.toJson(AssetRegistry.defaultEntries()));
+                }
+            }
+        });
+        server.createContext("/admin/config", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleConfig(exchange);
+            }
+        });
+        server.createContext("/cirrus/search/BlockApps-Mercata-Sale", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleListings(exchange);
+            }
+        });
+        server.createContext("/bloc/v2.2/transaction", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleTransaction(exchange);
+            }
+        });
+        server.createContext("/bloc/v2.2/transactions/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleTransactionResult(exchange);
+            }
+        });
+        server.createContext("/images/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleImage(exchange);
+            }
+        });
+        server.createContext("/stream", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleStream(exchange);
+            }
+        });
+    }
+    
+    public void start() {
+        // Generate oracle ticks and holding changes on a fixed schedule
+        generator.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                eventLog.append("oracle", gson.toJson(state.tickOracles()));
+            }
+        }, ORACLE_INTERVAL_SECONDS, ORACLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        generator.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                eventLog.append("asset", gson.toJson(Collections.singletonList(state.mutateHolding())));
+            }
+        }, HOLDINGS_INTERVAL_SECONDS, HOLDINGS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        generator.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                state.mutateListing();
+            }
+        }, LISTINGS_INTERVAL_SECONDS, LISTINGS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        server.start();
+    }
+    
+    public void stop() {
+        generator.shutdownNow();
+        server.stop(0);
+        requestExecutor.shutdownNow();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    private void handleToken(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendStatus(exchange, 405);
+            return;
+        }
+        
+        String body = "{\"access_token\":\"mock-token-" + tokenCounter.incrementAndGet() + "\","
+                + "\"expires_in\":" + TOKEN_LIFETIME_SECONDS + ",\"token_type\":\"Bearer\"}";
+        sendJson(exchange, body);
+    }
+    
+    private void handleAssets(HttpExchange exchange) throws IOException {
+        // The full load is served from a cached serialization. The drill-down pages through one
+        // asset with name=eq.X, order=id.asc, limit and offset.
+        Map<String, String> params = parseQuery(exchange);
+        
+        // An aggregate select, like the app's aggregated mode sends, gets one total per name
+        String select = params.get("select");
+        if (select != null && select.contains("()")) {
+            if (!config.aggregates) {
+                sendStatus(exchange, 400);
+                return;
+            }
+            sendJson(exchange, gson.toJson(totalsByName(config.rows > 0 ? getSyntheticAssets() : state.getAssets())));
+            return;
+        }
+        
+        String name = params.get("name");
+        if (name == null || !name.startsWith("eq.")) {
+            sendJson(exchange, config.rows > 0 ? getSyntheticAssetsJson() : gson.toJson(state.getAssets()));
+            return;
+        }
+        
+        int limit;
+        int offset;
+        try {
+            limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+            offset = params.containsKey("offset") ? Integer.parseInt(params.get("offset")) : 0;
+        } catch (NumberFormatException e) {
+            sendStatus(exchange, 400);
+            return;
+        }
+        
+        List<MarketState.Asset> matching = new ArrayList<>();
+        for (MarketState.Asset asset : config.rows > 0 ? getSyntheticAssets() : state.getAssets()) {
+            if (asset.name.equals(name.substring(3))) {
+                matching.add(asset);
+            }
+        }
+        if ("id.asc".equals(params.get("order"))) {
+            Collections.sort(matching, new Comparator<MarketState.Asset>() {
+                @Override
+                public int compare(MarketState.Asset a1, MarketState.Asset a2) {
+                    return a1.id.compareTo(a2.id);
+                }
+            });
+        }
+        int from = Math.min(offset, matching.size());
+        int to = (int) Math.min((long) from + limit, matching.size());
+        sendJson(exchange, gson.toJson(matching.subList(from, to)));
+    }
+    
+    /**
+     * What Cirrus returns for AssetTotal.SELECT: per name, the summed quantity, the row count and
+     * the largest decimals, in name order
+     */
+    private static List<Map<String, Object>> totalsByName(List<MarketState.Asset> assets) {
+        Map<String, Map<String, Object>> totals = new TreeMap<>();
+        for (MarketState.Asset asset : assets) {
+            String key = asset.name != null ? asset.name : "";
+            Map<String, Object> total = totals.get(key);
+            if (total == null) {
+                total = new LinkedHashMap<>();
+                total.put("name", asset.name);
+                total.put("quantity", BigInteger.ZERO);
+                total.put("tokenCount", 0);
+                total.put("decimals", null);
+                totals.put(key, total);
+            }
+            total.put("quantity", ((BigInteger) total.get("quantity")).add(new BigInteger(asset.quantity)));
+            total.put("tokenCount", (Integer) total.get("tokenCount") + 1);
+            Integer decimals = (Integer) total.get("decimals");
+            if (asset.decimals != null && (decimals == null || asset.decimals > decimals)) {
+                total.put("decimals", asset.decimals);
+            }
+        }
+        return new ArrayList<>(totals.values());
+    }
+    
+    private void handleImage(HttpExchange exchange) throws IOException {
+        // A generated picture per item id: a colour and a few rings derived from the id
+        String path = exchange.getRequestURI().getPath();
+        String id = path.substring(path.lastIndexOf('/') + 1).replace(".png", "");
+        Random random = new Random(id.hashCode());
+        
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setColor(Color.getHSBColor(random.nextFloat(), 0.5f, 0.9f));
+        graphics.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+        for (int i = 0; i < 4; i++) {
+            int size = IMAGE_SIZE / 4 + random.nextInt(IMAGE_SIZE / 2);
+            graphics.setColor(Color.getHSBColor(random.nextFloat(), 0.7f, 0.6f));
+            graphics.fillOval(random.nextInt(IMAGE_SIZE - size), random.nextInt(IMAGE_SIZE - size), size, size);
+        }
+        graphics.dispose();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        byte[] bytes = out.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=86400");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+    
+    private void handleListings(HttpExchange exchange) throws IOException {
+        // Supports the PostgREST-style filters the app uses: name=eq.A or in.(A,B) and block_number=gte.N
+        List<String> names = null;
+        long minBlock = 0;
+        for (Map.Entry<String, String> param : parseQuery(exchange).entrySet()) {
+            String key = param.getKey();
+            String value = param.getValue();
+            try {
+                if (key.equals("name") && value.startsWith("in.(") && value.endsWith(")")) {
+                    names = Arrays.asList(value.substring(4, value.length() - 1).split(","));
+                } else if (key.equals("name") && value.startsWith("eq.")) {
+                    names = Collections.singletonList(value.substring(3));
+                } else if (key.equals("block_number") && value.startsWith("gte.")) {
+                    minBlock = Long.parseLong(value.substring(4));
+                }
+            } catch (NumberFormatException e) {
+                sendStatus(exchange, 400);
+                return;
+            }
+        }
+        sendJson(exchange, gson.toJson(state.getListings(names, minBlock)));
+    }
+    
+    private void handleConfig(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try {
+                for (Map.Entry<String, String> param : parseQuery(exchange).entrySet()) {
+                    config.set(param.getKey(), param.getValue());
+                }
+            } catch (IllegalArgumentException e) {
+                byte[] bytes = e.getMessage().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(400, bytes.length);
+                exchange.getResponseBody().write(bytes);
+                exchange.close();
+                return;
+            }
+        }
+        sendJson(exchange, gson.toJson(config.toMap()));
+    }
+    
+    /**
+     * Delays the request by the configured latency and fails it at the configured error rate.
+     * Returns false if an error response was sent and the handler should stop.
+     */
+    private boolean injectFaults(HttpExchange exchange) throws IOException {
+        long delay = config.latencyMs;
+        double roll;
+        synchronized (faultRandom) {
+            if (config.jitterMs > 0) {
+                delay += (long) (faultRandom.nextDouble() * config.jitterMs);
+            }
+            roll = faultRandom.nextDouble();
+        }
+        
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (roll < config.errorRate) {
+            sendStatus(exchange, 503);
+            return false;
+        }
+        return true;
+    }
+    
+    private synchronized String getSyntheticAssetsJson() {
+        getSyntheticAssets();
+        return syntheticAssetsJson;
+    }
+    
+    private synchronized List<MarketState.Asset> getSyntheticAssets() {
+        String key = config.rows + "/" + config.distinctNames + "/" + config.decimalsMix + "/" + config.seed;
+        if (!key.equals(syntheticAssetsKey)) {
+            syntheticAssets = SyntheticData.assets(config);
+            syntheticAssetsJson = gson.toJson(syntheticAssets);
+            syntheticAssetsKey = key;
+        }
+        return syntheticAssets;
+    }
+    
+    private Map<String, String> parseQuery(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"), URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+    
+    private void handleTransaction(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendStatus(exchange, 405);
+            return;
+        }
+        
+        JsonObject body = JsonParser.parseReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonObject payload = body.getAsJsonArray("txs").get(0).getAsJsonObject().getAsJsonObject("payload");
+        JsonObject args = payload.getAsJsonObject("args");
+        String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        
+        Trade trade;
+        synchronized (tradesByHash) {
+            // A replayed order gets the original transaction back instead of trading twice
+            trade = idempotencyKey != null ? tradesByIdempotencyKey.get(idempotencyKey) : null;
+            if (trade == null) {
+                trade = new Trade("buy".equals(payload.get("method").getAsString()),
+                        args.get("assetName").getAsString(), args.get("quantity").getAsString());
+                tradesByHash.put(trade.hash, trade);
+                if (idempotencyKey != null) {
+                    tradesByIdempotencyKey.put(idempotencyKey, trade);
+                }
+            }
+        }
+        
+        sendJson(exchange, "[{\"status\":\"Pending\",\"hash\":\"" + trade.hash + "\"}]");
+    }
+    
+    private void handleTransactionResult(HttpExchange exchange) throws IOException {
+        // Path is /bloc/v2.2/transactions/{hash}/result
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        String hash = parts.length > 4 ? parts[4] : "";
+        
+        Trade trade;
+        synchronized (tradesByHash) {
+            trade = tradesByHash.get(hash);
+            if (trade == null) {
+                sendStatus(exchange, 404);
+                return;
+            }
+            resolveTrade(trade);
+        }
+        
+        JsonObject result = new JsonObject();
+        result.addProperty("hash", trade.hash);
+        result.addProperty("status", trade.status);
+        if (trade.message != null) {
+            JsonObject txResult = new JsonObject();
+            txResult.addProperty("message", trade.message);
+            result.add("txResult", txResult);
+        }
+        sendJson(exchange, gson.toJson(result));
+    }
+    
+    private void resolveTrade(Trade trade) {
+        if (!"Pending".equals(trade.status) || System.currentTimeMillis() - trade.submittedAt < TRADE_CONFIRMATION_MS) {
+            return;
+        }
+        
+        try {
+            MarketState.Asset updated = state.applyTrade(trade.buy, trade.assetName, trade.quantity);
+            trade.status = "Success";
+            eventLog.append("asset", gson.toJson(Collections.singletonList(updated)));
+        } catch (RuntimeException e) {
+            trade.status = "Failure";
+            trade.message = e.getMessage();
+        }
+    }
+    
+    private void handleStream(HttpExchange exchange) throws IOException {
+        long lastEventId = parseLastEventId(exchange);
+        
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        
+        OutputStream out = exchange.getResponseBody();
+        try {
+            // New clients start from the current position; resuming clients whose position
+            // has already been evicted are asked to reload everything
+            if (lastEventId < 0) {
+                lastEventId = eventLog.getLastId();
+            } else if (!eventLog.canResumeFrom(lastEventId)) {
+                lastEventId = eventLog.getLastId();
+                writeEvent(out, lastEventId, "reset", "{}");
+            }
+            
+            while (true) {
+                List<EventLog.Event> events = eventLog.awaitAfter(lastEventId, KEEP_ALIVE_MS);
+                if (events.isEmpty()) {
+                    out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    continue;
+                }
+                for (EventLog.Event event : events) {
+                    writeEvent(out, event.id, event.type, event.data);
+                    lastEventId = event.id;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private long parseLastEventId(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private void writeEvent(OutputStream out, long id, String type, String data) throws IOException {
+        String frame = "id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n";
+        out.write(frame.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private void sendJson(HttpExchange exchange, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        
+        long bandwidth = config.bandwidthBytesPerSecond;
+        if (bandwidth <= 0) {
+            out.write(bytes);
+        } else {
+            // Write a slice per interval to simulate a slow link
+            int slice = (int) Math.max(1, bandwidth * THROTTLE_SLICE_MS / 1000);
+            try {
+                for (int offset = 0; offset < bytes.length; offset += slice) {
+                    out.write(bytes, offset, Math.min(slice, bytes.length - offset));
+                    out.flush();
+                    Thread.sleep(THROTTLE_SLICE_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.close();
+    }
+    
+    private void sendStatus(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        MockConfig config = new MockConfig();
+        config.parseArgs(args);
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                port = Integer.parseInt(arg);
+            }
+        }
+        
+        MockServer mockServer = new MockServer(port, config);
+        mockServer.start();
+        System.out.println("Mock STRATO server listening on http://localhost:" + mockServer.getPort());
+    }
+}
@@ -0,0 +1,53 @@
+package com.stratomercata.mockserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic Cirrus rows for load testing, shaped by a MockConfig
+ */
+public class SyntheticData {
+    // Priced tokens come first so every portfolio exercises the oracle mappings
+    private static final String[] KNOWN_NAMES = {
+            "ETHST", "PAXGST", "WBTCST", "USDST", "STRAT", "CATA", "USDCST", "USDTST"
+    };
+    private static final int[] MIXED_DECIMALS = {0, 2, 4, 6, 8, 18};
+    private static final String[] ORACLE_FEEDS = {"ETH", "BTC", "Gold", "Silver"};
+    private static final double[] ORACLE_PRICES = {3150.25, 64210.80, 2345.10, 29.45};
+    
+    private SyntheticData() {
+    }
+    
+    public static List<MarketState.Asset> assets(MockConfig config) {
+        Random random = new Random(config.seed);
+        int nameCount = Math.max(1, config.distinctNames);
+        boolean mixed = "mixed".equals(config.decimalsMix);
+        
+        List<MarketState.Asset> assets = new ArrayList<>(config.rows);
+        for (int i = 0; i < config.rows; i++) {
+            int nameIndex = random.nextInt(nameCount);
+            String name = nameIndex < KNOWN_NAMES.length ? KNOWN_NAMES[nameIndex] : "Item #" + nameIndex;
+            int decimals = mixed ? MIXED_DECIMALS[random.nextInt(MIXED_DECIMALS.length)] : 18;
+            
+            // Small enough that a million rows of one name still sum inside a long
+            String quantity = Long.toString(1 + (random.nextLong() >>> 24));
+            assets.add(new MarketState.Asset(String.format("%040x", i), name, quantity, decimals));
+        }
+        return assets;
+    }
+    
+    public static List<MarketState.Oracle> oracles(MockConfig config) {
+        Random random = new Random(config.seed);
+        
+        // The OracleService table keeps every submission, so feeds repeat
+        List<MarketState.Oracle> oracles = new ArrayList<>(config.oracleRows);
+        for (int i = 0; i < config.oracleRows; i++) {
+            int feed = i % ORACLE_FEEDS.length;
+            double price = ORACLE_PRICES[feed] * (0.95 + random.nextDouble() * 0.1);
+            oracles.add(new MarketState.Oracle(ORACLE_FEEDS[feed], String.format(Locale.US, "%.2f", price)));
+        }
+        return oracles;
+    }
+}
@@ -0,0 +1,33 @@
+package com.stratomercata.portfolio;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.math.BigInteger;
+
+/**
+ * A token row from the Cirrus BlockApps-Mercata-Asset table. Decoded by PortfolioJson, which
+ * parses quantity straight into base units.
+ *
+ * A quantity above Long.MAX_VALUE, about 9.2 whole tokens at 18 decimals, is held in
+ * largeQuantity instead, and quantity is left 0.
+ */
+public class Asset {
+    @SerializedName("id")
+    public String id;
+    
+    @SerializedName("name")
+    public String name;
+    
+    @SerializedName("quantity")
+    public long quantity;
+    
+    // Null unless the quantity is too large for a long
+    public BigInteger largeQuantity;
+    
+    @SerializedName("decimals")
+    public Integer decimals;
+    
+    public boolean hasQuantity() {
+        return quantity != 0 || largeQuantity != null;
+    }
+}
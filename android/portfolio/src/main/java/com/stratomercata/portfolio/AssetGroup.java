@@ -0,0 +1,21 @@
+package com.stratomercata.portfolio;
+
+/**
+ * All token rows sharing an asset name, with their combined quantity and value. The rows
+ * themselves stay in the HoldingsStore, as the range [firstRow, endRow), unless the group was
+ * built from totals Cirrus summed.
+ */
+public class AssetGroup {
+    public String name;
+    public long totalQuantity;
+    public int tokenCount;
+    public int decimals;
+    public double calculatedQuantity;
+    public double calculatedValue;
+    public boolean pending;
+    
+    // Null for groups built from Cirrus totals or holding only unconfirmed trades
+    public HoldingsStore holdings;
+    public int firstRow;
+    public int endRow;
+}
@@ -0,0 +1,283 @@
+package com.stratomercata.portfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Search, filter and sort over a snapshot's asset groups. Built once per snapshot, off the main
+ * thread, so each query only walks precomputed arrays:
+ *
+ * - Name search matches the start of any word in the name, case-insensitively, by binary
+ *   search over a sorted table of word suffixes.
+ * - Sorting by value, quantity or token count selects the top K with a bounded heap rather
+ *   than sorting every match, so "largest holdings" costs O(n log K).
+ *
+ * Results are positions in the snapshot's sortedAssets (and in the display rows built from it).
+ * Immutable and safe to query from any thread.
+ */
+public final class AssetIndex {
+    public enum Category {
+        FUNGIBLE,
+        NON_FUNGIBLE,
+        CATA
+    }
+    
+    public enum SortKey {
+        // Alphabetical, the order of sortedAssets
+        NAME,
+        // Largest first
+        VALUE,
+        QUANTITY,
+        TOKEN_COUNT
+    }
+    
+    // What to show; the defaults match every asset in name order
+    public static class Query {
+        // Prefix of any word in the asset name; empty matches all
+        public String text = "";
+        
+        // Null for all categories
+        public Category category;
+        
+        // Assets worth less are left out; only priced assets have a value
+        public double minValue;
+        
+        public SortKey sortKey = SortKey.NAME;
+        
+        // Most results to return, the K in top-K
+        public int limit = Integer.MAX_VALUE;
+    }
+    
+    public static final class Result {
+        // Positions in sortedAssets, in display order
+        public final int[] rows;
+        
+        // Matches before the limit was applied
+        public final int matchCount;
+        
+        Result(int[] rows, int matchCount) {
+            this.rows = rows;
+            this.matchCount = matchCount;
+        }
+    }
+    
+    private final int size;
+    private final byte[] categories;
+    private final double[] values;
+    private final double[] quantities;
+    private final int[] tokenCounts;
+    
+    // Lowercase word suffixes of every name, sorted, with the position each came from
+    private final String[] words;
+    private final int[] wordRows;
+    
+    private AssetIndex(int size, byte[] categories, double[] values, double[] quantities, int[] tokenCounts,
+                       String[] words, int[] wordRows) {
+        this.size = size;
+        this.categories = categories;
+        this.values = values;
+        this.quantities = quantities;
+        this.tokenCounts = tokenCounts;
+        this.words = words;
+        this.wordRows = wordRows;
+    }
+    
+    private static final class Word {
+        final String text;
+        final int row;
+        
+        Word(String text, int row) {
+            this.text = text;
+            this.row = row;
+        }
+    }
+    
+    public static AssetIndex build(PortfolioSnapshot snapshot) {
+        List<AssetGroup> assets = snapshot.sortedAssets;
+        int size = assets.size();
+        byte[] categories = new byte[size];
+        double[] values = new double[size];
+        double[] quantities = new double[size];
+        int[] tokenCounts = new int[size];
+        List<Word> wordList = new ArrayList<>(size * 2);
+        
+        for (int row = 0; row < size; row++) {
+            AssetGroup asset = assets.get(row);
+            
+            // Same classification as PortfolioCalculator.summarize
+            Category category;
+            if ("CATA".equals(asset.name)) {
+                category = Category.CATA;
+            } else if (snapshot.latestPrices.get(asset.name) != null) {
+                category = Category.FUNGIBLE;
+            } else {
+                category = Category.NON_FUNGIBLE;
+            }
+            categories[row] = (byte) category.ordinal();
+            values[row] = asset.calculatedValue;
+            quantities[row] = asset.totalQuantity / Math.pow(10, asset.decimals);
+            tokenCounts[row] = asset.tokenCount;
+            
+            // One entry per word start, so "oz" finds "Silver - Fractional 100 oz Bars"
+            String name = asset.name.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.isLetterOrDigit(name.charAt(i))
+                        && (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)))) {
+                    wordList.add(new Word(name.substring(i), row));
+                }
+            }
+        }
+        
+        Collections.sort(wordList, new Comparator<Word>() {
+            @Override
+            public int compare(Word w1, Word w2) {
+                return w1.text.compareTo(w2.text);
+            }
+        });
+        String[] words = new String[wordList.size()];
+        int[] wordRows = new int[wordList.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordList.get(i).text;
+            wordRows[i] = wordList.get(i).row;
+        }
+        
+        return new AssetIndex(size, categories, values, quantities, tokenCounts, words, wordRows);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public Category getCategory(int row) {
+        return Category.values()[categories[row]];
+    }
+    
+    public Result query(Query query) {
+        // Narrow by name first; with no text every row is a candidate
+        boolean[] nameMatches = null;
+        String text = query.text != null ? query.text.trim().toLowerCase(Locale.ROOT) : "";
+        if (!text.isEmpty()) {
+            nameMatches = new boolean[size];
+            for (int i = firstWordAtOrAfter(text); i < words.length && words[i].startsWith(text); i++) {
+                nameMatches[wordRows[i]] = true;
+            }
+        }
+        
+        // Candidates stay in row order, which is name order
+        int[] candidates = new int[size];
+        int matchCount = 0;
+        for (int row = 0; row < size; row++) {
+            if ((nameMatches == null || nameMatches[row])
+                    && (query.category == null || categories[row] == query.category.ordinal())
+                    && (query.minValue <= 0 || values[row] >= query.minValue)) {
+                candidates[matchCount++] = row;
+            }
+        }
+        
+        int limit = Math.max(0, Math.min(query.limit, matchCount));
+        if (query.sortKey == SortKey.NAME) {
+            return new Result(Arrays.copyOf(candidates, limit), matchCount);
+        }
+        return new Result(selectTop(candidates, matchCount, limit, query.sortKey), matchCount);
+    }
+    
+    // Binary search for the first word not less than prefix
+    private int firstWordAtOrAfter(String prefix) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * The k best candidates in ranking order. Keeps a heap of the best k seen so far with the
+     * worst of them at the root, so each candidate costs at most one O(log k) replacement.
+     */
+    private int[] selectTop(int[] candidates, int count, int k, SortKey key) {
+        int[] heap = new int[k];
+        int heapSize = 0;
+        if (k == 0) {
+            return heap;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            int row = candidates[i];
+            if (heapSize < k) {
+                // Sift up: the worse row moves toward the root
+                int child = heapSize++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (rank(key, row, heap[parent]) <= 0) {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    child = parent;
+                }
+                heap[child] = row;
+            } else if (rank(key, row, heap[0]) < 0) {
+                siftDown(heap, heapSize, row, key);
+            }
+        }
+        
+        // Repeatedly remove the worst, filling the result from the back
+        int[] result = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            siftDown(heap, i, heap[i], key);
+        }
+        return result;
+    }
+    
+    // Places row at the root and moves it down until both children rank before it
+    private void siftDown(int[] heap, int heapSize, int row, SortKey key) {
+        int parent = 0;
+        while (true) {
+            int child = parent * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && rank(key, heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (rank(key, heap[child], row) <= 0) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        if (heapSize > 0) {
+            heap[parent] = row;
+        }
+    }
+    
+    // Negative if row a ranks before row b: larger key first, then name order
+    private int rank(SortKey key, int a, int b) {
+        int c;
+        switch (key) {
+            case VALUE:
+                c = Double.compare(values[b], values[a]);
+                break;
+            case QUANTITY:
+                c = Double.compare(quantities[b], quantities[a]);
+                break;
+            case TOKEN_COUNT:
+                c = Integer.compare(tokenCounts[b], tokenCounts[a]);
+                break;
+            default:
+                c = 0;
+                break;
+        }
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+}
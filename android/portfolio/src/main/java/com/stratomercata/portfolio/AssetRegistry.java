@@ -0,0 +1,166 @@
+package com.stratomercata.portfolio;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-asset metadata: decimals, which oracle prices the asset and whether it is pegged to
+ * one dollar. Compiled from metadata rows into dense arrays indexed by asset id, so lookups
+ * after the name -> id step are array reads and never allocate.
+ *
+ * Immutable; a refreshed registry replaces the old one whole.
+ */
+public final class AssetRegistry {
+    // Decimals value for assets whose decimals come from their token rows
+    public static final int NO_DECIMALS = -1;
+    
+    // A metadata row from the Cirrus BlockApps-Mercata-AssetMetadata table
+    public static class Entry {
+        @SerializedName("name")
+        public String name;
+        
+        // Overrides the decimals reported on token rows when set
+        @SerializedName("decimals")
+        public Integer decimals;
+        
+        // Oracle whose price the asset takes, such as ETH for ETHST
+        @SerializedName("oracle")
+        public String oracle;
+        
+        // Priced at one dollar without an oracle
+        @SerializedName("stablecoin")
+        public Boolean stablecoin;
+        
+        public Entry() {
+        }
+        
+        Entry(String name, Integer decimals, String oracle, boolean stablecoin) {
+            this.name = name;
+            this.decimals = decimals;
+            this.oracle = oracle;
+            this.stablecoin = stablecoin;
+        }
+    }
+    
+    // Built in, used until metadata has been fetched once
+    public static final AssetRegistry DEFAULT = compile(defaultEntries());
+    
+    private final Map<String, Integer> ids;
+    private final String[] names;
+    private final byte[] decimals;
+    private final String[] oracles;
+    private final boolean[] stablecoins;
+    
+    private AssetRegistry(Map<String, Integer> ids, String[] names, byte[] decimals, String[] oracles,
+                          boolean[] stablecoins) {
+        this.ids = ids;
+        this.names = names;
+        this.decimals = decimals;
+        this.oracles = oracles;
+        this.stablecoins = stablecoins;
+    }
+    
+    /**
+     * Builds the lookup tables. Rows without a name are skipped and later rows for the same
+     * name replace earlier ones.
+     */
+    public static AssetRegistry compile(List<Entry> entries) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<Entry> unique = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry == null || entry.name == null) {
+                continue;
+            }
+            Integer id = ids.get(entry.name);
+            if (id != null) {
+                unique.set(id, entry);
+            } else {
+                ids.put(entry.name, unique.size());
+                unique.add(entry);
+            }
+        }
+        
+        int count = unique.size();
+        String[] names = new String[count];
+        byte[] decimals = new byte[count];
+        String[] oracles = new String[count];
+        boolean[] stablecoins = new boolean[count];
+        for (int id = 0; id < count; id++) {
+            Entry entry = unique.get(id);
+            names[id] = entry.name;
+            decimals[id] = entry.decimals != null && entry.decimals >= 0 && entry.decimals <= Byte.MAX_VALUE
+                    ? (byte) (int) entry.decimals : NO_DECIMALS;
+            oracles[id] = entry.oracle;
+            stablecoins[id] = entry.stablecoin != null && entry.stablecoin;
+        }
+        return new AssetRegistry(ids, names, decimals, oracles, stablecoins);
+    }
+    
+    /**
+     * The metadata the app shipped with, matching the values that used to be hard-coded
+     */
+    public static List<Entry> defaultEntries() {
+        return Arrays.asList(
+                new Entry("CATA", 18, null, false),
+                new Entry("ETHST", 18, "ETH", false),
+                new Entry("PAXGST", null, "Gold", false),
+                new Entry("Silver - Fractional 100 oz Bars", null, "Silver", false),
+                new Entry("WBTCST", null, "BTC", false),
+                // STRAT is not a stablecoin but has always been valued at one dollar
+                new Entry("STRAT", 4, null, true),
+                new Entry("USDCST", null, null, true),
+                new Entry("USDST", null, null, true),
+                new Entry("USDTST", null, null, true));
+    }
+    
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * Dense id of the asset, or -1 if the registry does not know it
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+    
+    public String getName(int id) {
+        return names[id];
+    }
+    
+    /**
+     * Registered decimals, or NO_DECIMALS
+     */
+    public int getDecimals(int id) {
+        return decimals[id];
+    }
+    
+    /**
+     * Name of the oracle that prices the asset, or null
+     */
+    public String getOracle(int id) {
+        return oracles[id];
+    }
+    
+    public boolean isStablecoin(int id) {
+        return stablecoins[id];
+    }
+    
+    /**
+     * Decimals to value the asset with: the registered value, else the one reported on its
+     * token rows, else 0
+     */
+    public int decimalsFor(String name, Integer reportedDecimals) {
+        int id = idOf(name);
+        if (id >= 0 && decimals[id] != NO_DECIMALS) {
+            return decimals[id];
+        }
+        return reportedDecimals != null ? reportedDecimals : 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.stratomercata.portfolio;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.math.BigInteger;
+
+/**
+ * One asset's holdings summed by Cirrus: the BlockApps-Mercata-Asset rows of an owner grouped
+ * by name, with the total quantity, the number of token rows and the largest decimals. Decoded
+ * by PortfolioJson, which parses quantity straight into base units. The sum can exceed a long.
+ */
+public class AssetTotal {
+    // PostgREST aggregate select: name is the only plain column, so rows are grouped by it
+    public static final String SELECT = "name,quantity:quantity.sum(),tokenCount:count(),decimals:decimals.max()";
+    
+    @SerializedName("name")
+    public String name;
+    
+    @SerializedName("quantity")
+    public BigInteger quantity = BigInteger.ZERO;
+    
+    @SerializedName("tokenCount")
+    public int tokenCount;
+    
+    @SerializedName("decimals")
+    public Integer decimals;
+}
@@ -0,0 +1,450 @@
+package com.stratomercata.portfolio;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every token row of a portfolio in columns instead of one Asset object per row. Asset names
+ * are dictionary-encoded to sorted name ids and rows are ordered by name id, so the rows of one
+ * asset are a contiguous range that AssetGroup can point at and no per-row name is stored.
+ * Quantities and decimals are primitive arrays, and token ids are packed into one byte arena
+ * (hex addresses at half their length). The rare quantity too large for a long goes in a
+ * BigInteger column that exists only when such a row does.
+ *
+ * Immutable once built; updates produce a new store.
+ */
+public final class HoldingsStore {
+    public static final HoldingsStore EMPTY = new Builder(0).build();
+    
+    // Decimals value for rows that did not report one, or reported one out of byte range
+    public static final int NO_DECIMALS = -1;
+    
+    // First byte of every id in the arena
+    private static final byte ID_NULL = 0;
+    private static final byte ID_UTF8 = 1;
+    private static final byte ID_HEX = 2;
+    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    // Name dictionary and the row range of each name
+    private final String[] names;
+    private final int[] nameStarts;
+    
+    // Columns, one entry per row. Names need no column: rows are ordered by name id.
+    private final int size;
+    private final long[] quantities;
+    private final BigInteger[] largeQuantities;
+    private final byte[] decimals;
+    private final int[] idOffsets;
+    private final byte[] idArena;
+    
+    // Open-addressed id -> row + 1 table, built on the first lookup
+    private volatile int[] idIndex;
+    
+    private HoldingsStore(String[] names, int[] nameStarts, int size, long[] quantities,
+                          BigInteger[] largeQuantities, byte[] decimals, int[] idOffsets, byte[] idArena) {
+        this.names = names;
+        this.nameStarts = nameStarts;
+        this.size = size;
+        this.quantities = quantities;
+        this.largeQuantities = largeQuantities;
+        this.decimals = decimals;
+        this.idOffsets = idOffsets;
+        this.idArena = idArena;
+    }
+    
+    /**
+     * Encodes decoded token rows. The list can be dropped afterwards.
+     */
+    public static HoldingsStore of(List<Asset> assets) {
+        Builder builder = new Builder(assets.size());
+        for (Asset asset : assets) {
+            builder.add(asset);
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Applies changed rows by id: rows with a zero quantity are removed, known ids are replaced
+     * in place and new ids are appended.
+     */
+    public HoldingsStore withUpdates(List<Asset> updatedAssets) {
+        // Later updates to the same id win
+        Map<Integer, Asset> replaced = new HashMap<>();
+        Map<String, Asset> added = new LinkedHashMap<>();
+        for (Asset asset : updatedAssets) {
+            int row = indexOf(asset.id);
+            if (row >= 0) {
+                replaced.put(row, asset);
+            } else if (!asset.hasQuantity()) {
+                added.remove(asset.id);
+            } else {
+                added.put(asset.id, asset);
+            }
+        }
+        
+        Builder builder = new Builder(size + added.size());
+        for (int row = 0; row < size; row++) {
+            Asset asset = replaced.get(row);
+            if (asset == null) {
+                builder.copy(this, row);
+            } else if (asset.hasQuantity()) {
+                builder.add(asset);
+            }
+        }
+        for (Asset asset : added.values()) {
+            builder.add(asset);
+        }
+        return builder.build();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int getNameCount() {
+        return names.length;
+    }
+    
+    public String getNameById(int nameId) {
+        return names[nameId];
+    }
+    
+    /**
+     * First row of the given name; its rows end where the next name's begin
+     */
+    public int getNameStart(int nameId) {
+        return nameStarts[nameId];
+    }
+    
+    public int getNameEnd(int nameId) {
+        return nameStarts[nameId + 1];
+    }
+    
+    public int getNameId(int row) {
+        // Names are never empty, so their starts strictly increase
+        int found = Arrays.binarySearch(nameStarts, 0, names.length, row);
+        return found >= 0 ? found : -found - 2;
+    }
+    
+    /**
+     * Grouping name of the row: the asset name, else its id, else "Unnamed Asset"
+     */
+    public String getName(int row) {
+        return names[getNameId(row)];
+    }
+    
+    /**
+     * Quantity of the row in base units; 0 for a row with a large quantity
+     */
+    public long getQuantity(int row) {
+        return quantities[row];
+    }
+    
+    /**
+     * Quantity of a row too large for a long, or null for every other row
+     */
+    public BigInteger getLargeQuantity(int row) {
+        return largeQuantities != null ? largeQuantities[row] : null;
+    }
+    
+    /**
+     * Reported decimals of the row, or NO_DECIMALS
+     */
+    public int getDecimals(int row) {
+        return decimals[row];
+    }
+    
+    /**
+     * Token id of the row, decoded from the arena on each call
+     */
+    public String getId(int row) {
+        int start = idOffsets[row];
+        int end = idOffsets[row + 1];
+        if (idArena[start] == ID_NULL) {
+            return null;
+        }
+        if (idArena[start] == ID_HEX) {
+            char[] chars = new char[(end - start - 1) * 2];
+            for (int i = start + 1, c = 0; i < end; i++) {
+                chars[c++] = HEX_DIGITS[(idArena[i] >> 4) & 0xf];
+                chars[c++] = HEX_DIGITS[idArena[i] & 0xf];
+            }
+            return new String(chars);
+        }
+        return new String(idArena, start + 1, end - start - 1, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Row holding the given token id, or -1
+     */
+    public int indexOf(String id) {
+        if (size == 0) {
+            return -1;
+        }
+        int[] index = idIndex;
+        if (index == null) {
+            index = buildIdIndex();
+            idIndex = index;
+        }
+        
+        byte[] encoded = encodeId(id);
+        int mask = index.length - 1;
+        for (int slot = hash(encoded, 0, encoded.length) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if (idEquals(row, encoded)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    private int[] buildIdIndex() {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        int[] index = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            int start = idOffsets[row];
+            int slot = hash(idArena, start, idOffsets[row + 1] - start) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = row + 1;
+        }
+        return index;
+    }
+    
+    private boolean idEquals(int row, byte[] encoded) {
+        int start = idOffsets[row];
+        if (idOffsets[row + 1] - start != encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (idArena[start + i] != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int hash(byte[] bytes, int start, int length) {
+        int h = 1;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // Sequential ids hash to neighbouring values; mix them apart before linear probing
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Lowercase hex of even length is stored as raw bytes, anything else as UTF-8
+     */
+    private static byte[] encodeId(String id) {
+        if (id == null) {
+            return new byte[] {ID_NULL};
+        }
+        if (isPackableHex(id)) {
+            byte[] encoded = new byte[1 + id.length() / 2];
+            writeHexId(id, encoded, 0);
+            return encoded;
+        }
+        byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = new byte[1 + utf8.length];
+        encoded[0] = ID_UTF8;
+        System.arraycopy(utf8, 0, encoded, 1, utf8.length);
+        return encoded;
+    }
+    
+    // Writes 1 + id.length() / 2 bytes
+    private static void writeHexId(String id, byte[] out, int offset) {
+        out[offset++] = ID_HEX;
+        for (int i = 0; i < id.length(); i += 2) {
+            out[offset++] = (byte) ((hexValue(id.charAt(i)) << 4) | hexValue(id.charAt(i + 1)));
+        }
+    }
+    
+    // Only called on digits already checked by isPackableHex
+    private static int hexValue(char c) {
+        return c <= '9' ? c - '0' : c - 'a' + 10;
+    }
+    
+    private static boolean isPackableHex(String id) {
+        if (id.isEmpty() || id.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Appends rows in arrival order, then sorts them by name id into a store
+     */
+    static final class Builder {
+        private final Map<String, Integer> nameIdsByName = new HashMap<>();
+        private String[] names = new String[16];
+        private int nameCount;
+        private String lastName;
+        private int lastNameId;
+        
+        private int size;
+        private int[] nameIds;
+        private long[] quantities;
+        private BigInteger[] largeQuantities;
+        private byte[] decimals;
+        private int[] idOffsets;
+        private byte[] idArena;
+        private int arenaSize;
+        
+        Builder(int expectedRows) {
+            int capacity = Math.max(expectedRows, 16);
+            nameIds = new int[capacity];
+            quantities = new long[capacity];
+            decimals = new byte[capacity];
+            idOffsets = new int[capacity + 1];
+            idArena = new byte[capacity * 21];
+        }
+        
+        void add(Asset asset) {
+            String name = asset.name != null ? asset.name : (asset.id != null ? asset.id : "Unnamed Asset");
+            Integer assetDecimals = asset.decimals;
+            int rowDecimals = assetDecimals != null && assetDecimals >= 0 && assetDecimals <= Byte.MAX_VALUE
+                    ? assetDecimals : NO_DECIMALS;
+            
+            // Hex ids, nearly all of them, are packed straight into the arena
+            String id = asset.id;
+            if (id != null && isPackableHex(id)) {
+                int offset = addRow(nameId(name), asset.quantity, asset.largeQuantity, rowDecimals, 1 + id.length() / 2);
+                writeHexId(id, idArena, offset);
+            } else {
+                byte[] encoded = encodeId(id);
+                int offset = addRow(nameId(name), asset.quantity, asset.largeQuantity, rowDecimals, encoded.length);
+                System.arraycopy(encoded, 0, idArena, offset, encoded.length);
+            }
+        }
+        
+        void copy(HoldingsStore store, int row) {
+            int start = store.idOffsets[row];
+            int length = store.idOffsets[row + 1] - start;
+            int offset = addRow(nameId(store.getName(row)), store.quantities[row], store.getLargeQuantity(row),
+                    store.decimals[row], length);
+            System.arraycopy(store.idArena, start, idArena, offset, length);
+        }
+        
+        private int nameId(String name) {
+            // Rows usually arrive in runs of one name, and decoded names are shared instances
+            if (name == lastName) {
+                return lastNameId;
+            }
+            Integer id = nameIdsByName.get(name);
+            if (id == null) {
+                id = nameCount;
+                if (nameCount == names.length) {
+                    names = Arrays.copyOf(names, nameCount * 2);
+                }
+                names[nameCount++] = name;
+                nameIdsByName.put(name, id);
+            }
+            lastName = name;
+            lastNameId = id;
+            return id;
+        }
+        
+        /**
+         * Appends a row and returns the arena offset where its idLength id bytes go
+         */
+        private int addRow(int nameId, long quantity, BigInteger largeQuantity, int rowDecimals, int idLength) {
+            if (size == nameIds.length) {
+                int capacity = size * 2;
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                if (largeQuantities != null) {
+                    largeQuantities = Arrays.copyOf(largeQuantities, capacity);
+                }
+                decimals = Arrays.copyOf(decimals, capacity);
+                idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+            }
+            if (arenaSize + idLength > idArena.length) {
+                idArena = Arrays.copyOf(idArena, Math.max(idArena.length * 2, arenaSize + idLength));
+            }
+            
+            nameIds[size] = nameId;
+            quantities[size] = quantity;
+            if (largeQuantity != null) {
+                if (largeQuantities == null) {
+                    largeQuantities = new BigInteger[nameIds.length];
+                }
+                largeQuantities[size] = largeQuantity;
+            }
+            decimals[size] = (byte) rowDecimals;
+            int offset = arenaSize;
+            arenaSize += idLength;
+            size++;
+            idOffsets[size] = arenaSize;
+            return offset;
+        }
+        
+        HoldingsStore build() {
+            // Name dictionary in sorted order, so groups come out alphabetically as well
+            String[] sortedNames = Arrays.copyOf(names, nameCount);
+            Arrays.sort(sortedNames);
+            int[] remap = new int[nameCount];
+            for (int i = 0; i < nameCount; i++) {
+                remap[nameIdsByName.get(sortedNames[i])] = i;
+            }
+            
+            // Counting sort by name, stable so each name keeps its arrival order
+            int[] nameStarts = new int[nameCount + 1];
+            for (int row = 0; row < size; row++) {
+                nameStarts[remap[nameIds[row]] + 1]++;
+            }
+            for (int i = 0; i < nameCount; i++) {
+                nameStarts[i + 1] += nameStarts[i];
+            }
+            int[] next = Arrays.copyOf(nameStarts, nameCount);
+            
+            long[] sortedQuantities = new long[size];
+            BigInteger[] sortedLargeQuantities = largeQuantities != null ? new BigInteger[size] : null;
+            byte[] sortedDecimals = new byte[size];
+            int[] target = new int[size];
+            for (int row = 0; row < size; row++) {
+                int nameId = remap[nameIds[row]];
+                int to = next[nameId]++;
+                target[to] = row;
+                sortedQuantities[to] = quantities[row];
+                if (sortedLargeQuantities != null) {
+                    sortedLargeQuantities[to] = largeQuantities[row];
+                }
+                sortedDecimals[to] = decimals[row];
+            }
+            
+            int[] sortedOffsets = new int[size + 1];
+            byte[] sortedArena = new byte[arenaSize];
+            int position = 0;
+            for (int to = 0; to < size; to++) {
+                int row = target[to];
+                int length = idOffsets[row + 1] - idOffsets[row];
+                System.arraycopy(idArena, idOffsets[row], sortedArena, position, length);
+                sortedOffsets[to] = position;
+                position += length;
+            }
+            sortedOffsets[size] = position;
+            
+            return new HoldingsStore(sortedNames, nameStarts, size, sortedQuantities, sortedLargeQuantities,
+                    sortedDecimals, sortedOffsets, sortedArena);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.stratomercata.portfolio;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A price row from the Cirrus BlockApps-Mercata-OracleService table
+ */
+public class Oracle {
+    @SerializedName("name")
+    public String name;
+    
+    @SerializedName("consensusPrice")
+    public String consensusPrice;
+}
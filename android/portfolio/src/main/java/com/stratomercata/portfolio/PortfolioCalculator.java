@@ -0,0 +1,407 @@
+package com.stratomercata.portfolio;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Portfolio valuation: groups token rows by asset, maps oracle prices onto assets and totals
+ * fungible value, CATA holdings and non-fungible items. Plain Java so it can be benchmarked
+ * and reused off-device.
+ *
+ * Results are published as an immutable PortfolioSnapshot through an atomic reference: one
+ * thread at a time may process data, while any thread can read getSnapshot() without locking.
+ * Every change, prices included, publishes prices and the totals valued at them together.
+ */
+public class PortfolioCalculator {
+    private static final Logger LOGGER = Logger.getLogger("PortfolioCalculator");
+    
+    // Latest published results; replaced whole, never modified. Each update reads it, derives the
+    // next snapshot and sets it without a compare-and-set, so only the single thread processing
+    // data may write it.
+    private final AtomicReference<PortfolioSnapshot> snapshot = new AtomicReference<>(PortfolioSnapshot.EMPTY);
+    
+    // Decimals and price aliases; replaced whole when metadata is refreshed
+    private volatile AssetRegistry registry = AssetRegistry.DEFAULT;
+    
+    /**
+     * Groups and values the given token rows in one step
+     */
+    public void processAssetData(List<Asset> assets) {
+        processAssetData(HoldingsStore.of(assets));
+    }
+    
+    public void processAssetData(HoldingsStore holdings) {
+        summarize(groupAssets(holdings));
+    }
+    
+    public void processAssetTotals(List<AssetTotal> totals) {
+        summarize(groupTotals(totals));
+    }
+    
+    /**
+     * Merges oracle prices into the latest price table and maps them onto the tokens they price
+     */
+    public void processOracleData(List<Oracle> oracles) {
+        // Build a new price table rather than changing the one readers may hold
+        PortfolioSnapshot current = snapshot.get();
+        Map<String, String> latestPrices = new HashMap<>(current.latestPrices);
+        
+        // Process data to keep only the latest price for each unique asset name
+        for (Oracle oracle : oracles) {
+            if (oracle.name != null && oracle.consensusPrice != null) {
+                // Later entries will overwrite earlier ones
+                latestPrices.put(oracle.name, oracle.consensusPrice);
+            }
+        }
+        
+        applyPriceAliases(latestPrices, registry);
+        revalue(current, latestPrices);
+    }
+    
+    /**
+     * Switches to refreshed asset metadata and re-maps the current prices with it. Decimals
+     * apply from the next groupAssets.
+     */
+    public void setRegistry(AssetRegistry registry) {
+        this.registry = registry;
+        
+        PortfolioSnapshot current = snapshot.get();
+        Map<String, String> latestPrices = new HashMap<>(current.latestPrices);
+        applyPriceAliases(latestPrices, registry);
+        revalue(current, latestPrices);
+    }
+    
+    // Values copies of the published groups at the new prices; the published ones stay as they are
+    private void revalue(PortfolioSnapshot current, Map<String, String> latestPrices) {
+        List<AssetGroup> groups = new ArrayList<>(current.sortedAssets.size());
+        for (AssetGroup group : current.sortedAssets) {
+            groups.add(copyHoldings(group));
+        }
+        snapshot.set(value(groups, Collections.unmodifiableMap(latestPrices)));
+    }
+    
+    // The group's holdings without the quantity and value calculated from them
+    private static AssetGroup copyHoldings(AssetGroup group) {
+        AssetGroup copy = new AssetGroup();
+        copy.name = group.name;
+        copy.totalQuantity = group.totalQuantity;
+        copy.tokenCount = group.tokenCount;
+        copy.decimals = group.decimals;
+        copy.pending = group.pending;
+        copy.holdings = group.holdings;
+        copy.firstRow = group.firstRow;
+        copy.endRow = group.endRow;
+        return copy;
+    }
+    
+    public AssetRegistry getRegistry() {
+        return registry;
+    }
+    
+    // Prices assets from the oracle the registry names for them, and stablecoins at one dollar
+    private static void applyPriceAliases(Map<String, String> latestPrices, AssetRegistry registry) {
+        for (int id = 0; id < registry.size(); id++) {
+            if (registry.isStablecoin(id)) {
+                latestPrices.put(registry.getName(id), "1");
+            } else if (registry.getOracle(id) != null) {
+                String price = latestPrices.get(registry.getOracle(id));
+                if (price != null) {
+                    latestPrices.put(registry.getName(id), price);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Groups token rows by asset name. The groups can be adjusted
+     * (for example with unconfirmed trades) before they are passed to summarize.
+     */
+    public Map<String, AssetGroup> groupAssets(List<Asset> assets) {
+        return groupAssets(HoldingsStore.of(assets));
+    }
+    
+    /**
+     * Groups stored token rows by asset name. Each name's rows are already contiguous, so a
+     * group only records its row range.
+     */
+    public Map<String, AssetGroup> groupAssets(HoldingsStore holdings) {
+        Map<String, AssetGroup> assetGroups = new HashMap<>();
+        AssetRegistry registry = this.registry;
+        
+        for (int nameId = 0; nameId < holdings.getNameCount(); nameId++) {
+            String name = holdings.getNameById(nameId);
+            int firstRow = holdings.getNameStart(nameId);
+            int endRow = holdings.getNameEnd(nameId);
+            
+            // Get the correct decimals value (using hardcoded values for certain assets),
+            // taken from the group's first row
+            int rowDecimals = holdings.getDecimals(firstRow);
+            int decimals = registry.decimalsFor(name, rowDecimals != HoldingsStore.NO_DECIMALS ? rowDecimals : null);
+            
+            // Summed in a long until a row or the sum outgrows it, then in a BigInteger
+            long totalQuantity = 0;
+            BigInteger largeTotal = null;
+            for (int row = firstRow; row < endRow; row++) {
+                BigInteger large = holdings.getLargeQuantity(row);
+                long quantity = holdings.getQuantity(row);
+                if (largeTotal == null && large == null) {
+                    long sum = totalQuantity + quantity;
+                    if (((totalQuantity ^ sum) & (quantity ^ sum)) >= 0) {
+                        totalQuantity = sum;
+                        continue;
+                    }
+                }
+                if (largeTotal == null) {
+                    largeTotal = BigInteger.valueOf(totalQuantity);
+                }
+                largeTotal = largeTotal.add(large != null ? large : BigInteger.valueOf(quantity));
+            }
+            
+            AssetGroup group = new AssetGroup();
+            group.name = name;
+            if (largeTotal != null) {
+                setQuantity(group, largeTotal, decimals);
+            } else {
+                group.totalQuantity = totalQuantity;
+                group.decimals = decimals;
+            }
+            group.tokenCount = endRow - firstRow;
+            group.holdings = holdings;
+            group.firstRow = firstRow;
+            group.endRow = endRow;
+            
+            assetGroups.put(name, group);
+        }
+        
+        return assetGroups;
+    }
+    
+    /**
+     * Groups asset totals already summed by Cirrus, one per name. No token rows stand behind
+     * these groups, so their holdings are null.
+     */
+    public Map<String, AssetGroup> groupTotals(List<AssetTotal> totals) {
+        Map<String, AssetGroup> assetGroups = new HashMap<>();
+        AssetRegistry registry = this.registry;
+        
+        for (AssetTotal total : totals) {
+            // Cirrus groups every unnamed row together, where grouping rows here keys them by id
+            String name = total.name != null ? total.name : "Unnamed Asset";
+            
+            AssetGroup group = new AssetGroup();
+            group.name = name;
+            setQuantity(group, total.quantity, registry.decimalsFor(name, total.decimals));
+            group.tokenCount = total.tokenCount;
+            
+            assetGroups.put(name, group);
+        }
+        
+        return assetGroups;
+    }
+    
+    /**
+     * Sets a quantity that may not fit a long. One too large loses its lowest digits, and as many
+     * decimals, so the whole-token amount stays exact to 18 significant digits.
+     */
+    private static void setQuantity(AssetGroup group, BigInteger quantity, int decimals) {
+        while (quantity.bitLength() > 63 && decimals > 0) {
+            quantity = quantity.divide(BigInteger.TEN);
+            decimals--;
+        }
+        group.totalQuantity = quantity.bitLength() > 63 ? Long.MAX_VALUE : quantity.longValue();
+        group.decimals = decimals;
+    }
+    
+    /**
+     * Sorts the groups by name and values each one against the latest oracle prices
+     */
+    public void summarize(Map<String, AssetGroup> assetGroups) {
+        snapshot.set(value(new ArrayList<>(assetGroups.values()), snapshot.get().latestPrices));
+    }
+    
+    // Values the groups, which must not be published yet, and builds the snapshot that publishes them
+    private static PortfolioSnapshot value(List<AssetGroup> sortedAssets, Map<String, String> latestPrices) {
+        // Totals are accumulated locally and published together
+        int fungibleTokensCount = 0;
+        double fungibleTokensValue = 0;
+        int nonFungibleTokensCount = 0;
+        int cataTokensCount = 0;
+        double totalCataTokens = 0;
+        
+        // Sort alphabetically
+        Collections.sort(sortedAssets, new Comparator<AssetGroup>() {
+            @Override
+            public int compare(AssetGroup a1, AssetGroup a2) {
+                return a1.name.compareTo(a2.name);
+            }
+        });
+        
+        // Process each asset group
+        for (AssetGroup asset : sortedAssets) {
+            String price = latestPrices.get(asset.name);
+            
+            if ("CATA".equals(asset.name)) {
+                // Count CATA tokens separately
+                cataTokensCount += asset.tokenCount;
+                
+                // Calculate total CATA tokens (quantity)
+                try {
+                    // Calculate actual quantity as a number with full precision
+                    if (asset.decimals != 0) {
+                        // Use string operations for high precision
+                        String quantityStr = String.valueOf(asset.totalQuantity);
+                        int decimals = asset.decimals;
+                        
+                        if (quantityStr.length() <= decimals) {
+                            // Need to add leading zeros
+                            int missingZeros = decimals - quantityStr.length();
+                            StringBuilder sb = new StringBuilder("0.");
+                            for (int i = 0; i < missingZeros; i++) {
+                                sb.append('0');
+                            }
+                            sb.append(quantityStr);
+                            asset.calculatedQuantity = Double.parseDouble(sb.toString());
+                        } else {
+                            // Insert decimal point at the right position from the end
+                            int insertPosition = quantityStr.length() - decimals;
+                            String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
+                            asset.calculatedQuantity = Double.parseDouble(result);
+                        }
+                    } else {
+                        asset.calculatedQuantity = asset.totalQuantity;
+                    }
+                    
+                    totalCataTokens += asset.calculatedQuantity;
+                } catch (Exception e) {
+                    LOGGER.warning("Error calculating CATA quantity: " + e.getMessage());
+                    asset.calculatedQuantity = 0;
+                }
+            } else if (price != null) {
+                // This is a fungible token with a price oracle
+                fungibleTokensCount += asset.tokenCount;
+                
+                // Calculate value
+                try {
+                    // Calculate actual quantity as a number with full precision
+                    double actualQuantity;
+                    if (asset.decimals != 0) {
+                        // Use string operations for high precision
+                        String quantityStr = String.valueOf(asset.totalQuantity);
+                        int decimals = asset.decimals;
+                        
+                        if (quantityStr.length() <= decimals) {
+                            // Need to add leading zeros
+                            int missingZeros = decimals - quantityStr.length();
+                            StringBuilder sb = new StringBuilder("0.");
+                            for (int i = 0; i < missingZeros; i++) {
+                                sb.append('0');
+                            }
+                            sb.append(quantityStr);
+                            actualQuantity = Double.parseDouble(sb.toString());
+                        } else {
+                            // Insert decimal point at the right position from the end
+                            int insertPosition = quantityStr.length() - decimals;
+                            String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
+                            actualQuantity = Double.parseDouble(result);
+                        }
+                    } else {
+                        actualQuantity = asset.totalQuantity;
+                    }
+                    
+                    // Parse price with full precision
+                    double priceValue = Double.parseDouble(price);
+                    
+                    // Calculate total value with maximum available precision
+                    double totalValue = actualQuantity * priceValue;
+                    
+                    // Add to the running total
+                    fungibleTokensValue += totalValue;
+                    
+                    // Store calculated quantity and value for display
+                    asset.calculatedQuantity = actualQuantity;
+                    asset.calculatedValue = totalValue;
+                } catch (Exception e) {
+                    LOGGER.warning("Error calculating total value: " + e.getMessage());
+                }
+            } else {
+                // This is a non-fungible token without a price oracle
+                nonFungibleTokensCount += asset.tokenCount;
+            }
+        }
+        
+        return new PortfolioSnapshot(Collections.unmodifiableList(sortedAssets), latestPrices,
+                fungibleTokensCount, fungibleTokensValue, nonFungibleTokensCount, cataTokensCount, totalCataTokens);
+    }
+    
+    public static String calculateActualValue(long quantity, int decimals) {
+        // For large decimal values (like 18), we need to handle the calculation carefully
+        if (decimals > 15) {
+            // Convert to string and manipulate
+            String quantityStr = String.valueOf(quantity);
+            
+            if (quantityStr.length() <= decimals) {
+                // Need to add leading zeros
+                int missingZeros = decimals - quantityStr.length();
+                StringBuilder sb = new StringBuilder("0.");
+                for (int i = 0; i < missingZeros; i++) {
+                    sb.append('0');
+                }
+                sb.append(quantityStr);
+                return String.valueOf(Double.parseDouble(sb.toString()));
+            } else {
+                // Insert decimal point at the right position from the end
+                int insertPosition = quantityStr.length() - decimals;
+                String result = quantityStr.substring(0, insertPosition) + "." + quantityStr.substring(insertPosition);
+                return String.valueOf(Double.parseDouble(result));
+            }
+        } else {
+            // For smaller decimal values, direct division works fine
+            double value = quantity / Math.pow(10, decimals);
+            return String.valueOf(value);
+        }
+    }
+    
+    /**
+     * Latest results as one consistent snapshot. The getters below each read the latest snapshot
+     * separately, so use this when several values must agree.
+     */
+    public PortfolioSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+    
+    // Getters for the processed data
+    public List<AssetGroup> getSortedAssets() {
+        return snapshot.get().sortedAssets;
+    }
+    
+    public Map<String, String> getLatestPrices() {
+        return snapshot.get().latestPrices;
+    }
+    
+    public int getFungibleTokensCount() {
+        return snapshot.get().fungibleTokensCount;
+    }
+    
+    public double getFungibleTokensValue() {
+        return snapshot.get().fungibleTokensValue;
+    }
+    
+    public int getNonFungibleTokensCount() {
+        return snapshot.get().nonFungibleTokensCount;
+    }
+    
+    public int getCataTokensCount() {
+        return snapshot.get().cataTokensCount;
+    }
+    
+    public double getTotalCataTokens() {
+        return snapshot.get().totalCataTokens;
+    }
+}
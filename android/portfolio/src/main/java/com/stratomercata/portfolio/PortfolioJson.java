@@ -0,0 +1,252 @@
+package com.stratomercata.portfolio;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hand-written streaming adapters for the Cirrus rows and asset totals. They read fields straight off the
+ * JsonReader without reflection, decode quantities into longs (summed totals, and the rare row
+ * too large for a long, into BigIntegers) as they are read, share one
+ * String per distinct asset name, and skip unknown fields without building them.
+ */
+public class PortfolioJson {
+    // Distinct names seen so far; beyond this many, names are no longer shared
+    private static final int MAX_INTERNED_NAMES = 4096;
+    
+    private static final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+    
+    private PortfolioJson() {
+    }
+    
+    /**
+     * Gson with the Asset and Oracle adapters registered, for converters and stream parsing
+     */
+    public static Gson newGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Asset.class, new AssetAdapter())
+                .registerTypeAdapter(AssetTotal.class, new AssetTotalAdapter())
+                .registerTypeAdapter(Oracle.class, new OracleAdapter())
+                .create();
+    }
+    
+    /**
+     * Returns the shared instance of the given name, so thousands of rows of the same asset
+     * hold one String
+     */
+    static String intern(String name) {
+        String shared = names.get(name);
+        if (shared != null) {
+            return shared;
+        }
+        if (names.size() >= MAX_INTERNED_NAMES) {
+            return name;
+        }
+        shared = names.putIfAbsent(name, name);
+        return shared != null ? shared : name;
+    }
+    
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+    
+    // Cirrus sends quantities as strings of base units. Nearly all fit a long; one that doesn't
+    // is kept exact as a BigInteger rather than failing the whole response.
+    private static void readQuantity(JsonReader in, Asset asset) throws IOException {
+        asset.quantity = 0;
+        asset.largeQuantity = null;
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        String quantity = in.nextString();
+        try {
+            asset.quantity = Long.parseLong(quantity);
+        } catch (NumberFormatException e) {
+            BigInteger large = parseQuantity(in, quantity);
+            if (large.bitLength() > 63) {
+                asset.largeQuantity = large;
+            } else {
+                asset.quantity = large.longValue();
+            }
+        }
+    }
+    
+    private static BigInteger parseQuantity(JsonReader in, String quantity) {
+        try {
+            return new BigDecimal(quantity).toBigIntegerExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new JsonSyntaxException("Invalid quantity at " + in.getPath(), e);
+        }
+    }
+    
+    // Sums come as numbers and outgrow a long at about 9.2 whole 18-decimal tokens
+    private static BigInteger nextTotalQuantity(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return BigInteger.ZERO;
+        }
+        return parseQuantity(in, in.nextString());
+    }
+    
+    private static Integer nextIntegerOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+    
+    public static class AssetAdapter extends TypeAdapter<Asset> {
+        @Override
+        public Asset read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            
+            Asset asset = new Asset();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        asset.id = nextStringOrNull(in);
+                        break;
+                    case "name":
+                        String name = nextStringOrNull(in);
+                        asset.name = name != null ? intern(name) : null;
+                        break;
+                    case "quantity":
+                        readQuantity(in, asset);
+                        break;
+                    case "decimals":
+                        asset.decimals = nextIntegerOrNull(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return asset;
+        }
+        
+        @Override
+        public void write(JsonWriter out, Asset asset) throws IOException {
+            if (asset == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(asset.id);
+            out.name("name").value(asset.name);
+            out.name("quantity").value(asset.largeQuantity != null ? asset.largeQuantity.toString() : Long.toString(asset.quantity));
+            out.name("decimals").value(asset.decimals);
+            out.endObject();
+        }
+    }
+    
+    public static class AssetTotalAdapter extends TypeAdapter<AssetTotal> {
+        @Override
+        public AssetTotal read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            
+            AssetTotal total = new AssetTotal();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        String name = nextStringOrNull(in);
+                        total.name = name != null ? intern(name) : null;
+                        break;
+                    case "quantity":
+                        total.quantity = nextTotalQuantity(in);
+                        break;
+                    case "tokenCount":
+                        Integer tokenCount = nextIntegerOrNull(in);
+                        total.tokenCount = tokenCount != null ? tokenCount : 0;
+                        break;
+                    case "decimals":
+                        total.decimals = nextIntegerOrNull(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return total;
+        }
+        
+        @Override
+        public void write(JsonWriter out, AssetTotal total) throws IOException {
+            if (total == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("name").value(total.name);
+            out.name("quantity").value(total.quantity);
+            out.name("tokenCount").value(total.tokenCount);
+            out.name("decimals").value(total.decimals);
+            out.endObject();
+        }
+    }
+    
+    public static class OracleAdapter extends TypeAdapter<Oracle> {
+        @Override
+        public Oracle read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            
+            Oracle oracle = new Oracle();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        String name = nextStringOrNull(in);
+                        oracle.name = name != null ? intern(name) : null;
+                        break;
+                    case "consensusPrice":
+                        oracle.consensusPrice = nextStringOrNull(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return oracle;
+        }
+        
+        @Override
+        public void write(JsonWriter out, Oracle oracle) throws IOException {
+            if (oracle == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("name").value(oracle.name);
+            out.name("consensusPrice").value(oracle.consensusPrice);
+            out.endObject();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.stratomercata.portfolio;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One consistent, immutable view of a valued portfolio. PortfolioCalculator publishes a new
+ * snapshot on every change instead of mutating the old one, so any thread can read a snapshot
+ * without locking. The asset groups inside must not be modified once published.
+ */
+public final class PortfolioSnapshot {
+    public static final PortfolioSnapshot EMPTY = new PortfolioSnapshot(
+            Collections.<AssetGroup>emptyList(), Collections.<String, String>emptyMap(), 0, 0, 0, 0, 0);
+    
+    // Unmodifiable
+    public final List<AssetGroup> sortedAssets;
+    public final Map<String, String> latestPrices;
+    
+    public final int fungibleTokensCount;
+    public final double fungibleTokensValue;
+    public final int nonFungibleTokensCount;
+    public final int cataTokensCount;
+    public final double totalCataTokens;
+    
+    PortfolioSnapshot(List<AssetGroup> sortedAssets, Map<String, String> latestPrices,
+                      int fungibleTokensCount, double fungibleTokensValue, int nonFungibleTokensCount,
+                      int cataTokensCount, double totalCataTokens) {
+        this.sortedAssets = sortedAssets;
+        this.latestPrices = latestPrices;
+        this.fungibleTokensCount = fungibleTokensCount;
+        this.fungibleTokensValue = fungibleTokensValue;
+        this.nonFungibleTokensCount = nonFungibleTokensCount;
+        this.cataTokensCount = cataTokensCount;
+        this.totalCataTokens = totalCataTokens;
+    }
+}
@@ -0,0 +1,128 @@
+package com.stratomercata.portfolio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class AssetIndexTest {
+    private PortfolioSnapshot snapshot;
+    private AssetIndex index;
+    
+    private static Asset asset(String id, String name, long quantity, Integer decimals) {
+        Asset asset = new Asset();
+        asset.id = id;
+        asset.name = name;
+        asset.quantity = quantity;
+        asset.decimals = decimals;
+        return asset;
+    }
+    
+    @Before
+    public void setUp() {
+        Oracle eth = new Oracle();
+        eth.name = "ETH";
+        eth.consensusPrice = "2000";
+        
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processOracleData(Collections.singletonList(eth));
+        calculator.processAssetData(Arrays.asList(
+                asset("1", "ETHST", 1500000000000000000L, 18),
+                asset("2", "USDST", 250, 2),
+                asset("3", "CATA", 5000000000000000000L, 18),
+                asset("4", "Silver - Fractional 100 oz Bars", 1, 0),
+                asset("5", "Silver - Fractional 100 oz Bars", 1, 0),
+                asset("6", "Silver - Fractional 100 oz Bars", 1, 0),
+                asset("7", "Gold Bar", 2, 0)));
+        snapshot = calculator.getSnapshot();
+        index = AssetIndex.build(snapshot);
+    }
+    
+    private List<String> names(AssetIndex.Result result) {
+        List<String> names = new ArrayList<>();
+        for (int row : result.rows) {
+            names.add(snapshot.sortedAssets.get(row).name);
+        }
+        return names;
+    }
+    
+    @Test
+    public void defaultQueryListsEverythingInNameOrder() {
+        AssetIndex.Result result = index.query(new AssetIndex.Query());
+        
+        assertEquals(5, result.matchCount);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, result.rows);
+    }
+    
+    @Test
+    public void textMatchesTheStartOfAnyWordIgnoringCase() {
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.text = " OZ ";
+        assertEquals(Collections.singletonList("Silver - Fractional 100 oz Bars"), names(index.query(query)));
+        
+        query.text = "bar";
+        assertEquals(Arrays.asList("Gold Bar", "Silver - Fractional 100 oz Bars"), names(index.query(query)));
+        
+        // Inside a word is not a word start
+        query.text = "ilver";
+        assertEquals(0, index.query(query).matchCount);
+    }
+    
+    @Test
+    public void categoryAndMinimumValueFilter() {
+        assertEquals(AssetIndex.Category.CATA, index.getCategory(index.query(textQuery("cata")).rows[0]));
+        
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.category = AssetIndex.Category.FUNGIBLE;
+        assertEquals(Arrays.asList("ETHST", "USDST"), names(index.query(query)));
+        
+        query.minValue = 100;
+        assertEquals(Collections.singletonList("ETHST"), names(index.query(query)));
+        
+        query.category = AssetIndex.Category.NON_FUNGIBLE;
+        query.minValue = 0;
+        assertEquals(Arrays.asList("Gold Bar", "Silver - Fractional 100 oz Bars"), names(index.query(query)));
+    }
+    
+    @Test
+    public void topKRanksLargestFirstAndCountsEveryMatch() {
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.sortKey = AssetIndex.SortKey.VALUE;
+        query.limit = 2;
+        AssetIndex.Result result = index.query(query);
+        assertEquals(5, result.matchCount);
+        assertEquals(Arrays.asList("ETHST", "USDST"), names(result));
+        
+        query.sortKey = AssetIndex.SortKey.TOKEN_COUNT;
+        query.limit = 1;
+        assertEquals(Collections.singletonList("Silver - Fractional 100 oz Bars"), names(index.query(query)));
+        
+        query.sortKey = AssetIndex.SortKey.QUANTITY;
+        query.limit = Integer.MAX_VALUE;
+        assertEquals(Arrays.asList("CATA", "Silver - Fractional 100 oz Bars", "USDST", "Gold Bar", "ETHST"),
+                names(index.query(query)));
+    }
+    
+    @Test
+    public void zeroLimitReturnsNoRows() {
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.sortKey = AssetIndex.SortKey.VALUE;
+        query.limit = 0;
+        AssetIndex.Result result = index.query(query);
+        
+        assertEquals(0, result.rows.length);
+        assertEquals(5, result.matchCount);
+    }
+    
+    private static AssetIndex.Query textQuery(String text) {
+        AssetIndex.Query query = new AssetIndex.Query();
+        query.text = text;
+        return query;
+    }
+}
@@ -0,0 +1,58 @@
+package com.stratomercata.portfolio;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class AssetTotalTest {
+    // 10 whole tokens at 18 decimals: 1e19 base units, above 2^63 - 1
+    private static final String TEN_TOKENS = "10000000000000000000";
+    
+    @Test
+    public void decodesSumAboveLongRange() {
+        Gson gson = PortfolioJson.newGson();
+        AssetTotal[] totals = gson.fromJson("[{\"name\":\"Test Token\",\"quantity\":" + TEN_TOKENS
+                + ",\"tokenCount\":3,\"decimals\":18}]", AssetTotal[].class);
+        
+        assertEquals(1, totals.length);
+        assertEquals(new BigInteger(TEN_TOKENS), totals[0].quantity);
+        assertEquals(3, totals[0].tokenCount);
+    }
+    
+    @Test
+    public void groupsSumAboveLongRangeAtFullValue() {
+        AssetTotal total = new AssetTotal();
+        total.name = "Test Token";
+        total.quantity = new BigInteger(TEN_TOKENS).add(BigInteger.valueOf(123));
+        total.tokenCount = 3;
+        total.decimals = 18;
+        
+        List<AssetTotal> totals = Arrays.asList(total);
+        Map<String, AssetGroup> groups = new PortfolioCalculator().groupTotals(totals);
+        AssetGroup group = groups.get("Test Token");
+        
+        // Only digits below the 17th decimal are dropped
+        assertEquals(17, group.decimals);
+        assertEquals(0, BigDecimal.valueOf(group.totalQuantity, group.decimals).compareTo(new BigDecimal("10.00000000000000012")));
+    }
+    
+    @Test
+    public void keepsSumsWithinLongRangeExact() {
+        AssetTotal total = new AssetTotal();
+        total.name = "Test Token";
+        total.quantity = BigInteger.valueOf(Long.MAX_VALUE);
+        total.decimals = 18;
+        
+        AssetGroup group = new PortfolioCalculator().groupTotals(Arrays.asList(total)).get("Test Token");
+        assertEquals(18, group.decimals);
+        assertEquals(Long.MAX_VALUE, group.totalQuantity);
+    }
+}
@@ -0,0 +1,145 @@
+package com.stratomercata.portfolio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class HoldingsStoreTest {
+    private static Asset asset(String id, String name, long quantity, Integer decimals) {
+        Asset asset = new Asset();
+        asset.id = id;
+        asset.name = name;
+        asset.quantity = quantity;
+        asset.decimals = decimals;
+        return asset;
+    }
+    
+    @Test
+    public void rowsOfOneNameAreContiguousInNameOrder() {
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(
+                asset("a1", "USDST", 100, 2),
+                asset("b1", "ETHST", 5, 18),
+                asset("a2", "USDST", 200, 2),
+                asset("b2", "ETHST", 7, 18)));
+        
+        assertEquals(4, store.size());
+        assertEquals(2, store.getNameCount());
+        assertEquals("ETHST", store.getNameById(0));
+        assertEquals(0, store.getNameStart(0));
+        assertEquals(2, store.getNameEnd(0));
+        assertEquals("USDST", store.getNameById(1));
+        assertEquals(2, store.getNameStart(1));
+        assertEquals(4, store.getNameEnd(1));
+        
+        // Each name keeps its arrival order
+        assertEquals("b1", store.getId(0));
+        assertEquals("b2", store.getId(1));
+        assertEquals("a1", store.getId(2));
+        assertEquals(200, store.getQuantity(3));
+        assertEquals(2, store.getDecimals(3));
+        assertEquals("USDST", store.getName(3));
+    }
+    
+    @Test
+    public void idsRoundTripWhetherPackedOrNot() {
+        String hex = "4f1e8a0000000000000000000000000000000001";
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(
+                asset(hex, "ETHST", 1, 18),
+                asset("0xABC", "ETHST", 2, 18),
+                asset("abc", "ETHST", 3, 18),
+                asset(null, "ETHST", 4, 18)));
+        
+        assertEquals(hex, store.getId(0));
+        assertEquals("0xABC", store.getId(1));
+        assertEquals("abc", store.getId(2));
+        assertNull(store.getId(3));
+        
+        assertEquals(0, store.indexOf(hex));
+        assertEquals(1, store.indexOf("0xABC"));
+        assertEquals(2, store.indexOf("abc"));
+        assertEquals(-1, store.indexOf("4f1e8a"));
+        assertEquals(-1, HoldingsStore.EMPTY.indexOf(hex));
+    }
+    
+    @Test
+    public void missingOrOutOfRangeDecimalsAreRecordedAsUnknown() {
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(
+                asset("a1", "ETHST", 1, null),
+                asset("a2", "ETHST", 1, 300)));
+        
+        assertEquals(HoldingsStore.NO_DECIMALS, store.getDecimals(0));
+        assertEquals(HoldingsStore.NO_DECIMALS, store.getDecimals(1));
+    }
+    
+    @Test
+    public void rowsWithoutANameGroupByIdThenAsUnnamed() {
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(
+                asset("token", null, 1, 0),
+                asset(null, null, 1, 0)));
+        
+        assertEquals("Unnamed Asset", store.getName(0));
+        assertEquals("token", store.getName(1));
+    }
+    
+    @Test
+    public void updatesReplaceRemoveAndAppendById() {
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(
+                asset("a1", "USDST", 100, 2),
+                asset("a2", "USDST", 200, 2),
+                asset("b1", "ETHST", 5, 18)));
+        
+        HoldingsStore updated = store.withUpdates(Arrays.asList(
+                asset("a1", "USDST", 150, 2),
+                asset("b1", "ETHST", 0, 18),
+                asset("c1", "GOLDST", 9, 18),
+                // Added and removed in the same batch
+                asset("d1", "SILVST", 1, 18),
+                asset("d1", "SILVST", 0, 18)));
+        
+        assertEquals(3, updated.size());
+        assertEquals(-1, updated.indexOf("b1"));
+        assertEquals(-1, updated.indexOf("d1"));
+        assertEquals(150, updated.getQuantity(updated.indexOf("a1")));
+        assertEquals(200, updated.getQuantity(updated.indexOf("a2")));
+        assertEquals("GOLDST", updated.getName(updated.indexOf("c1")));
+        
+        // The original is untouched
+        assertEquals(3, store.size());
+        assertEquals(100, store.getQuantity(store.indexOf("a1")));
+    }
+    
+    @Test
+    public void largeQuantitiesSurviveSortingAndUpdates() {
+        BigInteger large = new BigInteger("12500000000000000000");
+        Asset big = asset("b1", "ETHST", 0, 18);
+        big.largeQuantity = large;
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(asset("a1", "USDST", 100, 2), big));
+        
+        assertEquals(large, store.getLargeQuantity(store.indexOf("b1")));
+        assertEquals(0, store.getQuantity(store.indexOf("b1")));
+        assertNull(store.getLargeQuantity(store.indexOf("a1")));
+        assertNull(HoldingsStore.of(Collections.singletonList(asset("a1", "USDST", 1, 2))).getLargeQuantity(0));
+        
+        HoldingsStore updated = store.withUpdates(Collections.singletonList(asset("a1", "USDST", 50, 2)));
+        assertEquals(large, updated.getLargeQuantity(updated.indexOf("b1")));
+    }
+    
+    @Test
+    public void indexFindsEveryRowOfALargeStore() {
+        Asset[] assets = new Asset[1000];
+        for (int i = 0; i < assets.length; i++) {
+            assets[i] = asset(String.format("%040x", i), "ETHST", i + 1, 18);
+        }
+        HoldingsStore store = HoldingsStore.of(Arrays.asList(assets));
+        
+        for (int i = 0; i < assets.length; i++) {
+            int row = store.indexOf(assets[i].id);
+            assertEquals(i + 1, store.getQuantity(row));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.stratomercata.portfolio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PortfolioCalculatorTest {
+    private static final double DELTA = 1e-9;
+    
+    private static Asset asset(String id, String name, long quantity, Integer decimals) {
+        Asset asset = new Asset();
+        asset.id = id;
+        asset.name = name;
+        asset.quantity = quantity;
+        asset.decimals = decimals;
+        return asset;
+    }
+    
+    private static List<Oracle> price(String name, String consensusPrice) {
+        Oracle oracle = new Oracle();
+        oracle.name = name;
+        oracle.consensusPrice = consensusPrice;
+        return Collections.singletonList(oracle);
+    }
+    
+    @Test
+    public void priceUpdateRevaluesTotalsInTheSameSnapshot() {
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processOracleData(price("ETH", "2000"));
+        calculator.processAssetData(Arrays.asList(
+                asset("1", "ETHST", 1500000000000000000L, 18),
+                asset("2", "USDST", 250, 2)));
+        PortfolioSnapshot before = calculator.getSnapshot();
+        assertEquals(3000 + 2.5, before.fungibleTokensValue, DELTA);
+        
+        calculator.processOracleData(price("ETH", "3000"));
+        PortfolioSnapshot after = calculator.getSnapshot();
+        
+        assertEquals("3000", after.latestPrices.get("ETHST"));
+        assertEquals(4500 + 2.5, after.fungibleTokensValue, DELTA);
+        assertEquals(4500, after.sortedAssets.get(0).calculatedValue, DELTA);
+        assertEquals(2, after.fungibleTokensCount);
+    }
+    
+    @Test
+    public void priceUpdateLeavesThePublishedSnapshotAlone() {
+        PortfolioCalculator calculator = new PortfolioCalculator();
+        calculator.processOracleData(price("ETH", "2000"));
+        calculator.processAssetData(Collections.singletonList(asset("1", "ETHST", 1000000000000000000L, 18)));
+        PortfolioSnapshot before = calculator.getSnapshot();
+        AssetGroup published = before.sortedAssets.get(0);
+        
+        calculator.processOracleData(price("ETH", "2500"));
+        
+        assertEquals(2000, before.fungibleTokensValue, DELTA);
+        assertEquals(2000, published.calculatedValue, DELTA);
+        assertNotSame(published, calculator.getSnapshot().sortedAssets.get(0));
+        assertEquals(2500, calculator.getSnapshot().fungibleTokensValue, DELTA);
+    }
+}
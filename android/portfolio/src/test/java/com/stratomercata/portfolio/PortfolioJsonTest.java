@@ -0,0 +1,64 @@
+package com.stratomercata.portfolio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+public class PortfolioJsonTest {
+    // 12.5 whole tokens at 18 decimals, above Long.MAX_VALUE (about 9.22e18)
+    private static final String LARGE_QUANTITY = "12500000000000000000";
+    
+    private final Gson gson = PortfolioJson.newGson();
+    
+    @Test
+    public void decodesRowAboveLongRangeWithoutFailingTheResponse() {
+        Asset[] assets = gson.fromJson("[{\"id\":\"a1\",\"name\":\"ETHST\",\"quantity\":\"" + LARGE_QUANTITY
+                + "\",\"decimals\":18},{\"id\":\"a2\",\"name\":\"USDST\",\"quantity\":\"250\",\"decimals\":2}]", Asset[].class);
+        
+        assertEquals(2, assets.length);
+        assertEquals(new BigInteger(LARGE_QUANTITY), assets[0].largeQuantity);
+        assertEquals(0, assets[0].quantity);
+        assertEquals(250, assets[1].quantity);
+        assertNull(assets[1].largeQuantity);
+    }
+    
+    @Test
+    public void writesLargeQuantityBackExactly() {
+        Asset asset = gson.fromJson("{\"id\":\"a1\",\"name\":\"ETHST\",\"quantity\":\"" + LARGE_QUANTITY + "\"}", Asset.class);
+        Asset copy = gson.fromJson(gson.toJson(asset), Asset.class);
+        
+        assertEquals(new BigInteger(LARGE_QUANTITY), copy.largeQuantity);
+    }
+    
+    @Test
+    public void groupsRowsAboveLongRangeAtFullValue() {
+        Asset[] assets = gson.fromJson("[{\"id\":\"a1\",\"name\":\"ETHST\",\"quantity\":\"" + LARGE_QUANTITY
+                + "\",\"decimals\":18},{\"id\":\"a2\",\"name\":\"ETHST\",\"quantity\":\"500000000000000000\",\"decimals\":18}]",
+                Asset[].class);
+        
+        AssetGroup group = new PortfolioCalculator().groupAssets(Arrays.asList(assets)).get("ETHST");
+        
+        assertEquals(2, group.tokenCount);
+        assertEquals(0, BigDecimal.valueOf(group.totalQuantity, group.decimals).compareTo(new BigDecimal("13")));
+    }
+    
+    @Test
+    public void groupsRowsWhoseSumOutgrowsALong() {
+        // Each row fits a long, their sum does not
+        String row = "6000000000000000000";
+        Asset[] assets = gson.fromJson("[{\"id\":\"a1\",\"name\":\"ETHST\",\"quantity\":\"" + row
+                + "\",\"decimals\":18},{\"id\":\"a2\",\"name\":\"ETHST\",\"quantity\":\"" + row + "\",\"decimals\":18}]",
+                Asset[].class);
+        
+        AssetGroup group = new PortfolioCalculator().groupAssets(Arrays.asList(assets)).get("ETHST");
+        
+        assertEquals(0, BigDecimal.valueOf(group.totalQuantity, group.decimals).compareTo(new BigDecimal("12")));
+    }
+}